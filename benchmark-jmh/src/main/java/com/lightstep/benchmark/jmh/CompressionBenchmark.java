@@ -0,0 +1,139 @@
+package com.lightstep.benchmark.jmh;
+
+import com.google.protobuf.Timestamp;
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.Log;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import com.lightstep.tracer.grpc.Span;
+import com.lightstep.tracer.grpc.SpanContext;
+import com.lightstep.tracer.shared.ReportBufferPool;
+import com.lightstep.tracer.shared.ReportCompression;
+import com.lightstep.tracer.shared.ReportEncoder;
+import lightstep.okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of compressing a report of {@link #spans} spans, for each compression and
+ * level in {@link #codec}. The bytes sent on the wire for the report are printed once per
+ * trial, with the ratio to the uncompressed size.
+ *
+ * The spans are those of the {@code BenchmarkClient} workload: {@link #concurrent}
+ * threads each running a trace, finishing {@code span/test} spans with
+ * {@link #logsPerSpan} logs of a {@link #bytesPerLog} bytes payload, so that the spans of
+ * the traces are interleaved in the report buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+    @Param({"none", "gzip:1", "gzip:6", "gzip:9", "zstd:1", "zstd:3", "zstd:9", "zstd:15", "lz4"})
+    public String codec;
+
+    @Param({"1000"})
+    public int spans;
+
+    @Param({"8"})
+    public int concurrent;
+
+    @Param({"2"})
+    public int logsPerSpan;
+
+    @Param({"64"})
+    public int bytesPerLog;
+
+    private ReportRequest request;
+    private ReportCompression compression;
+    private int level;
+    private ReportBufferPool pool;
+    private Buffer sink;
+
+    @Setup
+    public void setup() throws IOException {
+        String[] parts = codec.split(":");
+        compression = ReportCompression.valueOf(parts[0].toUpperCase(Locale.ROOT));
+        level = parts.length > 1 ? Integer.parseInt(parts[1]) : ReportCompression.DEFAULT_LEVEL;
+        if (!compression.isAvailable()) {
+            throw new IllegalStateException(codec + " is not in the class path");
+        }
+
+        request = request();
+        pool = new ReportBufferPool(ReportBufferPool.DEFAULT_BUFFER_BYTES, false);
+        sink = new Buffer();
+
+        long wireBytes = encode();
+        System.out.printf("%n%s: %d bytes on the wire for %d bytes (%.1f%%)%n", codec, wireBytes,
+                request.getSerializedSize(), 100.0 * wireBytes / request.getSerializedSize());
+    }
+
+    @Benchmark
+    public long encode() throws IOException {
+        ReportEncoder.write(request, sink, pool, compression, level);
+
+        long size = sink.size();
+        sink.clear();
+        return size;
+    }
+
+    private ReportRequest request() {
+        Random random = new Random(42);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < bytesPerLog; i++) {
+            payload.append('A');
+        }
+
+        ReportRequest.Builder builder = ReportRequest.newBuilder()
+                .setReporter(Reporter.newBuilder()
+                        .setReporterId(random.nextLong())
+                        .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("BenchmarkClient"))
+                        .addTags(KeyValue.newBuilder().setKey("lightstep.tracer_platform").setStringValue("jre"))
+                        .addTags(KeyValue.newBuilder().setKey("lightstep.tracer_version").setStringValue("0.32.0")))
+                .setAuth(Auth.newBuilder().setAccessToken("notUsed"));
+
+        long[] traceIds = new long[concurrent];
+        for (int i = 0; i < concurrent; i++) {
+            traceIds[i] = random.nextLong();
+        }
+
+        long micros = System.currentTimeMillis() * 1000;
+        for (int i = 0; i < spans; i++) {
+            micros += random.nextInt(100);
+            Span.Builder span = Span.newBuilder()
+                    .setOperationName("span/test")
+                    .setSpanContext(SpanContext.newBuilder()
+                            .setTraceId(traceIds[i % concurrent])
+                            .setSpanId(random.nextLong()))
+                    .setStartTimestamp(Timestamp.newBuilder()
+                            .setSeconds(micros / 1000000)
+                            .setNanos((int) (micros % 1000000) * 1000))
+                    .setDurationMicros(random.nextInt(1000));
+            for (int l = 0; l < logsPerSpan; l++) {
+                span.addLogs(Log.newBuilder()
+                        .setTimestamp(Timestamp.newBuilder().setSeconds(micros / 1000000))
+                        .addFields(KeyValue.newBuilder().setKey("message").setStringValue("testlog"))
+                        .addFields(KeyValue.newBuilder().setKey("payload").setStringValue(payload.toString())));
+            }
+            builder.addSpans(span);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.lightstep.benchmark.jmh;
+
+import com.lightstep.tracer.jre.JRETracer;
+import io.opentracing.Tracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of an explicit {@link JRETracer#flush(long)} of a buffer holding {@link #spans}
+ * spans, reported to an in-process collector over loopback HTTP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushBenchmark {
+    private static final long FLUSH_TIMEOUT_MILLIS = 10000;
+
+    @Param({"10", "100", "1000"})
+    public int spans;
+
+    private LocalCollector collector;
+    private JRETracer tracer;
+
+    @Setup
+    public void setup() throws Exception {
+        collector = LocalCollector.start();
+        tracer = new JRETracer(Tracers.optionsBuilder(collector)
+                .withDisableReportingLoop(true)
+                .withMaxBufferedSpans(spans)
+                .build());
+
+        // Prime the clock state, so that reports carry the buffered spans.
+        for (int i = 0; i < 8; i++) {
+            tracer.flush(FLUSH_TIMEOUT_MILLIS);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fillBuffer() {
+        Tracer t = tracer;
+        for (int i = 0; i < spans; i++) {
+            t.buildSpan("operation").withTag("index", i).start().finish();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        tracer.close();
+        collector.close();
+    }
+
+    @Benchmark
+    public Boolean flush() {
+        return tracer.flush(FLUSH_TIMEOUT_MILLIS);
+    }
+}
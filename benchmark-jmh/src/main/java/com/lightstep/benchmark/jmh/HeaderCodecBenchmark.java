@@ -0,0 +1,98 @@
+package com.lightstep.benchmark.jmh;
+
+import com.lightstep.tracer.shared.B3Propagator;
+import com.lightstep.tracer.shared.HeaderCodec;
+import com.lightstep.tracer.shared.Propagator;
+import com.lightstep.tracer.shared.SpanContext;
+import io.opentracing.propagation.TextMapAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the propagators of the shared library ({@code shared}) and of
+ * {@link HeaderCodec} ({@code codec}) for the LightStep and B3 headers, without a tracer:
+ * {@code inject}, {@code extract} of the same headers again, as the filters of a server do
+ * for a request, and {@code extractNew} of headers with a new span ID each time.
+ *
+ * Run with {@code -prof gc}: {@code gc.alloc.rate.norm} for {@code extract} and
+ * {@code extractNew} is 224 B/op with the codec, the new context and its boxed IDs,
+ * instead of 904 B/op for the LightStep headers and 752 B/op for B3 with the shared
+ * propagators.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeaderCodecBenchmark {
+    private static final int REQUESTS = 1024;
+
+    @Param({"lightstep", "b3"})
+    public String headers;
+
+    @Param({"shared", "codec"})
+    public String propagator;
+
+    private Propagator instance;
+    private SpanContext context;
+    private TextMapAdapter injectCarrier;
+    private TextMapAdapter extractCarrier;
+    private TextMapAdapter[] requestCarriers;
+    private int request;
+
+    @Setup
+    public void setup() {
+        boolean b3 = "b3".equals(headers);
+        Propagator shared = b3 ? new B3Propagator() : Propagator.HTTP_HEADERS;
+        instance = "codec".equals(propagator) ? HeaderCodec.forPropagator(shared) : shared;
+        context = new SpanContext(0x463ac35c9f6413adL, 0xa2fb4a1d1a96d312L);
+
+        injectCarrier = new TextMapAdapter(new HashMap<String, String>());
+        extractCarrier = new TextMapAdapter(requestHeaders(shared, context));
+        requestCarriers = new TextMapAdapter[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            SpanContext requestContext = new SpanContext(context.getTraceId(), context.getSpanId() + i + 1);
+            requestCarriers[i] = new TextMapAdapter(requestHeaders(shared, requestContext));
+        }
+    }
+
+    // Headers as a server would receive them, with a few unrelated ones.
+    private static Map<String, String> requestHeaders(Propagator propagator, SpanContext context) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/json");
+        headers.put("User-Agent", "jmh");
+        headers.put("Host", "localhost");
+        propagator.inject(context, new TextMapAdapter(headers));
+        return headers;
+    }
+
+    @Benchmark
+    public void inject() {
+        instance.inject(context, injectCarrier);
+    }
+
+    @Benchmark
+    public SpanContext extract() {
+        return instance.extract(extractCarrier);
+    }
+
+    @Benchmark
+    public SpanContext extractNew() {
+        request = (request + 1) & (REQUESTS - 1);
+        return instance.extract(requestCarriers[request]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.lightstep.benchmark.jmh;
+
+import com.google.protobuf.Timestamp;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Minimal in-process collector accepting HTTP reports, so that benchmarks measure
+ * the tracer in its steady state (spans being reported and released) without any
+ * network dependency.
+ */
+final class LocalCollector implements AutoCloseable {
+    private final HttpServer server;
+
+    private LocalCollector(HttpServer server) {
+        this.server = server;
+    }
+
+    static LocalCollector start() throws IOException {
+        // Otherwise Nagle's algorithm adds tens of milliseconds to every report.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        HttpServer server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new ReportHandler());
+        server.start();
+        return new LocalCollector(server);
+    }
+
+    String host() {
+        return server.getAddress().getHostString();
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static class ReportHandler implements HttpHandler {
+        private final byte[] buffer = new byte[64 * 1024];
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read(buffer) != -1) {
+                    // Discard the report.
+                }
+            }
+
+            // Timing info is required for the tracer's clock state to become ready.
+            Timestamp now = now();
+            byte[] response = ReportResponse.newBuilder()
+                    .setReceiveTimestamp(now)
+                    .setTransmitTimestamp(now)
+                    .build()
+                    .toByteArray();
+
+            exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        }
+
+        private static Timestamp now() {
+            long millis = System.currentTimeMillis();
+            return Timestamp.newBuilder()
+                    .setSeconds(millis / 1000)
+                    .setNanos((int) (millis % 1000) * 1000000)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.lightstep.benchmark.jmh;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMapAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code inject}/{@code extract} with {@link Format.Builtin#HTTP_HEADERS}, for the
+ * default LightStep headers and for {@code B3Propagator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PropagationBenchmark {
+    @Param({Tracers.LIGHTSTEP, Tracers.B3, Tracers.NOOP})
+    public String tracer;
+
+    private LocalCollector collector;
+    private Tracer instance;
+    private Span span;
+    private TextMapAdapter injectCarrier;
+    private TextMapAdapter extractCarrier;
+
+    @Setup
+    public void setup() throws Exception {
+        collector = LocalCollector.start();
+        instance = Tracers.create(tracer, collector);
+        span = instance.buildSpan("operation").start();
+
+        injectCarrier = new TextMapAdapter(new HashMap<String, String>());
+
+        // Headers as a server would receive them, with a few unrelated ones.
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/json");
+        headers.put("User-Agent", "jmh");
+        headers.put("Host", "localhost");
+        instance.inject(span.context(), Format.Builtin.HTTP_HEADERS, new TextMapAdapter(headers));
+        extractCarrier = new TextMapAdapter(headers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        span.finish();
+        Tracers.close(instance);
+        collector.close();
+    }
+
+    @Benchmark
+    public void inject() {
+        instance.inject(span.context(), Format.Builtin.HTTP_HEADERS, injectCarrier);
+    }
+
+    @Benchmark
+    public SpanContext extract() {
+        return instance.extract(Format.Builtin.HTTP_HEADERS, extractCarrier);
+    }
+}
@@ -0,0 +1,86 @@
+package com.lightstep.benchmark.jmh;
+
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import com.lightstep.tracer.grpc.Span;
+import com.lightstep.tracer.grpc.SpanContext;
+import com.lightstep.tracer.shared.ReportBufferPool;
+import com.lightstep.tracer.shared.ReportEncoder;
+import lightstep.okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding a report of {@link #spans} spans into an okio buffer, as the HTTP
+ * collector client does: serialized to a new byte array first ({@code byteArray}), or
+ * streamed through a pooled heap ({@code streaming}) or direct ({@code streamingDirect})
+ * buffer.
+ *
+ * Run with {@code -prof gc} to compare the bytes allocated per report
+ * ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportEncodingBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int spans;
+
+    @Param({"byteArray", "streaming", "streamingDirect"})
+    public String encoding;
+
+    private ReportRequest request;
+    private ReportBufferPool pool;
+    private Buffer sink;
+
+    @Setup
+    public void setup() {
+        ReportRequest.Builder builder = ReportRequest.newBuilder()
+                .setReporter(Reporter.newBuilder()
+                        .setReporterId(1)
+                        .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("benchmark")))
+                .setAuth(Auth.newBuilder().setAccessToken("{your_access_token}"));
+        for (int i = 0; i < spans; i++) {
+            builder.addSpans(Span.newBuilder()
+                    .setOperationName("operation")
+                    .setSpanContext(SpanContext.newBuilder().setTraceId(i).setSpanId(i + 1))
+                    .setDurationMicros(i)
+                    .addTags(KeyValue.newBuilder().setKey("index").setIntValue(i))
+                    .addTags(KeyValue.newBuilder().setKey("http.url").setStringValue("http://localhost/" + i)));
+        }
+        request = builder.build();
+
+        pool = new ReportBufferPool(ReportBufferPool.DEFAULT_BUFFER_BYTES, "streamingDirect".equals(encoding));
+        sink = new Buffer();
+    }
+
+    @Benchmark
+    public long encode() throws IOException {
+        if ("byteArray".equals(encoding)) {
+            sink.write(request.toByteArray());
+        } else {
+            ReportEncoder.write(request, sink, pool);
+        }
+
+        long size = sink.size();
+        sink.clear();
+        return size;
+    }
+}
@@ -0,0 +1,67 @@
+package com.lightstep.benchmark.jmh;
+
+import com.lightstep.tracer.jre.JRETracer;
+import io.opentracing.Tracer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first span of a cold JVM: creating a tracer, then starting and finishing its
+ * first span, measured once per fork so that class loading and static initialization are
+ * included, as on the cold start of a short-lived worker. The {@code metrics} tracer also
+ * reports client metrics, to the in-process collector.
+ *
+ * Run with {@code -prof cl} to count the classes loaded by the measured call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+    static final String METRICS = "metrics";
+
+    @Param({Tracers.LIGHTSTEP, METRICS, Tracers.NOOP})
+    public String tracer;
+
+    private LocalCollector collector;
+    private Tracer created;
+
+    @Setup
+    public void setup() throws IOException {
+        collector = LocalCollector.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Tracers.close(created);
+        collector.close();
+    }
+
+    @Benchmark
+    public Tracer firstSpan() throws MalformedURLException {
+        created = METRICS.equals(tracer)
+                ? new JRETracer(Tracers.optionsBuilder(collector)
+                        .withDisableMetricsReporting(false)
+                        .withMetricsUrl("http://" + collector.host() + ":" + collector.port() + "/metrics")
+                        .build())
+                : Tracers.create(tracer, collector);
+        created.buildSpan("first").start().finish();
+        return created;
+    }
+}
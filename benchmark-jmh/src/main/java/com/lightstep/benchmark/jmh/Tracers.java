@@ -0,0 +1,60 @@
+package com.lightstep.benchmark.jmh;
+
+import com.lightstep.tracer.jre.JREOptions;
+import com.lightstep.tracer.jre.JRETracer;
+import com.lightstep.tracer.shared.B3Propagator;
+import com.lightstep.tracer.shared.Options;
+import io.opentracing.Tracer;
+import io.opentracing.noop.NoopTracerFactory;
+import io.opentracing.propagation.Format;
+
+import java.net.MalformedURLException;
+
+/**
+ * Creates the tracers compared by the benchmarks, selected by a JMH {@code @Param} value.
+ */
+final class Tracers {
+    static final String LIGHTSTEP = "lightstep";
+    static final String B3 = "b3";
+    static final String RECYCLING = "recycling";
+    static final String NOOP = "noop";
+
+    private Tracers() {}
+
+    static Tracer create(String name, LocalCollector collector) throws MalformedURLException {
+        if (NOOP.equals(name)) {
+            return NoopTracerFactory.create();
+        }
+
+        Options.OptionsBuilder builder = optionsBuilder(collector);
+        if (B3.equals(name)) {
+            builder.withPropagator(Format.Builtin.HTTP_HEADERS, new B3Propagator());
+        } else if (RECYCLING.equals(name)) {
+            return new JRETracer(builder.build(), new JREOptions.OptionsBuilder()
+                    .withSpanRecycling(true)
+                    .build());
+        } else if (!LIGHTSTEP.equals(name)) {
+            throw new IllegalArgumentException("Unknown tracer: " + name);
+        }
+
+        return new JRETracer(builder.build());
+    }
+
+    static Options.OptionsBuilder optionsBuilder(LocalCollector collector) {
+        return new Options.OptionsBuilder()
+                .withAccessToken("notUsed")
+                .withComponentName("jmh")
+                .withCollectorClient(Options.CollectorClient.HTTP)
+                .withCollectorProtocol("http")
+                .withCollectorHost(collector.host())
+                .withCollectorPort(collector.port())
+                .withDisableMetricsReporting(true)
+                .withVerbosity(Options.VERBOSITY_FIRST_ERROR_ONLY);
+    }
+
+    static void close(Tracer tracer) {
+        if (tracer instanceof JRETracer) {
+            tracer.close();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.lightstep.benchmark;
+
+import com.lightstep.tracer.jre.JRETracer;
+import com.lightstep.tracer.shared.Options;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.noop.NoopTracerFactory;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator: issues traced requests at the fixed rate of a {@link Scenario},
+ * whatever the time the previous requests took, and compares the latency of the requests
+ * with each tracer of the scenario, {@code noop} or {@code lightstep}, the latter reporting
+ * to a {@link MockCollector}.
+ *
+ * The latency of a request is measured from the time it was due to start, not from the time
+ * it started, so that requests delayed by a slow one are counted as delayed instead of
+ * being left out, correcting the coordinated omission of closed-loop benchmarks such as
+ * {@link BenchmarkClient}. The latency measured from the actual start, the service time,
+ * is printed as well.
+ *
+ * Usage: {@code LoadGenerator [scenario.properties]}, with the bundled scenario by default.
+ */
+class LoadGenerator {
+    private static final long PRIME_WORK = 982451653;
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+    // Parking overshoots by tens of microseconds: the end of the wait is spent spinning.
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // Keeps the work from being optimized away.
+    private static volatile long answer;
+
+    public static void main(String[] args) throws Exception {
+        Scenario scenario = Scenario.load(args.length > 0 ? args[0] : null);
+        System.out.printf("rate=%d/s threads=%d warmup=%ds duration=%ds%n", scenario.rate, scenario.threads,
+                scenario.warmupSeconds, scenario.durationSeconds);
+
+        try (MockCollector collector = MockCollector.start()) {
+            for (Scenario.Profile profile : scenario.profiles) {
+                System.out.printf("%nprofile %s%n", profile);
+                System.out.printf("%-10s %10s %10s %10s %10s %10s %18s%n", "tracer", "requests", "p50 us",
+                        "p99 us", "p99.9 us", "max us", "service p99.9 us");
+                for (String tracerName : scenario.tracers) {
+                    Tracer tracer = createTracer(tracerName, collector);
+                    try {
+                        run(tracer, profile, scenario, scenario.warmupSeconds);
+                        Result result = run(tracer, profile, scenario, scenario.durationSeconds);
+                        System.out.printf("%-10s %10d %10d %10d %10d %10d %18d%n", tracerName,
+                                result.latency.getTotalCount(),
+                                result.latency.getValueAtPercentile(50),
+                                result.latency.getValueAtPercentile(99),
+                                result.latency.getValueAtPercentile(99.9),
+                                result.latency.getMaxValue(),
+                                result.serviceTime.getValueAtPercentile(99.9));
+                    } finally {
+                        if (tracer instanceof JRETracer) {
+                            ((JRETracer) tracer).close();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Tracer createTracer(String name, MockCollector collector) throws Exception {
+        switch (name) {
+            case "noop":
+                return NoopTracerFactory.create();
+            case "lightstep":
+                return new JRETracer(new Options.OptionsBuilder()
+                        .withAccessToken("notUsed")
+                        .withCollectorClient(Options.CollectorClient.HTTP)
+                        .withCollectorHost(collector.getHost())
+                        .withCollectorPort(collector.getHttpPort())
+                        .withCollectorProtocol("http")
+                        .withDisableMetricsReporting(true)
+                        .build());
+            default:
+                throw new IllegalArgumentException("Unknown tracer: " + name);
+        }
+    }
+
+    private static final class Result {
+        final Histogram latency = newHistogram();
+        final Histogram serviceTime = newHistogram();
+    }
+
+    private static Result run(final Tracer tracer, final Scenario.Profile profile, Scenario scenario,
+                              int seconds) throws InterruptedException {
+        final int threads = scenario.threads;
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(threads) / scenario.rate;
+        final long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        final long endNanos = startNanos + TimeUnit.SECONDS.toNanos(seconds);
+        final String payload = payload(profile.logBytes);
+
+        final List<Result> results = Collections.synchronizedList(new ArrayList<Result>());
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // The threads take turns, so that the requests are evenly spread.
+            final long offsetNanos = intervalNanos * t / threads;
+            workers.add(new Thread() {
+                @Override
+                public void run() {
+                    Result result = new Result();
+                    for (long i = 0; ; i++) {
+                        long dueNanos = startNanos + offsetNanos + i * intervalNanos;
+                        if (dueNanos >= endNanos) {
+                            break;
+                        }
+                        long waitNanos;
+                        while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                            if (waitNanos > SPIN_NANOS) {
+                                LockSupport.parkNanos(waitNanos - SPIN_NANOS);
+                            }
+                        }
+
+                        long requestStartNanos = System.nanoTime();
+                        request(tracer, profile, payload);
+                        long requestEndNanos = System.nanoTime();
+                        record(result.latency, requestEndNanos - dueNanos);
+                        record(result.serviceTime, requestEndNanos - requestStartNanos);
+                    }
+                    results.add(result);
+                }
+            });
+        }
+
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Result total = new Result();
+        for (Result result : results) {
+            total.latency.add(result.latency);
+            total.serviceTime.add(result.serviceTime);
+        }
+        return total;
+    }
+
+    /**
+     * A traced request: a span per level, each child of the previous one, with the tags,
+     * logs and work of the profile.
+     */
+    private static void request(Tracer tracer, Scenario.Profile profile, String payload) {
+        Span[] spans = new Span[profile.spanDepth];
+        for (int depth = 0; depth < spans.length; depth++) {
+            Tracer.SpanBuilder builder = tracer.buildSpan("request/level-" + depth);
+            if (depth > 0) {
+                builder.asChildOf(spans[depth - 1]);
+            }
+            Span span = builder.start();
+            for (int t = 0; t < profile.tagsPerSpan; t++) {
+                span.setTag("tag." + t, "value");
+            }
+            for (int l = 0; l < profile.logsPerSpan; l++) {
+                Map<String, Object> fields = Collections.<String, Object>singletonMap("payload", payload);
+                span.log(fields);
+            }
+            spans[depth] = span;
+        }
+
+        answer = work(profile.work);
+        for (int depth = spans.length - 1; depth >= 0; depth--) {
+            spans[depth].finish();
+        }
+    }
+
+    private static long work(long n) {
+        long x = PRIME_WORK;
+        for (; n != 0; --n) {
+            x *= PRIME_WORK;
+        }
+        return x;
+    }
+
+    private static String payload(int bytes) {
+        StringBuilder builder = new StringBuilder(bytes);
+        for (int i = 0; i < bytes; i++) {
+            builder.append('A');
+        }
+        return builder.toString();
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_LATENCY_MICROS, 3);
+    }
+
+    private static void record(Histogram histogram, long nanos) {
+        histogram.recordValue(Math.min(HIGHEST_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+}
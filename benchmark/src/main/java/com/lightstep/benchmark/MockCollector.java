@@ -0,0 +1,306 @@
+package com.lightstep.benchmark;
+
+import com.google.protobuf.Timestamp;
+import com.lightstep.tracer.grpc.CollectorServiceGrpc;
+import com.lightstep.tracer.grpc.MetricsSample;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stand-in collector listening on the loopback interface, with the HTTP and gRPC report
+ * endpoints of the LightStep collector, so that tracers can be benchmarked end to end
+ * without network access. Reports are decoded and their spans counted, along with the
+ * spans the tracers reported as dropped.
+ *
+ * Faults can be injected while it runs: a latency added to each report, and fractions of
+ * the reports answered with a server error, left unanswered until the client times out, or
+ * cut off by closing the connection. Over gRPC, an error is reported as
+ * {@code UNAVAILABLE} and a connection cut off as {@code UNAVAILABLE} with no response,
+ * as a gRPC server does not control the connections of its calls.
+ */
+final class MockCollector implements AutoCloseable {
+    static final String REPORTS_PATH = "/api/v2/reports";
+
+    private final HttpServer httpServer;
+    private final Server grpcServer;
+    private final ExecutorService httpExecutor;
+
+    private volatile long latencyMillis;
+    private volatile double errorRate;
+    private volatile double timeoutRate;
+    private volatile double resetRate;
+    private volatile long timeoutMillis = 60000;
+
+    private final AtomicLong reports = new AtomicLong();
+    private final AtomicLong spans = new AtomicLong();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+
+    private MockCollector(HttpServer httpServer, Server grpcServer, ExecutorService httpExecutor) {
+        this.httpServer = httpServer;
+        this.grpcServer = grpcServer;
+        this.httpExecutor = httpExecutor;
+    }
+
+    /**
+     * Starts a collector on free ports of the loopback interface.
+     */
+    static MockCollector start() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(loopback, 0), 0);
+        ExecutorService httpExecutor = Executors.newCachedThreadPool();
+        httpServer.setExecutor(httpExecutor);
+
+        final MockCollector[] collector = new MockCollector[1];
+        Server grpcServer = NettyServerBuilder.forAddress(new InetSocketAddress(loopback, 0))
+                .addService(new CollectorServiceGrpc.CollectorServiceImplBase() {
+                    @Override
+                    public void report(ReportRequest request, StreamObserver<ReportResponse> responseObserver) {
+                        collector[0].reportGrpc(request, responseObserver);
+                    }
+                })
+                .build();
+        collector[0] = new MockCollector(httpServer, grpcServer, httpExecutor);
+
+        httpServer.createContext(REPORTS_PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                collector[0].reportHttp(exchange);
+            }
+        });
+        httpServer.start();
+        grpcServer.start();
+        return collector[0];
+    }
+
+    String getHost() {
+        return httpServer.getAddress().getHostString();
+    }
+
+    int getHttpPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    int getGrpcPort() {
+        return grpcServer.getPort();
+    }
+
+    /**
+     * Delays each report by {@code latencyMillis}.
+     */
+    void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Answers this fraction of the reports with a server error, without counting them.
+     */
+    void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Leaves this fraction of the reports unanswered for {@link #setTimeoutMillis(long)},
+     * without counting them.
+     */
+    void setTimeoutRate(double timeoutRate) {
+        this.timeoutRate = timeoutRate;
+    }
+
+    void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Closes the connection of this fraction of the reports without answering them or
+     * counting them.
+     */
+    void setResetRate(double resetRate) {
+        this.resetRate = resetRate;
+    }
+
+    long getReports() {
+        return reports.get();
+    }
+
+    long getSpans() {
+        return spans.get();
+    }
+
+    /**
+     * Returns the spans the tracers reported as dropped.
+     */
+    long getDroppedSpans() {
+        return droppedSpans.get();
+    }
+
+    /**
+     * Returns the size of the reports received, uncompressed.
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    long getErrors() {
+        return errors.get();
+    }
+
+    long getTimeouts() {
+        return timeouts.get();
+    }
+
+    long getResets() {
+        return resets.get();
+    }
+
+    void resetCounters() {
+        reports.set(0);
+        spans.set(0);
+        droppedSpans.set(0);
+        bytes.set(0);
+        errors.set(0);
+        timeouts.set(0);
+        resets.set(0);
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        httpExecutor.shutdownNow();
+        grpcServer.shutdownNow();
+    }
+
+    private enum Fault {
+        NONE, ERROR, TIMEOUT, RESET
+    }
+
+    /**
+     * Waits for the injected latency and picks the fault injected into a report, if any.
+     */
+    private Fault nextFault() {
+        sleep(latencyMillis);
+
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < errorRate) {
+            errors.incrementAndGet();
+            return Fault.ERROR;
+        }
+        draw -= errorRate;
+        if (draw < timeoutRate) {
+            timeouts.incrementAndGet();
+            sleep(timeoutMillis);
+            return Fault.TIMEOUT;
+        }
+        draw -= timeoutRate;
+        if (draw < resetRate) {
+            resets.incrementAndGet();
+            return Fault.RESET;
+        }
+        return Fault.NONE;
+    }
+
+    private void reportHttp(HttpExchange exchange) throws IOException {
+        try {
+            InputStream body = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                body = new GZIPInputStream(body);
+            }
+            ReportRequest request = ReportRequest.parseFrom(body);
+
+            Fault fault = nextFault();
+            if (fault == Fault.RESET) {
+                // Closing the exchange before the response headers closes the connection.
+                return;
+            }
+            if (fault != Fault.NONE) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            count(request);
+            byte[] response = response().toByteArray();
+            exchange.getResponseHeaders().add("Content-Type", "application/octet-stream");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void reportGrpc(ReportRequest request, StreamObserver<ReportResponse> responseObserver) {
+        switch (nextFault()) {
+            case ERROR:
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Injected error").asRuntimeException());
+                return;
+            case TIMEOUT:
+                responseObserver.onError(Status.DEADLINE_EXCEEDED.asRuntimeException());
+                return;
+            case RESET:
+                responseObserver.onError(Status.UNAVAILABLE.withDescription("Injected connection reset")
+                        .asRuntimeException());
+                return;
+            default:
+                count(request);
+                responseObserver.onNext(response());
+                responseObserver.onCompleted();
+        }
+    }
+
+    private void count(ReportRequest request) {
+        reports.incrementAndGet();
+        spans.addAndGet(request.getSpansCount());
+        bytes.addAndGet(request.getSerializedSize());
+        for (MetricsSample count : request.getInternalMetrics().getCountsList()) {
+            if ("spans.dropped".equals(count.getName())) {
+                droppedSpans.addAndGet(count.getIntValue());
+            }
+        }
+    }
+
+    private static ReportResponse response() {
+        long micros = System.currentTimeMillis() * 1000;
+        Timestamp now = Timestamp.newBuilder()
+                .setSeconds(micros / 1000000)
+                .setNanos((int) (micros % 1000000) * 1000)
+                .build();
+        return ReportResponse.newBuilder()
+                .setReceiveTimestamp(now)
+                .setTransmitTimestamp(now)
+                .build();
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
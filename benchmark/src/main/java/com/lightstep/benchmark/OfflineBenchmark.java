@@ -0,0 +1,116 @@
+package com.lightstep.benchmark;
+
+import com.lightstep.tracer.jre.JREOptions;
+import com.lightstep.tracer.jre.JRETracer;
+import com.lightstep.tracer.shared.Options;
+import io.opentracing.Span;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reports spans from a {@link JRETracer} to a {@link MockCollector} in the same process, and
+ * prints the span throughput, the spans received, dropped and lost, and the time of the
+ * final flush. Needs no controller nor network access, unlike {@link BenchmarkClient}.
+ *
+ * Arguments are {@code name=value} pairs:
+ * <ul>
+ *     <li>{@code client}: {@code http} (default) or {@code grpc}</li>
+ *     <li>{@code threads}: threads finishing spans, 4 by default</li>
+ *     <li>{@code spans}: spans finished by each thread, 100000 by default</li>
+ *     <li>{@code maxBufferedSpans}: size of the report buffer, 1000 by default</li>
+ *     <li>{@code latencyMillis}: latency added to each report by the collector</li>
+ *     <li>{@code errorRate}, {@code timeoutRate}, {@code resetRate}: fractions of the
+ *     reports answered with an error, left unanswered or cut off by the collector</li>
+ *     <li>{@code deadlineMillis}: report deadline of the tracer, 30000 by default</li>
+ *     <li>{@code maxInflightReports}, {@code maxReportRetries}: as in {@link JREOptions}</li>
+ * </ul>
+ */
+class OfflineBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            params.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+
+        boolean grpc = "grpc".equals(param(params, "client", "http"));
+        int threads = Integer.parseInt(param(params, "threads", "4"));
+        final int spans = Integer.parseInt(param(params, "spans", "100000"));
+        long deadlineMillis = Long.parseLong(param(params, "deadlineMillis", "30000"));
+
+        try (MockCollector collector = MockCollector.start()) {
+            collector.setLatencyMillis(Long.parseLong(param(params, "latencyMillis", "0")));
+            collector.setErrorRate(Double.parseDouble(param(params, "errorRate", "0")));
+            collector.setTimeoutRate(Double.parseDouble(param(params, "timeoutRate", "0")));
+            collector.setResetRate(Double.parseDouble(param(params, "resetRate", "0")));
+            collector.setTimeoutMillis(deadlineMillis + 1000);
+
+            Options options = new Options.OptionsBuilder()
+                    .withAccessToken("notUsed")
+                    .withCollectorClient(grpc ? Options.CollectorClient.GRPC : Options.CollectorClient.HTTP)
+                    .withCollectorHost(collector.getHost())
+                    .withCollectorPort(grpc ? collector.getGrpcPort() : collector.getHttpPort())
+                    .withCollectorProtocol("http")
+                    .withMaxBufferedSpans(Integer.parseInt(param(params, "maxBufferedSpans", "1000")))
+                    .withDeadlineMillis(deadlineMillis)
+                    .withDisableMetricsReporting(true)
+                    .build();
+            JREOptions.OptionsBuilder jreOptions = new JREOptions.OptionsBuilder();
+            if (!grpc) {
+                jreOptions.withMaxInflightReports(Integer.parseInt(param(params, "maxInflightReports", "1")))
+                        .withMaxReportRetries(Integer.parseInt(param(params, "maxReportRetries", "0")));
+            }
+            final JRETracer tracer = new JRETracer(options, jreOptions.build());
+
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(new Thread() {
+                    @Override
+                    public void run() {
+                        for (int s = 0; s < spans; s++) {
+                            Span span = tracer.buildSpan("span/test").start();
+                            span.setTag("iteration", s);
+                            span.finish();
+                        }
+                    }
+                });
+            }
+
+            long startNanos = System.nanoTime();
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long runNanos = System.nanoTime() - startNanos;
+
+            long flushStartNanos = System.nanoTime();
+            Boolean flushed = tracer.flush(deadlineMillis);
+            long flushNanos = System.nanoTime() - flushStartNanos;
+            tracer.close();
+
+            long sent = (long) threads * spans;
+            System.out.printf("client=%s threads=%d spans=%d%n", grpc ? "grpc" : "http", threads, sent);
+            System.out.printf("run: %.3f s, %.0f spans/s%n", runNanos / 1e9, sent / (runNanos / 1e9));
+            System.out.printf("flush: %.3f s (%s)%n", flushNanos / 1e9, flushed ? "succeeded" : "failed");
+            System.out.printf("collector: %d reports, %d spans received, %d reported as dropped, %d lost, %d bytes%n",
+                    collector.getReports(), collector.getSpans(), collector.getDroppedSpans(),
+                    sent - collector.getSpans() - collector.getDroppedSpans(), collector.getBytes());
+            System.out.printf("faults: %d errors, %d timeouts, %d resets%n",
+                    collector.getErrors(), collector.getTimeouts(), collector.getResets());
+        }
+    }
+
+    private static String param(Map<String, String> params, String name, String defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,130 @@
+package com.lightstep.benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Load run by the {@link LoadGenerator}, read from a properties file:
+ *
+ * <pre>
+ * # Requests per second, spread evenly over the threads.
+ * rate=2000
+ * threads=4
+ * warmupSeconds=5
+ * durationSeconds=20
+ * tracers=noop,lightstep
+ * profiles=small,large
+ *
+ * # Each request is a root span and its descendants, one per level.
+ * small.spanDepth=2
+ * small.tagsPerSpan=2
+ * small.logsPerSpan=0
+ * small.logBytes=0
+ * small.work=1000
+ * </pre>
+ *
+ * Properties left out take the values above; a profile property left out takes the
+ * default of the profile.
+ */
+final class Scenario {
+    final int rate;
+    final int threads;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final List<String> tracers;
+    final List<Profile> profiles;
+
+    private Scenario(Properties props) {
+        this.rate = intValue(props, "rate", 2000);
+        this.threads = intValue(props, "threads", 4);
+        this.warmupSeconds = intValue(props, "warmupSeconds", 5);
+        this.durationSeconds = intValue(props, "durationSeconds", 20);
+        this.tracers = listValue(props, "tracers", "noop,lightstep");
+
+        List<Profile> profiles = new ArrayList<>();
+        for (String name : listValue(props, "profiles", "default")) {
+            profiles.add(new Profile(name, props));
+        }
+        this.profiles = Collections.unmodifiableList(profiles);
+
+        if (rate <= 0 || threads <= 0 || warmupSeconds < 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("Invalid scenario: rate=" + rate + ", threads=" + threads
+                    + ", warmupSeconds=" + warmupSeconds + ", durationSeconds=" + durationSeconds);
+        }
+    }
+
+    /**
+     * Reads the scenario of the file at {@code path}, or the default scenario, bundled with
+     * the benchmark, if {@code path} is null.
+     */
+    static Scenario load(String path) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = path == null
+                ? Scenario.class.getResourceAsStream("/scenario.properties")
+                : new FileInputStream(path)) {
+            if (in == null) {
+                throw new IOException("Default scenario not found");
+            }
+            props.load(in);
+        }
+        return new Scenario(props);
+    }
+
+    /**
+     * Workload of the traced requests.
+     */
+    static final class Profile {
+        final String name;
+        final int spanDepth;
+        final int tagsPerSpan;
+        final int logsPerSpan;
+        final int logBytes;
+        final long work;
+
+        private Profile(String name, Properties props) {
+            this.name = name;
+            this.spanDepth = intValue(props, name + ".spanDepth", 1);
+            this.tagsPerSpan = intValue(props, name + ".tagsPerSpan", 2);
+            this.logsPerSpan = intValue(props, name + ".logsPerSpan", 0);
+            this.logBytes = intValue(props, name + ".logBytes", 0);
+            this.work = intValue(props, name + ".work", 1000);
+
+            if (spanDepth <= 0 || tagsPerSpan < 0 || logsPerSpan < 0 || logBytes < 0 || work < 0) {
+                throw new IllegalArgumentException("Invalid profile " + name);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " (depth " + spanDepth + ", " + tagsPerSpan + " tags, " + logsPerSpan + " logs of "
+                    + logBytes + " bytes)";
+        }
+    }
+
+    private static int intValue(Properties props, String name, int defaultValue) {
+        String value = props.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static List<String> listValue(Properties props, String name, String defaultValue) {
+        List<String> values = new ArrayList<>();
+        for (String value : props.getProperty(name, defaultValue).split(",")) {
+            if (!value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
+}
@@ -29,6 +29,7 @@ perl -pi -e 's/(\d+)\.(\d+)\.(\d+)/ $ENV{NEW_VERSION} /ge' ${VERSION_SOURCE}
 
 # Commit the changes
 git add benchmark/pom.xml
+git add benchmark-jmh/pom.xml
 git add examples/pom.xml
 git add lightstep-tracer-jre/pom.xml
 git add lightstep-tracer-jre-bundle/pom.xml
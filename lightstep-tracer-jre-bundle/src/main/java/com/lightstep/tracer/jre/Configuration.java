@@ -15,14 +15,20 @@ final class Configuration {
     public final static String DEFAULT_CONFIGURATION_FILE_PATH = "tracer.properties";
     public final static String CONFIGURATION_FILE_KEY = "tracer.configurationFile";
 
-    public static Properties loadConfigurationFile() {
+    public static File getConfigurationFile() {
         String path = System.getProperty(CONFIGURATION_FILE_KEY);
         if (path == null)
             path = DEFAULT_CONFIGURATION_FILE_PATH;
 
+        return new File(path);
+    }
+
+    public static Properties loadConfigurationFile() {
+        File file = getConfigurationFile();
+        String path = file.getPath();
+
         Properties props = new Properties();
 
-        File file = new File(path);
         if (!file.isFile())
             return props;
 
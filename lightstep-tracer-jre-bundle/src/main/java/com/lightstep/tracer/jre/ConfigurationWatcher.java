@@ -0,0 +1,97 @@
+package com.lightstep.tracer.jre;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the configuration file of a tracer created with live reconfiguration, and
+ * applies its {@link TracerParameters#DYNAMIC} parameters to the tracer whenever the file
+ * changes. System properties still take precedence over the file, and parameters removed
+ * from the file keep their last value. Stops once the tracer is closed.
+ */
+final class ConfigurationWatcher implements Runnable {
+    private final static Logger logger = Logger.getLogger(ConfigurationWatcher.class.getName());
+
+    private static final String THREAD_NAME = "lightstep-configuration-watcher";
+
+    // How often the watcher checks whether the tracer was closed.
+    private static final long POLL_MILLIS = 1000;
+
+    private final JRETracer tracer;
+    private final String fileName;
+    private final WatchService watchService;
+
+    private ConfigurationWatcher(JRETracer tracer, String fileName, WatchService watchService) {
+        this.tracer = tracer;
+        this.fileName = fileName;
+        this.watchService = watchService;
+    }
+
+    /**
+     * Starts watching the configuration file on a daemon thread.
+     */
+    static void start(JRETracer tracer) {
+        File file = Configuration.getConfigurationFile().getAbsoluteFile();
+        Path directory = file.getParentFile().toPath();
+        try {
+            WatchService watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            ReporterThreads.newThread(THREAD_NAME, new ConfigurationWatcher(tracer, file.getName(), watchService))
+                .start();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to watch the Tracer configuration file '" + file + "': " + e);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!tracer.isDisabled()) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null)
+                    continue;
+
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() != null && fileName.equals(event.context().toString()))
+                        changed = true;
+                }
+                if (changed)
+                    reload();
+                if (!key.reset()) {
+                    logger.log(Level.WARNING, "The directory of the Tracer configuration file is no longer watched");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Failed to close the configuration watch service", e);
+            }
+        }
+    }
+
+    private void reload() {
+        Map<String, String> params = TracerParameters.getParameters();
+        try {
+            tracer.reconfigure(TracerParameters.getDynamicOptionsFromParameters(new DynamicOptions.OptionsBuilder(), params)
+                .build());
+            logger.log(Level.INFO, "Applied the Tracer configuration file: " + tracer.getDynamicOptions());
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to apply the Tracer configuration file: " + e);
+        }
+    }
+}
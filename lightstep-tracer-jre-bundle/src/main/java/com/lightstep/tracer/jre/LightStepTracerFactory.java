@@ -4,16 +4,54 @@ import com.lightstep.tracer.shared.Options;
 import io.opentracing.Tracer;
 import io.opentracing.contrib.tracerresolver.TracerFactory;
 
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class LightStepTracerFactory implements TracerFactory {
     private static final Logger logger = Logger.getLogger(LightStepTracerFactory.class.getName());
 
+    // The tracers created so far, by factory class and parameters, reused until closed.
+    private static final Map<TracerKey, JRETracer> tracers = new HashMap<>();
+
+    /**
+     * Returns the tracer created by an earlier call of a factory of the same class with the
+     * same parameters, if it is still open, or a new one.
+     */
     @Override
     public Tracer getTracer()
     {
-        Options.OptionsBuilder optsBuilder = TracerParameters.getOptionsFromParameters(createOptionsBuilder());
+        Map<String, String> params = new HashMap<>(TracerParameters.getParameters());
+        TracerKey key = new TracerKey(getClass(), params);
+        synchronized (tracers) {
+            removeClosedTracers();
+            JRETracer tracer = tracers.get(key);
+            if (tracer != null) {
+                logger.log(Level.INFO, "Reusing LightStep Tracer: " + tracer);
+                return tracer;
+            }
+
+            tracer = createTracer(params);
+            if (tracer != null) {
+                tracers.put(key, tracer);
+            }
+            return tracer;
+        }
+    }
+
+    private static void removeClosedTracers() {
+        Iterator<JRETracer> iterator = tracers.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDisabled()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private JRETracer createTracer(Map<String, String> params) {
+        Options.OptionsBuilder optsBuilder = TracerParameters.getOptionsFromParameters(createOptionsBuilder(), params);
         if (optsBuilder == null) {
             logger.log(Level.WARNING, "No ls.accessToken value was provided, not trying to initialize the LightStep Tracer");
             return null;
@@ -26,9 +64,14 @@ public class LightStepTracerFactory implements TracerFactory {
         // in practice a few RuntimeException-children can show up.
         try {
             opts = optsBuilder.build();
-            tracer = new JRETracer(opts);
+            JREOptions jreOpts = TracerParameters.getJREOptionsFromParameters(new JREOptions.OptionsBuilder(), params)
+                .build();
+            tracer = new JRETracer(opts, jreOpts);
             logger.log(Level.INFO, "Created LightStep Tracer: " + tracer);
 
+            if (jreOpts.liveReconfiguration)
+                ConfigurationWatcher.start(tracer);
+
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to create a LightStep Tracer instance: " + e);
             return null;
@@ -37,7 +80,56 @@ public class LightStepTracerFactory implements TracerFactory {
         return tracer;
     }
 
+    /**
+     * Forgets the tracers created so far, without closing them.
+     */
+    static void clearTracers() {
+        synchronized (tracers) {
+            tracers.clear();
+        }
+    }
+
+    /**
+     * Returns the number of tracers kept for reuse, closed or not.
+     */
+    static int tracerCount() {
+        synchronized (tracers) {
+            return tracers.size();
+        }
+    }
+
     protected Options.OptionsBuilder createOptionsBuilder() {
         return new Options.OptionsBuilder();
     }
+
+    /**
+     * The class of the factory that created a tracer, which may build its options
+     * differently through {@link #createOptionsBuilder()}, and the parameters it used.
+     */
+    private static final class TracerKey {
+        private final Class<?> factoryClass;
+        private final Map<String, String> params;
+
+        TracerKey(Class<?> factoryClass, Map<String, String> params) {
+            this.factoryClass = factoryClass;
+            this.params = params;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TracerKey)) {
+                return false;
+            }
+            TracerKey other = (TracerKey) o;
+            return factoryClass == other.factoryClass && params.equals(other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * factoryClass.hashCode() + params.hashCode();
+        }
+    }
 }
@@ -3,9 +3,12 @@ package com.lightstep.tracer.jre;
 import com.google.common.base.Strings;
 import com.lightstep.tracer.shared.B3Propagator;
 import com.lightstep.tracer.shared.Options;
+import com.lightstep.tracer.shared.ReportCompression;
 import io.opentracing.propagation.Format;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Level;
@@ -46,6 +49,35 @@ public final class TracerParameters {
     public final static String DISABLE_METRICS_REPORTING = "ls.disableMetricsReporting";
     public final static String METRICS_URL = "ls.metricsUrl";
     public final static String HOSTNAME = "ls.hostname";
+    public final static String SPAN_BUFFER_OVERFLOW_POLICY = "ls.spanBufferOverflowPolicy";
+    public final static String SPAN_BUFFER_BLOCK_TIMEOUT_MILLIS = "ls.spanBufferBlockTimeoutMillis";
+    public final static String SPILL_DIRECTORY = "ls.spillDirectory";
+    public final static String SPILL_MAX_BYTES = "ls.spillMaxBytes";
+    public final static String SAMPLER_TYPE = "ls.sampler.type";
+    public final static String SAMPLER_PARAM = "ls.sampler.param";
+    public final static String ADAPTIVE_REPORTING = "ls.adaptiveReporting";
+    public final static String STREAMING_REPORT_ENCODING = "ls.streamingReportEncoding";
+    public final static String DIRECT_REPORT_BUFFERS = "ls.directReportBuffers";
+    public final static String COMPRESSION = "ls.compression";
+    public final static String COMPRESSION_LEVEL = "ls.compressionLevel";
+    public final static String SPAN_RECYCLING = "ls.spanRecycling";
+    public final static String MAX_LOGS_PER_SPAN = "ls.maxLogsPerSpan";
+    public final static String MAX_TAGS_PER_SPAN = "ls.maxTagsPerSpan";
+    public final static String MAX_LOG_PAYLOAD_BYTES = "ls.maxLogPayloadBytes";
+    public final static String MAX_TAG_VALUE_BYTES = "ls.maxTagValueBytes";
+    public final static String SPAN_METRICS = "ls.spanMetrics";
+    public final static String SPAN_METRICS_MAX_OPERATIONS = "ls.spanMetricsMaxOperations";
+    public final static String JMX = "ls.jmx";
+    public final static String LIVE_RECONFIGURATION = "ls.liveReconfiguration";
+    public final static String SHARED_SCHEDULER = "ls.sharedScheduler";
+    public final static String JFR_METRICS = "ls.jfrMetrics";
+    public final static String MAX_INFLIGHT_REPORTS = "ls.maxInflightReports";
+    public final static String MAX_REPORT_RETRIES = "ls.maxReportRetries";
+    public final static String COLLECTOR_ENDPOINTS = "ls.collectorEndpoints";
+    public final static String HEADER_CODEC = "ls.headerCodec";
+
+    final static String SAMPLER_PROBABILISTIC = "probabilistic";
+    final static String SAMPLER_RATE_LIMITING = "ratelimiting";
 
     public final static String [] ALL = {
         ACCESS_TOKEN,
@@ -66,13 +98,55 @@ public final class TracerParameters {
         SERVICE_VERSION,
         DISABLE_METRICS_REPORTING,
         METRICS_URL,
-        HOSTNAME
+        HOSTNAME,
+        SPAN_BUFFER_OVERFLOW_POLICY,
+        SPAN_BUFFER_BLOCK_TIMEOUT_MILLIS,
+        SPILL_DIRECTORY,
+        SPILL_MAX_BYTES,
+        SAMPLER_TYPE,
+        SAMPLER_PARAM,
+        ADAPTIVE_REPORTING,
+        STREAMING_REPORT_ENCODING,
+        DIRECT_REPORT_BUFFERS,
+        COMPRESSION,
+        COMPRESSION_LEVEL,
+        SPAN_RECYCLING,
+        MAX_LOGS_PER_SPAN,
+        MAX_TAGS_PER_SPAN,
+        MAX_LOG_PAYLOAD_BYTES,
+        MAX_TAG_VALUE_BYTES,
+        SPAN_METRICS,
+        SPAN_METRICS_MAX_OPERATIONS,
+        JMX,
+        LIVE_RECONFIGURATION,
+        SHARED_SCHEDULER,
+        JFR_METRICS,
+        MAX_INFLIGHT_REPORTS,
+        MAX_REPORT_RETRIES,
+        COLLECTOR_ENDPOINTS,
+        HEADER_CODEC
+    };
+
+    /**
+     * Parameters applied to the running tracer when the configuration file changes, with
+     * live reconfiguration enabled.
+     */
+    public final static String [] DYNAMIC = {
+        MAX_BUFFERED_SPANS,
+        MAX_REPORTING_INTERVAL_MILLIS,
+        VERBOSITY,
+        SAMPLER_TYPE,
+        SAMPLER_PARAM
     };
 
     // NOTE: we could probably make this prettier
     // if we could use Java 8 Lambdas ;)
     public static Options.OptionsBuilder getOptionsFromParameters(Options.OptionsBuilder optionsBuilder) {
-        Map<String, String> params = getParameters();
+        return getOptionsFromParameters(optionsBuilder, getParameters());
+    }
+
+    public static Options.OptionsBuilder getOptionsFromParameters(Options.OptionsBuilder optionsBuilder,
+                                                                  Map<String, String> params) {
         if (!params.containsKey(ACCESS_TOKEN))
             return null;
 
@@ -189,17 +263,187 @@ public final class TracerParameters {
         return opts;
     }
 
+    public static JREOptions.OptionsBuilder getJREOptionsFromParameters(JREOptions.OptionsBuilder jreOptionsBuilder,
+                                                                        Map<String, String> params) {
+        JREOptions.OptionsBuilder opts = jreOptionsBuilder;
+
+        if (params.containsKey(SPAN_BUFFER_OVERFLOW_POLICY)) {
+            OverflowPolicy value = toOverflowPolicy(params.get(SPAN_BUFFER_OVERFLOW_POLICY));
+            if (value != null)
+                opts.withSpanBufferOverflowPolicy(value);
+        }
+
+        // The span buffer holds as many spans as the report buffer.
+        if (params.containsKey(MAX_BUFFERED_SPANS)) {
+            Integer value = toInteger(params.get(MAX_BUFFERED_SPANS));
+            if (validatePositive(value))
+                opts.withSpanBufferCapacity(value);
+        }
+
+        if (params.containsKey(SPAN_BUFFER_BLOCK_TIMEOUT_MILLIS)) {
+            Long value = toLong(params.get(SPAN_BUFFER_BLOCK_TIMEOUT_MILLIS));
+            if (value != null && value >= 0)
+                opts.withSpanBufferBlockTimeoutMillis(value);
+        }
+
+        if (params.containsKey(SPILL_DIRECTORY)) {
+            String value = params.get(SPILL_DIRECTORY);
+            if (validateNonEmptyString(value))
+                opts.withSpillDirectory(value);
+        }
+
+        if (params.containsKey(SPILL_MAX_BYTES)) {
+            Long value = toLong(params.get(SPILL_MAX_BYTES));
+            if (value != null && value > 0)
+                opts.withSpillMaxBytes(value);
+        }
+
+        if (params.containsKey(SAMPLER_TYPE)) {
+            Sampler sampler = toSampler(params.get(SAMPLER_TYPE), params.get(SAMPLER_PARAM));
+            if (sampler != null)
+                opts.withSampler(sampler);
+        }
+
+        if (params.containsKey(ADAPTIVE_REPORTING))
+            opts.withAdaptiveReporting(toBoolean(params.get(ADAPTIVE_REPORTING)));
+
+        if (params.containsKey(STREAMING_REPORT_ENCODING))
+            opts.withStreamingReportEncoding(toBoolean(params.get(STREAMING_REPORT_ENCODING)));
+
+        if (params.containsKey(DIRECT_REPORT_BUFFERS))
+            opts.withDirectReportBuffers(toBoolean(params.get(DIRECT_REPORT_BUFFERS)));
+
+        if (params.containsKey(COMPRESSION)) {
+            ReportCompression value = toReportCompression(params.get(COMPRESSION));
+            if (value != null)
+                opts.withReportCompression(value);
+        }
+
+        if (params.containsKey(COMPRESSION_LEVEL)) {
+            Integer value = toInteger(params.get(COMPRESSION_LEVEL));
+            if (value != null)
+                opts.withReportCompressionLevel(value);
+        }
+
+        if (params.containsKey(SPAN_RECYCLING))
+            opts.withSpanRecycling(toBoolean(params.get(SPAN_RECYCLING)));
+
+        if (params.containsKey(MAX_LOGS_PER_SPAN)) {
+            Integer value = toInteger(params.get(MAX_LOGS_PER_SPAN));
+            if (validatePositive(value))
+                opts.withMaxLogsPerSpan(value);
+        }
+
+        if (params.containsKey(MAX_TAGS_PER_SPAN)) {
+            Integer value = toInteger(params.get(MAX_TAGS_PER_SPAN));
+            if (validatePositive(value))
+                opts.withMaxTagsPerSpan(value);
+        }
+
+        if (params.containsKey(MAX_LOG_PAYLOAD_BYTES)) {
+            Integer value = toInteger(params.get(MAX_LOG_PAYLOAD_BYTES));
+            if (validatePositive(value))
+                opts.withMaxLogPayloadBytes(value);
+        }
+
+        if (params.containsKey(MAX_TAG_VALUE_BYTES)) {
+            Integer value = toInteger(params.get(MAX_TAG_VALUE_BYTES));
+            if (validatePositive(value))
+                opts.withMaxTagValueBytes(value);
+        }
+
+        if (params.containsKey(SPAN_METRICS))
+            opts.withSpanMetrics(toBoolean(params.get(SPAN_METRICS)));
+
+        if (params.containsKey(SPAN_METRICS_MAX_OPERATIONS)) {
+            Integer value = toInteger(params.get(SPAN_METRICS_MAX_OPERATIONS));
+            if (validatePositive(value))
+                opts.withSpanMetricsMaxOperations(value);
+        }
+
+        if (params.containsKey(JMX))
+            opts.withJmx(toBoolean(params.get(JMX)));
+
+        if (params.containsKey(LIVE_RECONFIGURATION))
+            opts.withLiveReconfiguration(toBoolean(params.get(LIVE_RECONFIGURATION)));
+
+        if (params.containsKey(SHARED_SCHEDULER))
+            opts.withSharedScheduler(toBoolean(params.get(SHARED_SCHEDULER)));
+
+        if (params.containsKey(JFR_METRICS))
+            opts.withJfrMetrics(toBoolean(params.get(JFR_METRICS)));
+
+        if (params.containsKey(MAX_INFLIGHT_REPORTS)) {
+            Integer value = toInteger(params.get(MAX_INFLIGHT_REPORTS));
+            if (validatePositive(value))
+                opts.withMaxInflightReports(value);
+        }
+
+        if (params.containsKey(MAX_REPORT_RETRIES)) {
+            Integer value = toInteger(params.get(MAX_REPORT_RETRIES));
+            if (validateNonNegative(value))
+                opts.withMaxReportRetries(value);
+        }
+
+        if (params.containsKey(COLLECTOR_ENDPOINTS)) {
+            List<String> endpoints = toList(params.get(COLLECTOR_ENDPOINTS));
+            if (!endpoints.isEmpty())
+                opts.withCollectorEndpoints(endpoints);
+            else
+                logger.log(Level.WARNING, "Failed to detect collector endpoints '" + params.get(COLLECTOR_ENDPOINTS) + "'");
+        }
+
+        if (params.containsKey(HEADER_CODEC))
+            opts.withHeaderCodec(toBoolean(params.get(HEADER_CODEC)));
+
+        return opts;
+    }
+
+    public static DynamicOptions.OptionsBuilder getDynamicOptionsFromParameters(DynamicOptions.OptionsBuilder optionsBuilder,
+                                                                                Map<String, String> params) {
+        DynamicOptions.OptionsBuilder opts = optionsBuilder;
+
+        if (params.containsKey(MAX_BUFFERED_SPANS)) {
+            Integer value = toInteger(params.get(MAX_BUFFERED_SPANS));
+            if (validatePositive(value))
+                opts.withMaxBufferedSpans(value);
+        }
+
+        if (params.containsKey(MAX_REPORTING_INTERVAL_MILLIS)) {
+            Integer value = toInteger(params.get(MAX_REPORTING_INTERVAL_MILLIS));
+            if (validatePositive(value))
+                opts.withMaxReportingIntervalMillis(value);
+        }
+
+        if (params.containsKey(VERBOSITY)) {
+            Integer value = toInteger(params.get(VERBOSITY));
+            if (validateVerbosity(value))
+                opts.withVerbosity(value);
+        }
+
+        if (params.containsKey(SAMPLER_TYPE)) {
+            Sampler sampler = toSampler(params.get(SAMPLER_TYPE), params.get(SAMPLER_PARAM));
+            if (sampler != null)
+                opts.withSampler(sampler);
+        }
+
+        return opts;
+    }
+
     @SuppressWarnings({"unchecked", "rawtypes"})
     public static Map<String, String> getParameters() {
         Properties props = Configuration.loadConfigurationFile();
         loadSystemProperties(props);
 
-        for (String propName : props.stringPropertyNames()) {
-            String value = props.getProperty(propName);
-            if (ACCESS_TOKEN.equals(propName)) {
-                value = hideString(value);
+        // Logged at FINE, as this runs on the startup path of the application.
+        if (logger.isLoggable(Level.FINE)) {
+            for (String propName : props.stringPropertyNames()) {
+                String value = props.getProperty(propName);
+                if (ACCESS_TOKEN.equals(propName)) {
+                    value = hideString(value);
+                }
+                logger.log(Level.FINE, "Retrieved Tracer parameter " + propName + "=" + value);
             }
-            logger.log(Level.INFO, "Retrieved Tracer parameter " + propName + "=" + value);
         }
 
         // A Properties object is expected to only contain String keys/values.
@@ -253,6 +497,66 @@ public final class TracerParameters {
         return l;
     }
 
+    private static OverflowPolicy toOverflowPolicy(String value) {
+        for (OverflowPolicy policy : OverflowPolicy.values()) {
+            if (policy.name().toLowerCase().equals(value)) {
+                return policy;
+            }
+        }
+
+        logger.log(Level.WARNING, "Failed to validate overflow policy value '" + value + "'");
+        return null;
+    }
+
+    private static ReportCompression toReportCompression(String value) {
+        for (ReportCompression compression : ReportCompression.values()) {
+            if (compression.name().toLowerCase().equals(value)) {
+                return compression;
+            }
+        }
+
+        logger.log(Level.WARNING, "Failed to validate compression value '" + value + "'");
+        return null;
+    }
+
+    private static Sampler toSampler(String type, String param) {
+        Double value = param == null ? null : toDouble(param);
+        if (value == null) {
+            logger.log(Level.WARNING, "Failed to validate sampler: " + SAMPLER_PARAM + " is required");
+            return null;
+        }
+
+        if (SAMPLER_PROBABILISTIC.equals(type)) {
+            if (value < 0 || value > 1) {
+                logger.log(Level.WARNING, "Failed to validate sampling probability '" + value + "'");
+                return null;
+            }
+            return new ProbabilisticSampler(value);
+        }
+
+        if (SAMPLER_RATE_LIMITING.equals(type)) {
+            if (value <= 0) {
+                logger.log(Level.WARNING, "Failed to validate sampling rate '" + value + "'");
+                return null;
+            }
+            return new RateLimitingSampler(value);
+        }
+
+        logger.log(Level.WARNING, "Failed to validate sampler type '" + type + "'");
+        return null;
+    }
+
+    private static Double toDouble(String value) {
+        Double d = null;
+        try {
+            d = Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            logger.log(Level.WARNING, "Failed to convert Tracer parameter value '" + value + "' to double");
+        }
+
+        return d;
+    }
+
     private static Boolean toBoolean(String value) {
         return Boolean.valueOf(value);
     }
@@ -273,6 +577,16 @@ public final class TracerParameters {
         return tagMap;
     }
 
+    private static List<String> toList(String value) {
+        List<String> list = new ArrayList<>();
+        for (String part : value.split(VALUES_SEPARATOR)) {
+            if (part.trim().length() > 0)
+                list.add(part.trim());
+        }
+
+        return list;
+    }
+
     private static boolean validateProtocol(String value) {
         if (!HTTPS.equals(value) && !HTTP.equals(value)) {
             logger.log(Level.WARNING, "Failed to validate protocol value '" + value + "'");
@@ -291,6 +605,33 @@ public final class TracerParameters {
         return true;
     }
 
+    private static boolean validatePositive(Integer value) {
+        if (value == null || value <= 0) {
+            logger.log(Level.WARNING, "Failed to validate Tracer parameter value '" + value + "' as positive");
+            return false;
+        }
+
+        return true;
+    }
+
+    private static boolean validateNonNegative(Integer value) {
+        if (value == null || value < 0) {
+            logger.log(Level.WARNING, "Failed to validate Tracer parameter value '" + value + "' as non-negative");
+            return false;
+        }
+
+        return true;
+    }
+
+    private static boolean validateVerbosity(Integer value) {
+        if (value == null || value < Options.VERBOSITY_NONE || value > Options.VERBOSITY_DEBUG) {
+            logger.log(Level.WARNING, "Failed to validate verbosity value '" + value + "'");
+            return false;
+        }
+
+        return true;
+    }
+
     private static boolean validateNonEmptyString(String value) {
         if (value == null || value.trim().length() == 0) {
             logger.log(Level.WARNING, "Failed to validate Tracer parameter as non-empty String");
@@ -11,11 +11,15 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.net.MalformedURLException;
 import java.util.Properties;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class LightStepTracerFactoryTest {
@@ -34,6 +38,9 @@ public class LightStepTracerFactoryTest {
 
         // And set the only required parameter.
         System.setProperty(TracerParameters.ACCESS_TOKEN, TOKEN);
+
+        // Each test builds its own tracer.
+        LightStepTracerFactory.clearTracers();
     }
 
     @After
@@ -69,6 +76,154 @@ public class LightStepTracerFactoryTest {
         assertTrue(tracer instanceof JRETracer);
     }
 
+    @Test
+    public void getTracer_withSpanBufferOverflowPolicy() {
+        System.setProperty(TracerParameters.SPAN_BUFFER_OVERFLOW_POLICY, "drop_oldest");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        assertTrue(tracer.buildSpan("test_span").start() instanceof JRESpan);
+    }
+
+    @Test
+    public void getTracer_withInvalidSpanBufferOverflowPolicy() {
+        System.setProperty(TracerParameters.SPAN_BUFFER_OVERFLOW_POLICY, "invalidpolicy");
+        tracer = createTracer();
+        assertNotNull(tracer); // No errors.
+
+        assertTrue(tracer.buildSpan("test_span").start() instanceof com.lightstep.tracer.shared.Span);
+    }
+
+    @Test
+    public void getTracer_withSampler() {
+        System.setProperty(TracerParameters.SAMPLER_TYPE, "probabilistic");
+        System.setProperty(TracerParameters.SAMPLER_PARAM, "0");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        assertTrue(tracer.buildSpan("test_span").start() instanceof UnsampledSpan);
+    }
+
+    @Test
+    public void getTracer_withInvalidSampler() {
+        System.setProperty(TracerParameters.SAMPLER_TYPE, "probabilistic");
+        System.setProperty(TracerParameters.SAMPLER_PARAM, "2");
+        tracer = createTracer();
+        assertNotNull(tracer); // No errors.
+
+        assertTrue(tracer.buildSpan("test_span").start() instanceof com.lightstep.tracer.shared.Span);
+    }
+
+    @Test
+    public void getTracer_withAdaptiveReporting() {
+        System.setProperty(TracerParameters.ADAPTIVE_REPORTING, "true");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        assertEquals("initial", ((JRETracer) tracer).status().getTag(JRETracer.REPORTING_DECISION_STATUS_KEY));
+    }
+
+    @Test
+    public void getTracer_withStreamingReportEncoding() {
+        System.setProperty(TracerParameters.STREAMING_REPORT_ENCODING, "true");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        assertTrue(((JRETracer) tracer).isStreamingReportEncoding());
+    }
+
+    @Test
+    public void getTracer_withCompression() {
+        System.setProperty(TracerParameters.COMPRESSION, "gzip");
+        System.setProperty(TracerParameters.COMPRESSION_LEVEL, "9");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        assertTrue(((JRETracer) tracer).isStreamingReportEncoding());
+    }
+
+    @Test
+    public void getTracer_withSpanRecycling() {
+        System.setProperty(TracerParameters.SPAN_RECYCLING, "true");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        assertTrue(tracer.buildSpan("test_span").start() instanceof RecycledSpan);
+    }
+
+    @Test
+    public void getTracer_withSpanLimits() {
+        System.setProperty(TracerParameters.MAX_TAGS_PER_SPAN, "1");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        tracer.buildSpan("test_span").withTag("first", 1).withTag("second", 2).start().finish();
+        assertEquals("1", ((JRETracer) tracer).status().getTag(JRETracer.DROPPED_SPAN_TAGS_STATUS_KEY));
+    }
+
+    @Test
+    public void getTracer_withSpanMetrics() {
+        System.setProperty(TracerParameters.SPAN_METRICS, "true");
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        tracer.buildSpan("test_span").start().finish();
+        assertEquals(1, ((JRETracer) tracer).spanMetrics().getRequestCount("test_span"));
+    }
+
+    @Test
+    public void getTracer_withJmx() {
+        System.setProperty(TracerParameters.JMX, "true");
+        tracer = createTracer();
+        assertNotNull(tracer);
+        assertNotNull(((JRETracer) tracer).mxBeanName());
+    }
+
+    @Test
+    public void getTracer_withSharedScheduler() {
+        System.setProperty(TracerParameters.SHARED_SCHEDULER, "true");
+        tracer = createTracer();
+        assertNotNull(tracer);
+        assertTrue(((JRETracer) tracer).isStreamingReportEncoding());
+    }
+
+    @Test
+    public void getTracer_reusesTracerForSameParameters() {
+        tracer = createTracer();
+        assertNotNull(tracer);
+        assertSame(tracer, createTracer());
+    }
+
+    @Test
+    public void getTracer_doesNotReuseTracersOfOtherFactories() {
+        tracer = createTracer();
+        assertNotNull(tracer);
+
+        Tracer other = new DefaultOptionsFactory().getTracer();
+        assertNotNull(other);
+        assertNotSame(tracer, other);
+        assertSame(other, new DefaultOptionsFactory().getTracer());
+    }
+
+    @Test
+    public void getTracer_dropsClosedTracers() {
+        expectedToken = null;
+
+        JRETracer closed = (JRETracer) new DefaultOptionsFactory().getTracer();
+        closed.close();
+        assertEquals(1, LightStepTracerFactory.tracerCount());
+
+        System.setProperty(TracerParameters.COMPONENT_NAME, "other");
+        tracer = new DefaultOptionsFactory().getTracer();
+        assertEquals(1, LightStepTracerFactory.tracerCount());
+
+        System.clearProperty(TracerParameters.COMPONENT_NAME);
+        Tracer reopened = new DefaultOptionsFactory().getTracer();
+        assertNotNull(reopened);
+        assertNotSame(closed, reopened);
+        assertEquals(2, LightStepTracerFactory.tracerCount());
+    }
+
     @Test
     public void getTracer_withInvalidClockSkewCorrection() {
         System.setProperty(TracerParameters.CLOCK_SKEW_CORRECTION, "invalidbool");
@@ -357,6 +512,42 @@ public class LightStepTracerFactoryTest {
         }
     }
 
+    @Test
+    public void getTracer_ConfigurationFileLiveReconfiguration() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(TracerParameters.LIVE_RECONFIGURATION, "true");
+
+        File file = null;
+        try {
+            file = Utils.savePropertiesToTempFile(props);
+            System.setProperty(Configuration.CONFIGURATION_FILE_KEY, file.getAbsolutePath());
+
+            tracer = createTracer();
+            assertNotNull(tracer);
+            JRETracer jreTracer = (JRETracer) tracer;
+            assertNull(jreTracer.getDynamicOptions().getSampler());
+
+            props.setProperty(TracerParameters.VERBOSITY, "4");
+            props.setProperty(TracerParameters.SAMPLER_TYPE, "probabilistic");
+            props.setProperty(TracerParameters.SAMPLER_PARAM, "0.5");
+            try (FileOutputStream stream = new FileOutputStream(file)) {
+                props.store(stream, "");
+            }
+
+            long deadline = System.currentTimeMillis() + 30000;
+            while (jreTracer.getDynamicOptions().getSampler() == null && System.currentTimeMillis() < deadline)
+                Thread.sleep(50);
+
+            assertEquals(4, (int) jreTracer.getDynamicOptions().getVerbosity());
+            assertEquals(0.5, ((ProbabilisticSampler) jreTracer.getDynamicOptions().getSampler()).getProbability(), 0);
+            jreTracer.close();
+
+        } finally {
+            if (file != null)
+                file.delete();
+        }
+    }
+
     @Test
     public void getTracer_ConfigurationFileInvalid() {
         System.clearProperty(TracerParameters.ACCESS_TOKEN);
@@ -376,4 +567,8 @@ public class LightStepTracerFactoryTest {
             }
         }.getTracer();
     }
+
+    // Builds its options without the spied builder, as another factory class.
+    private static class DefaultOptionsFactory extends LightStepTracerFactory {
+    }
 }
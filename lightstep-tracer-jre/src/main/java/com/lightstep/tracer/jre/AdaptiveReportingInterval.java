@@ -0,0 +1,152 @@
+package com.lightstep.tracer.jre;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the delay until the next report from the pressure on the report buffer.
+ *
+ * Spans added to the report buffer are counted as they are added. Crossing the high-water
+ * mark, half the buffer, requests a report right away. After each report, the interval is
+ * halved if the buffer was under pressure, doubled if little was buffered or the report
+ * failed, and kept otherwise, always staying between the minimum and maximum intervals.
+ * With both set to the same value, only the high-water mark changes when reports are made.
+ *
+ * After a failed report, the next one is made after a random delay between the minimum
+ * interval and the interval, so that processes whose reports failed together, during a
+ * collector outage, do not all report again together.
+ */
+class AdaptiveReportingInterval {
+    static final long MIN_INTERVAL_MILLIS = 500;
+
+    // Fraction of the report buffer under which the interval is backed off.
+    private static final int LOW_WATER_DIVISOR = 8;
+
+    enum Decision {
+        /**
+         * No report has been made yet: the interval starts at the minimum, so that the
+         * clock skew is corrected quickly.
+         */
+        INITIAL,
+        /**
+         * The high-water mark was reached: the interval was shortened.
+         */
+        HIGH_WATER,
+        /**
+         * Little was buffered: the interval was lengthened.
+         */
+        IDLE_BACKOFF,
+        /**
+         * The report failed: the interval was lengthened.
+         */
+        FAILURE_BACKOFF,
+        /**
+         * The interval was kept.
+         */
+        STEADY
+    }
+
+    private volatile long minIntervalMillis;
+    private volatile long maxIntervalMillis;
+    private volatile int highWaterMark;
+    private volatile int lowWaterMark;
+    private final AtomicInteger bufferedSpans = new AtomicInteger();
+
+    private volatile long intervalMillis;
+    private volatile Decision decision = Decision.INITIAL;
+
+    AdaptiveReportingInterval(long maxIntervalMillis, int maxBufferedSpans) {
+        this(MIN_INTERVAL_MILLIS, maxIntervalMillis, maxBufferedSpans);
+    }
+
+    AdaptiveReportingInterval(long minIntervalMillis, long maxIntervalMillis, int maxBufferedSpans) {
+        this.intervalMillis = minIntervalMillis;
+        reconfigure(minIntervalMillis, maxIntervalMillis, maxBufferedSpans);
+    }
+
+    /**
+     * Changes the bounds of the interval and the size of the report buffer, keeping the
+     * current interval if it is within the new bounds.
+     */
+    synchronized void reconfigure(long minIntervalMillis, long maxIntervalMillis, int maxBufferedSpans) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = Math.max(minIntervalMillis, maxIntervalMillis);
+        this.highWaterMark = Math.max(1, maxBufferedSpans / 2);
+        this.lowWaterMark = maxBufferedSpans / LOW_WATER_DIVISOR;
+        this.intervalMillis = Math.min(this.maxIntervalMillis, Math.max(minIntervalMillis, intervalMillis));
+    }
+
+    /**
+     * Counts a span added to the report buffer.
+     *
+     * @return true if the span made the buffer reach the high-water mark, in which case a
+     *         report should be made right away.
+     */
+    boolean spanBuffered() {
+        return bufferedSpans.incrementAndGet() == highWaterMark;
+    }
+
+    /**
+     * Returns the number of spans added to the report buffer since the previous report.
+     */
+    int bufferedSpans() {
+        return bufferedSpans.get();
+    }
+
+    /**
+     * Called before a report, which takes all the buffered spans.
+     *
+     * @return the number of spans added to the report buffer since the previous report.
+     */
+    int reportStarted() {
+        return bufferedSpans.getAndSet(0);
+    }
+
+    /**
+     * Updates the interval after a report.
+     *
+     * @param reportedSpans the value returned by {@link #reportStarted()}.
+     */
+    synchronized void reportCompleted(boolean success, int reportedSpans) {
+        long interval = intervalMillis;
+        if (!success) {
+            interval = interval * 2;
+            decision = Decision.FAILURE_BACKOFF;
+        } else if (reportedSpans >= highWaterMark) {
+            interval = interval / 2;
+            decision = Decision.HIGH_WATER;
+        } else if (reportedSpans <= lowWaterMark) {
+            interval = interval * 2;
+            decision = Decision.IDLE_BACKOFF;
+        } else {
+            decision = Decision.STEADY;
+        }
+        intervalMillis = Math.min(maxIntervalMillis, Math.max(minIntervalMillis, interval));
+    }
+
+    long getMaxIntervalMillis() {
+        return maxIntervalMillis;
+    }
+
+    long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * Returns the delay until the next report: the interval with a +/- 10% jitter, so that
+     * many processes started together do not report together, or anywhere between the
+     * minimum interval and the interval after a failed report.
+     */
+    long nextDelayMillis() {
+        long interval = intervalMillis;
+        if (decision == Decision.FAILURE_BACKOFF) {
+            long min = Math.min(minIntervalMillis, interval);
+            return min + ThreadLocalRandom.current().nextLong(interval - min + 1);
+        }
+        return (long) (interval * (0.9 + 0.2 * ThreadLocalRandom.current().nextDouble()));
+    }
+}
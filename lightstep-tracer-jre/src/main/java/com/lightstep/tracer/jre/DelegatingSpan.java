@@ -0,0 +1,174 @@
+package com.lightstep.tracer.jre;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.tag.Tag;
+
+import java.util.Map;
+
+/**
+ * {@link JRESpan} wrapping a span of the shared tracer library, which is finished once
+ * {@link JRETracer#spanFinished} decides to add it to the report buffer.
+ */
+final class DelegatingSpan extends JRESpan {
+    private final com.lightstep.tracer.shared.Span delegate;
+    private final long startMicros;
+    private final long startNanos;
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} at which the span was started, or -1
+     *                   if the span was given an explicit start timestamp.
+     */
+    DelegatingSpan(com.lightstep.tracer.shared.Span delegate, JRETracer tracer, long startNanos) {
+        super(tracer);
+        this.delegate = delegate;
+        this.startNanos = startNanos;
+        this.startMicros = toEpochMicros(delegate.getGrpcSpan().getStartTimestamp());
+    }
+
+    com.lightstep.tracer.shared.Span getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    void finishDelegate() {
+        delegate.finish(getFinishMicros());
+    }
+
+    @Override
+    com.lightstep.tracer.grpc.Span toGrpcSpan() {
+        return delegate.getGrpcSpan()
+                .setDurationMicros(getFinishMicros() - startMicros)
+                .build();
+    }
+
+    @Override
+    long getStartMicros() {
+        return startMicros;
+    }
+
+    @Override
+    String getOperationName() {
+        return delegate.getGrpcSpan().getOperationName();
+    }
+
+    @Override
+    void addLimitTag(String key, long value) {
+        delegate.setTag(key, value);
+    }
+
+    @Override
+    public SpanContext context() {
+        return delegate.context();
+    }
+
+    @Override
+    public Span setTag(String key, String value) {
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null) {
+            delegate.setTag(key, value);
+        } else if (key != null && value != null && acceptTag(limits)) {
+            delegate.setTag(key, limits.limitTagValue(value));
+        }
+        return this;
+    }
+
+    @Override
+    public Span setTag(String key, boolean value) {
+        tagSet(key, value);
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null || (key != null && acceptTag(limits))) {
+            delegate.setTag(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Span setTag(String key, Number value) {
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null || (key != null && value != null && acceptTag(limits))) {
+            delegate.setTag(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public <T> Span setTag(Tag<T> tag, T value) {
+        tag.set(this, value);
+        return this;
+    }
+
+    @Override
+    public Span log(Map<String, ?> fields) {
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null) {
+            delegate.log(fields);
+        } else if (acceptLog(limits)) {
+            delegate.log(limits.limitLogPayload(fields));
+        }
+        return this;
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, Map<String, ?> fields) {
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null) {
+            delegate.log(timestampMicroseconds, fields);
+        } else if (acceptLog(limits)) {
+            delegate.log(timestampMicroseconds, limits.limitLogPayload(fields));
+        }
+        return this;
+    }
+
+    @Override
+    public Span log(String event) {
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null) {
+            delegate.log(event);
+        } else if (acceptLog(limits)) {
+            delegate.log(limits.limitLogMessage(event));
+        }
+        return this;
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, String event) {
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null) {
+            delegate.log(timestampMicroseconds, event);
+        } else if (acceptLog(limits)) {
+            delegate.log(timestampMicroseconds, limits.limitLogMessage(event));
+        }
+        return this;
+    }
+
+    @Override
+    public Span setBaggageItem(String key, String value) {
+        delegate.setBaggageItem(key, value);
+        return this;
+    }
+
+    @Override
+    public String getBaggageItem(String key) {
+        return delegate.getBaggageItem(key);
+    }
+
+    @Override
+    public Span setOperationName(String operationName) {
+        delegate.setOperationName(operationName);
+        return this;
+    }
+
+    @Override
+    long nowMicros() {
+        if (startNanos < 0) {
+            return System.currentTimeMillis() * 1000;
+        }
+        return startMicros + (System.nanoTime() - startNanos) / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
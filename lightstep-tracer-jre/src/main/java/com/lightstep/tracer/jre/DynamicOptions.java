@@ -0,0 +1,172 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.shared.Options;
+
+/**
+ * Options of a {@link JRETracer} that can be changed while it runs, through
+ * {@link JRETracer#reconfigure(DynamicOptions)}, when it is created with
+ * {@link JREOptions.OptionsBuilder#withLiveReconfiguration(boolean)}.
+ *
+ * Options that are not set are left unchanged by a reconfiguration, and the options
+ * returned by {@link JRETracer#getDynamicOptions()} are all set.
+ */
+public final class DynamicOptions {
+    final Integer verbosity;
+    final Long maxReportingIntervalMillis;
+    final Integer maxBufferedSpans;
+    final boolean samplerSet;
+    final Sampler sampler;
+
+    private DynamicOptions(OptionsBuilder builder) {
+        this.verbosity = builder.verbosity;
+        this.maxReportingIntervalMillis = builder.maxReportingIntervalMillis;
+        this.maxBufferedSpans = builder.maxBufferedSpans;
+        this.samplerSet = builder.samplerSet;
+        this.sampler = builder.sampler;
+    }
+
+    /**
+     * Returns options with all of them set, without validating them.
+     */
+    static DynamicOptions of(int verbosity, long maxReportingIntervalMillis, int maxBufferedSpans,
+                             Sampler sampler) {
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.verbosity = verbosity;
+        builder.maxReportingIntervalMillis = maxReportingIntervalMillis;
+        builder.maxBufferedSpans = maxBufferedSpans;
+        return builder.withSampler(sampler).build();
+    }
+
+    /**
+     * Returns {@code changes} applied to these options.
+     */
+    DynamicOptions merge(DynamicOptions changes) {
+        OptionsBuilder builder = new OptionsBuilder(this);
+        if (changes.verbosity != null) {
+            builder.verbosity = changes.verbosity;
+        }
+        if (changes.maxReportingIntervalMillis != null) {
+            builder.maxReportingIntervalMillis = changes.maxReportingIntervalMillis;
+        }
+        if (changes.maxBufferedSpans != null) {
+            builder.maxBufferedSpans = changes.maxBufferedSpans;
+        }
+        if (changes.samplerSet) {
+            builder.withSampler(changes.sampler);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the verbosity of the internal logging of the tracer, or null if not set.
+     */
+    public Integer getVerbosity() {
+        return verbosity;
+    }
+
+    /**
+     * @return the maximum interval between reports, or null if not set.
+     */
+    public Long getMaxReportingIntervalMillis() {
+        return maxReportingIntervalMillis;
+    }
+
+    /**
+     * @return the maximum number of spans waiting in the report buffer, or null if not set.
+     */
+    public Integer getMaxBufferedSpans() {
+        return maxBufferedSpans;
+    }
+
+    /**
+     * @return whether the sampler is set.
+     */
+    public boolean isSamplerSet() {
+        return samplerSet;
+    }
+
+    /**
+     * @return the sampler, or null if it is not set or if all traces are recorded.
+     */
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamicOptions{verbosity=" + verbosity
+                + ", maxReportingIntervalMillis=" + maxReportingIntervalMillis
+                + ", maxBufferedSpans=" + maxBufferedSpans
+                + (samplerSet ? ", sampler=" + sampler : "")
+                + "}";
+    }
+
+    public static final class OptionsBuilder {
+        private Integer verbosity;
+        private Long maxReportingIntervalMillis;
+        private Integer maxBufferedSpans;
+        private boolean samplerSet;
+        private Sampler sampler;
+
+        public OptionsBuilder() {
+        }
+
+        public OptionsBuilder(DynamicOptions options) {
+            this.verbosity = options.verbosity;
+            this.maxReportingIntervalMillis = options.maxReportingIntervalMillis;
+            this.maxBufferedSpans = options.maxBufferedSpans;
+            this.samplerSet = options.samplerSet;
+            this.sampler = options.sampler;
+        }
+
+        /**
+         * Verbosity of the internal logging of the tracer, from
+         * {@link Options#VERBOSITY_NONE} to {@link Options#VERBOSITY_DEBUG}.
+         */
+        public OptionsBuilder withVerbosity(int verbosity) {
+            if (verbosity < Options.VERBOSITY_NONE || verbosity > Options.VERBOSITY_DEBUG) {
+                throw new IllegalArgumentException("Invalid verbosity: " + verbosity);
+            }
+            this.verbosity = verbosity;
+            return this;
+        }
+
+        /**
+         * Maximum interval between reports. With adaptive reporting, the interval goes up to
+         * this value; otherwise, reports are made at this interval.
+         */
+        public OptionsBuilder withMaxReportingIntervalMillis(long maxReportingIntervalMillis) {
+            if (maxReportingIntervalMillis <= 0) {
+                throw new IllegalArgumentException("Invalid max reporting interval: " + maxReportingIntervalMillis);
+            }
+            this.maxReportingIntervalMillis = maxReportingIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Maximum number of spans waiting in the report buffer, further spans being dropped.
+         * The report buffer is allocated when the tracer is created, so this can be lowered
+         * below, but not raised above, the maximum the tracer was created with.
+         */
+        public OptionsBuilder withMaxBufferedSpans(int maxBufferedSpans) {
+            if (maxBufferedSpans <= 0) {
+                throw new IllegalArgumentException("Invalid max buffered spans: " + maxBufferedSpans);
+            }
+            this.maxBufferedSpans = maxBufferedSpans;
+            return this;
+        }
+
+        /**
+         * Sampler deciding which traces are recorded, or null to record all of them.
+         */
+        public OptionsBuilder withSampler(Sampler sampler) {
+            this.samplerSet = true;
+            this.sampler = sampler;
+            return this;
+        }
+
+        public DynamicOptions build() {
+            return new DynamicOptions(this);
+        }
+    }
+}
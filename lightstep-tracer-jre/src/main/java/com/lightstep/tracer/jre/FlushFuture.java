@@ -0,0 +1,64 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.shared.SimpleFuture;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link SimpleFuture} backed by a {@link CompletableFuture}, so that the result of a
+ * report running on the reporter executor can be waited on, with or without a timeout,
+ * by any number of flush callers.
+ */
+class FlushFuture extends SimpleFuture<Boolean> {
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    private volatile boolean explicitRequest;
+
+    FlushFuture(boolean explicitRequest) {
+        this.explicitRequest = explicitRequest;
+    }
+
+    boolean isExplicitRequest() {
+        return explicitRequest;
+    }
+
+    /**
+     * Marks the pending report as explicitly requested, when an explicit flush joins a
+     * report that was scheduled by the reporting loop.
+     */
+    void markExplicitRequest() {
+        explicitRequest = true;
+    }
+
+    CompletableFuture<Boolean> toCompletableFuture() {
+        return result;
+    }
+
+    @Override
+    public void set(Boolean value) {
+        result.complete(value);
+    }
+
+    @Override
+    public Boolean get() throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Boolean getWithTimeout(long millis) throws InterruptedException {
+        try {
+            return result.get(millis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            return false;
+        } catch (TimeoutException e) {
+            // Same as SimpleFuture: an unresolved value is reported as null.
+            return null;
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.metrics.SpanMetrics;
+import com.lightstep.tracer.shared.Options;
+import com.lightstep.tracer.shared.ReportCompression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options specific to {@link JRETracer}, complementing the {@link Options} shared by all
+ * LightStep tracers.
+ */
+public final class JREOptions {
+    public static final long DEFAULT_SPAN_BUFFER_BLOCK_TIMEOUT_MILLIS = 100;
+    public static final long DEFAULT_SPILL_MAX_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * Policy applied by the span buffer when it is full, or null if finished spans are
+     * handed directly to the tracer.
+     */
+    final OverflowPolicy spanBufferOverflowPolicy;
+    final int spanBufferCapacity;
+    final long spanBufferBlockTimeoutMillis;
+
+    /**
+     * Directory of the spill queue, or null if spans finished while the collector is
+     * unavailable are only kept in the report buffer.
+     */
+    final String spillDirectory;
+    final long spillMaxBytes;
+
+    /**
+     * Sampler deciding which traces are recorded, or null if all of them are.
+     */
+    final Sampler sampler;
+
+    final boolean adaptiveReporting;
+
+    final boolean streamingReportEncoding;
+    final boolean directReportBuffers;
+
+    final ReportCompression reportCompression;
+    final int reportCompressionLevel;
+
+    final boolean spanRecycling;
+
+    // Limits on the tags and logs of each span, 0 for no limit.
+    final int maxLogsPerSpan;
+    final int maxTagsPerSpan;
+    final int maxLogPayloadBytes;
+    final int maxTagValueBytes;
+
+    final boolean spanMetrics;
+    final int spanMetricsMaxOperations;
+
+    final boolean jmx;
+
+    final boolean liveReconfiguration;
+
+    final boolean sharedScheduler;
+
+    final boolean jfrMetrics;
+
+    final int maxInflightReports;
+
+    final int maxReportRetries;
+
+    final List<String> collectorEndpoints;
+
+    final boolean headerCodec;
+
+    private JREOptions(OptionsBuilder builder) {
+        this.spanBufferOverflowPolicy = builder.spanBufferOverflowPolicy;
+        this.spanBufferCapacity = builder.spanBufferCapacity;
+        this.spanBufferBlockTimeoutMillis = builder.spanBufferBlockTimeoutMillis;
+        this.spillDirectory = builder.spillDirectory;
+        this.spillMaxBytes = builder.spillMaxBytes;
+        this.sampler = builder.sampler;
+        this.adaptiveReporting = builder.adaptiveReporting;
+        this.streamingReportEncoding = builder.streamingReportEncoding;
+        this.directReportBuffers = builder.directReportBuffers;
+        this.reportCompression = builder.reportCompression;
+        this.reportCompressionLevel = builder.reportCompressionLevel;
+        this.spanRecycling = builder.spanRecycling;
+        this.maxLogsPerSpan = builder.maxLogsPerSpan;
+        this.maxTagsPerSpan = builder.maxTagsPerSpan;
+        this.maxLogPayloadBytes = builder.maxLogPayloadBytes;
+        this.maxTagValueBytes = builder.maxTagValueBytes;
+        this.spanMetrics = builder.spanMetrics;
+        this.spanMetricsMaxOperations = builder.spanMetricsMaxOperations;
+        this.jmx = builder.jmx;
+        this.liveReconfiguration = builder.liveReconfiguration;
+        this.sharedScheduler = builder.sharedScheduler;
+        this.jfrMetrics = builder.jfrMetrics;
+        this.maxInflightReports = builder.maxInflightReports;
+        this.maxReportRetries = builder.maxReportRetries;
+        this.collectorEndpoints = builder.collectorEndpoints;
+        this.headerCodec = builder.headerCodec;
+    }
+
+    boolean isSpanBufferEnabled() {
+        return spanBufferOverflowPolicy != null;
+    }
+
+    boolean isSpillEnabled() {
+        return spillDirectory != null;
+    }
+
+    /**
+     * Returns whether reports are sent by the streaming HTTP collector client, which is
+     * also the one compressing them and sharing its connection pool with the client
+     * metrics.
+     */
+    boolean usesStreamingClient() {
+        return streamingReportEncoding || reportCompression != ReportCompression.NONE || sharedScheduler
+                || maxInflightReports > 1 || maxReportRetries > 0 || collectorEndpoints != null;
+    }
+
+    @SuppressWarnings({"WeakerAccess"})
+    public static class OptionsBuilder {
+        private OverflowPolicy spanBufferOverflowPolicy;
+        private int spanBufferCapacity = Options.DEFAULT_MAX_BUFFERED_SPANS;
+        private long spanBufferBlockTimeoutMillis = DEFAULT_SPAN_BUFFER_BLOCK_TIMEOUT_MILLIS;
+        private String spillDirectory;
+        private long spillMaxBytes = DEFAULT_SPILL_MAX_BYTES;
+        private Sampler sampler;
+        private boolean adaptiveReporting;
+        private boolean streamingReportEncoding;
+        private boolean directReportBuffers;
+        private ReportCompression reportCompression = ReportCompression.NONE;
+        private int reportCompressionLevel = ReportCompression.DEFAULT_LEVEL;
+        private boolean spanRecycling;
+        private int maxLogsPerSpan;
+        private int maxTagsPerSpan;
+        private int maxLogPayloadBytes;
+        private int maxTagValueBytes;
+        private boolean spanMetrics;
+        private int spanMetricsMaxOperations = SpanMetrics.DEFAULT_MAX_OPERATIONS;
+        private boolean jmx;
+        private boolean liveReconfiguration;
+        private boolean sharedScheduler;
+        private boolean jfrMetrics;
+        private int maxInflightReports = 1;
+        private int maxReportRetries;
+        private List<String> collectorEndpoints;
+        private boolean headerCodec;
+
+        /**
+         * Enables the span buffer: finished spans are queued in a lock-free ring buffer and
+         * handed to the tracer by a background thread, so that finishing a span never waits
+         * on the lock guarding the tracer's report buffer.
+         *
+         * @param overflowPolicy what to do with a finished span when the ring buffer is full.
+         */
+        public OptionsBuilder withSpanBufferOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.spanBufferOverflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Maximum number of finished spans held by the span buffer. Defaults to
+         * {@link Options#DEFAULT_MAX_BUFFERED_SPANS}.
+         */
+        public OptionsBuilder withSpanBufferCapacity(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Invalid span buffer capacity: " + capacity);
+            }
+            this.spanBufferCapacity = capacity;
+            return this;
+        }
+
+        /**
+         * How long a thread finishing a span waits for room in a full span buffer when
+         * using {@link OverflowPolicy#BLOCK}.
+         */
+        public OptionsBuilder withSpanBufferBlockTimeoutMillis(long timeoutMillis) {
+            if (timeoutMillis < 0) {
+                throw new IllegalArgumentException("Invalid span buffer block timeout: " + timeoutMillis);
+            }
+            this.spanBufferBlockTimeoutMillis = timeoutMillis;
+            return this;
+        }
+
+        /**
+         * Enables the spill queue: while reports to the collector fail, the finished spans
+         * that the report buffer has no room for are written to segment files in this
+         * directory by the report executor, instead of being dropped, and are replayed a
+         * batch per report once reports succeed again. Segments left by a previous process
+         * are replayed too, so each tracer needs a directory of its own.
+         */
+        public OptionsBuilder withSpillDirectory(String directory) {
+            this.spillDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Maximum size of the spill queue files. Spans finished once it is reached are
+         * dropped. Defaults to {@link #DEFAULT_SPILL_MAX_BYTES}.
+         */
+        public OptionsBuilder withSpillMaxBytes(long maxBytes) {
+            if (maxBytes <= 0) {
+                throw new IllegalArgumentException("Invalid spill max bytes: " + maxBytes);
+            }
+            this.spillMaxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Sets the sampler deciding which traces are recorded, such as a
+         * {@link ProbabilisticSampler} or a {@link RateLimitingSampler}. By default, all
+         * traces are recorded.
+         */
+        public OptionsBuilder withSampler(Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * Enables adaptive reporting: instead of reporting at a fixed interval, the tracer
+         * reports as soon as half the report buffer is filled, shortens the interval while
+         * the buffer is under pressure, and lengthens it up to the maximum reporting
+         * interval while little is buffered or reports fail. The current interval and the
+         * reason it was picked are shown by {@link JRETracer#status()}.
+         */
+        public OptionsBuilder withAdaptiveReporting(boolean adaptiveReporting) {
+            this.adaptiveReporting = adaptiveReporting;
+            return this;
+        }
+
+        /**
+         * Enables streaming report encoding for the HTTP collector client: reports are
+         * written to the request body through a small pool of reusable buffers, instead of
+         * being serialized to a byte array as large as the report first. Selects the HTTP
+         * collector client if no collector client is set; has no effect with the gRPC one.
+         */
+        public OptionsBuilder withStreamingReportEncoding(boolean streamingReportEncoding) {
+            this.streamingReportEncoding = streamingReportEncoding;
+            return this;
+        }
+
+        /**
+         * Uses direct buffers for streaming report encoding, saving a copy when reports are
+         * written to the connection at the cost of off-heap memory.
+         */
+        public OptionsBuilder withDirectReportBuffers(boolean directReportBuffers) {
+            this.directReportBuffers = directReportBuffers;
+            return this;
+        }
+
+        /**
+         * Compresses the reports sent by the HTTP collector client, with their spans
+         * grouped by trace so that the compressor sees related spans together. Uses the
+         * streaming report encoding, and selects the HTTP collector client if no collector
+         * client is set. Reports are sent uncompressed if the library implementing the
+         * compression is missing.
+         */
+        public OptionsBuilder withReportCompression(ReportCompression compression) {
+            if (compression == null) {
+                throw new IllegalArgumentException("Invalid report compression: null");
+            }
+            this.reportCompression = compression;
+            return this;
+        }
+
+        /**
+         * Level of the report compression, for the compressions that have levels.
+         * Defaults to {@link ReportCompression#DEFAULT_LEVEL}, the default of the
+         * compression.
+         */
+        public OptionsBuilder withReportCompressionLevel(int level) {
+            this.reportCompressionLevel = level;
+            return this;
+        }
+
+        /**
+         * Enables span recycling: spans record their operation name, references, tags and
+         * logs in pooled records instead of spans of the shared library, and the records are
+         * reused once the finished spans are added to the report buffer. Calls made on a
+         * span after it is finished are ignored, and counted in {@link JRETracer#status()},
+         * instead of writing to the span now using its record.
+         *
+         * Spans are not free of allocation: each one still gets a small handle and its
+         * context, and the protobuf span added to the report buffer, which is immutable,
+         * is not pooled. {@code SpanBenchmark} measures about a fifth fewer bytes per span,
+         * 728 instead of 928, and no faster spans.
+         */
+        public OptionsBuilder withSpanRecycling(boolean spanRecycling) {
+            this.spanRecycling = spanRecycling;
+            return this;
+        }
+
+        /**
+         * Maximum number of logs recorded per span, 0 for no limit. Further logs are dropped,
+         * and the span gets a {@code lightstep.dropped_logs} tag with their number.
+         */
+        public OptionsBuilder withMaxLogsPerSpan(int maxLogs) {
+            if (maxLogs < 0) {
+                throw new IllegalArgumentException("Invalid max logs per span: " + maxLogs);
+            }
+            this.maxLogsPerSpan = maxLogs;
+            return this;
+        }
+
+        /**
+         * Maximum number of tags recorded per span, 0 for no limit. Further tags are dropped,
+         * and the span gets a {@code lightstep.dropped_tags} tag with their number.
+         */
+        public OptionsBuilder withMaxTagsPerSpan(int maxTags) {
+            if (maxTags < 0) {
+                throw new IllegalArgumentException("Invalid max tags per span: " + maxTags);
+            }
+            this.maxTagsPerSpan = maxTags;
+            return this;
+        }
+
+        /**
+         * Maximum size in UTF-8 of the string and object values of a log, 0 for no limit.
+         * Values past it are truncated and marked with {@code ...[truncated]}, within the
+         * limit when it is larger than the marker.
+         */
+        public OptionsBuilder withMaxLogPayloadBytes(int maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("Invalid max log payload bytes: " + maxBytes);
+            }
+            this.maxLogPayloadBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Maximum size in UTF-8 of a string tag value, 0 for no limit. Longer values are
+         * truncated and marked with {@code ...[truncated]}, within the limit when it is
+         * larger than the marker.
+         */
+        public OptionsBuilder withMaxTagValueBytes(int maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("Invalid max tag value bytes: " + maxBytes);
+            }
+            this.maxTagValueBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Enables span metrics: the request count, error count and duration percentiles of
+         * the finished spans are aggregated per operation and sent with the other client
+         * metrics, including the spans that are not sampled or are dropped. Spans with an
+         * {@code error} tag set to true count as errors. Has no effect if metrics reporting
+         * is disabled.
+         */
+        public OptionsBuilder withSpanMetrics(boolean spanMetrics) {
+            this.spanMetrics = spanMetrics;
+            return this;
+        }
+
+        /**
+         * Maximum number of operations span metrics are kept for. The spans of further
+         * operations are counted under {@link SpanMetrics#OTHER_OPERATION}. Defaults to
+         * {@link SpanMetrics#DEFAULT_MAX_OPERATIONS}.
+         */
+        public OptionsBuilder withSpanMetricsMaxOperations(int maxOperations) {
+            if (maxOperations <= 0) {
+                throw new IllegalArgumentException("Invalid span metrics max operations: " + maxOperations);
+            }
+            this.spanMetricsMaxOperations = maxOperations;
+            return this;
+        }
+
+        /**
+         * Registers a {@link JRETracerMXBean} with the platform MBean server, exposing the
+         * counters and latency histograms of the tracer itself. The report sizes, latencies
+         * and ages are only measured with the HTTP collector client.
+         */
+        public OptionsBuilder withJmx(boolean jmx) {
+            this.jmx = jmx;
+            return this;
+        }
+
+        /**
+         * Allows the {@link DynamicOptions} of the tracer to be changed while it runs,
+         * through {@link JRETracer#reconfigure(DynamicOptions)} or the
+         * {@link JRETracerMXBean}. Reports are then scheduled by the tracer rather than by
+         * the reporting loop of the shared library, so that their interval can change.
+         */
+        public OptionsBuilder withLiveReconfiguration(boolean liveReconfiguration) {
+            this.liveReconfiguration = liveReconfiguration;
+            return this;
+        }
+
+        /**
+         * Runs the reports, flushes and client metrics samples of the tracer on a small
+         * pool of scheduler threads shared by all the tracers of the JVM enabling it,
+         * instead of a reporting thread, a report executor and a metrics thread per
+         * tracer. The tracers keep their own report buffers, and send their reports in
+         * turn, each one at most one report at a time. Client metrics samples due close
+         * to a report are sent right after it, in the same wakeup, and go through the
+         * connection pool of the span reports. Selects the streaming HTTP collector
+         * client if no collector client is set; with the gRPC one, only the scheduler is
+         * shared.
+         */
+        public OptionsBuilder withSharedScheduler(boolean sharedScheduler) {
+            this.sharedScheduler = sharedScheduler;
+            return this;
+        }
+
+        /**
+         * Adds runtime metrics consumed from JFR event streaming to the client metrics: the
+         * count, total and longest GC pauses, the bytes allocated, the count and total of
+         * safepoints, and the CPU load of the JVM. Each pause is recorded as it happens
+         * rather than polled once per sample. Requires Java 14, and Java 16 for the
+         * allocation; has no effect when metrics reporting is disabled.
+         */
+        public OptionsBuilder withJfrMetrics(boolean jfrMetrics) {
+            this.jfrMetrics = jfrMetrics;
+            return this;
+        }
+
+        /**
+         * Maximum number of reports sent at once, 1 by default. With more than one, the
+         * reporting thread sends the next report without waiting for the collector to answer
+         * the previous ones, over further keep-alive connections, so that the collector
+         * round trip time does not limit the rate of spans reported. The responses are
+         * handled in the order the reports were sent: the spans of a failed report are added
+         * back to the report buffer, or counted as dropped with
+         * {@link Options.OptionsBuilder#withDropSpansOnFailure(boolean)}, and explicit flushes
+         * wait for the reports in flight. Selects the streaming HTTP collector client if no
+         * collector client is set; has no effect with the gRPC one.
+         */
+        public OptionsBuilder withMaxInflightReports(int maxInflightReports) {
+            if (maxInflightReports <= 0) {
+                throw new IllegalArgumentException("Invalid max in-flight reports: " + maxInflightReports);
+            }
+            this.maxInflightReports = maxInflightReports;
+            return this;
+        }
+
+        /**
+         * Maximum number of times a report that could not be sent is retried, none by
+         * default. Retries wait a random delay up to a bound doubling with each retry, and
+         * are limited to a tenth of the reports sent by the tracers of the JVM, past a
+         * first 10, so that retries stop adding load to a collector that is down. All the attempts at a
+         * report carry the same {@code Idempotency-Key} header. Selects the streaming HTTP
+         * collector client if no collector client is set; has no effect with the gRPC one.
+         */
+        public OptionsBuilder withMaxReportRetries(int maxReportRetries) {
+            if (maxReportRetries < 0) {
+                throw new IllegalArgumentException("Invalid max report retries: " + maxReportRetries);
+            }
+            this.maxReportRetries = maxReportRetries;
+            return this;
+        }
+
+        /**
+         * Collectors to spread the reports over, as {@code host} or {@code host:port}, with
+         * the protocol of the collector set in the options, instead of the collector host
+         * and port. Each report goes to the better of two collectors picked at random, by
+         * latency and reports in flight. A collector failing three reports in a row is
+         * ejected for a while, and reports fail over to the other collectors; with
+         * {@link #withMaxReportRetries(int)}, retries go to another collector. Selects the
+         * streaming HTTP collector client if no collector client is set; has no effect with
+         * the gRPC one.
+         */
+        public OptionsBuilder withCollectorEndpoints(List<String> endpoints) {
+            if (endpoints == null || endpoints.isEmpty()) {
+                throw new IllegalArgumentException("No collector endpoints");
+            }
+            this.collectorEndpoints = Collections.unmodifiableList(new ArrayList<>(endpoints));
+            return this;
+        }
+
+        /**
+         * Injects and extracts the {@code HTTP_HEADERS} and {@code TEXT_MAP} formats with a
+         * {@link com.lightstep.tracer.shared.HeaderCodec}, when they use the LightStep headers
+         * or {@link com.lightstep.tracer.shared.B3Propagator}: the same headers, matched and
+         * decoded without intermediate strings or boxed IDs. Custom propagators are left as
+         * they are.
+         */
+        public OptionsBuilder withHeaderCodec(boolean headerCodec) {
+            this.headerCodec = headerCodec;
+            return this;
+        }
+
+        public JREOptions build() {
+            return new JREOptions(this);
+        }
+    }
+}
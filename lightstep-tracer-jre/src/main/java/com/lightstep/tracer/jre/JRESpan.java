@@ -0,0 +1,151 @@
+package com.lightstep.tracer.jre;
+
+import com.google.protobuf.Timestamp;
+import com.lightstep.tracer.metrics.SpanMetrics;
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Span used when the span buffer, the spill queue, a sampler, span recycling or span limits
+ * are enabled. Finishing it records the finish timestamp and hands it to
+ * {@link JRETracer#spanFinished}, which decides when, and whether, it is added to the report
+ * buffer.
+ *
+ * It also counts the tags and logs recorded against the {@link SpanLimits} of the tracer,
+ * and records the span in its {@link SpanMetrics} when finished.
+ */
+abstract class JRESpan implements Span {
+    final JRETracer tracer;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile long finishMicros;
+    // Whether the error tag was set to true, for span metrics.
+    private volatile boolean error;
+
+    // Guarded by this.
+    private int tagCount;
+    private int logCount;
+    private int droppedTags;
+    private int droppedLogs;
+
+    JRESpan(JRETracer tracer) {
+        this.tracer = tracer;
+    }
+
+    static long toEpochMicros(Timestamp timestamp) {
+        return timestamp.getSeconds() * 1000000L + timestamp.getNanos() / 1000;
+    }
+
+    /**
+     * Adds the finished span to the report buffer, with the timestamp recorded by
+     * {@link #finish}.
+     */
+    abstract void finishDelegate();
+
+    /**
+     * Returns the record of the finished span, as it would be added to the report buffer by
+     * {@link #finishDelegate}.
+     */
+    abstract com.lightstep.tracer.grpc.Span toGrpcSpan();
+
+    /**
+     * Called once the finished span is no longer needed, after {@link #toGrpcSpan}. Spans
+     * whose records are pooled return them here.
+     */
+    void recycle() {
+    }
+
+    abstract long nowMicros();
+
+    abstract long getStartMicros();
+
+    abstract String getOperationName();
+
+    /**
+     * Called with each boolean tag set on the span, even those dropped by the span limits.
+     */
+    final void tagSet(String key, boolean value) {
+        if (value && Tags.ERROR.getKey().equals(key)) {
+            error = true;
+        }
+    }
+
+    /**
+     * Adds a tag to the span regardless of the span limits, used for the tags recording
+     * what the limits dropped.
+     */
+    abstract void addLimitTag(String key, long value);
+
+    /**
+     * Counts the tags set on the span builder: {@code recorded} were passed on to the span
+     * and {@code dropped} were dropped by the span limits.
+     */
+    final synchronized void countBuilderTags(int recorded, int dropped) {
+        tagCount += recorded;
+        droppedTags += dropped;
+    }
+
+    /**
+     * Returns whether a tag may be added to the span, counting it as dropped otherwise.
+     */
+    final synchronized boolean acceptTag(SpanLimits limits) {
+        if (!limits.acceptTag(tagCount)) {
+            droppedTags++;
+            return false;
+        }
+        tagCount++;
+        return true;
+    }
+
+    /**
+     * Returns whether a log may be added to the span, counting it as dropped otherwise.
+     */
+    final synchronized boolean acceptLog(SpanLimits limits) {
+        if (!limits.acceptLog(logCount)) {
+            droppedLogs++;
+            return false;
+        }
+        logCount++;
+        return true;
+    }
+
+    long getFinishMicros() {
+        return finishMicros;
+    }
+
+    boolean isFinished() {
+        return finished.get();
+    }
+
+    @Override
+    public void finish() {
+        finish(nowMicros());
+    }
+
+    @Override
+    public void finish(long finishMicros) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.finishMicros = finishMicros;
+        int droppedTags;
+        int droppedLogs;
+        synchronized (this) {
+            droppedTags = this.droppedTags;
+            droppedLogs = this.droppedLogs;
+        }
+        if (droppedTags > 0) {
+            addLimitTag(SpanLimits.DROPPED_TAGS_KEY, droppedTags);
+        }
+        if (droppedLogs > 0) {
+            addLimitTag(SpanLimits.DROPPED_LOGS_KEY, droppedLogs);
+        }
+        SpanMetrics spanMetrics = tracer.spanMetrics();
+        if (spanMetrics != null) {
+            spanMetrics.record(getOperationName(), finishMicros - getStartMicros(), error);
+        }
+        tracer.spanFinished(this);
+    }
+}
@@ -0,0 +1,286 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.metrics.SpanMetrics;
+import com.lightstep.tracer.shared.TracerInternals;
+import io.opentracing.References;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tag;
+import io.opentracing.tag.Tags;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Span builder used when the span buffer, the spill queue, a sampler, span recycling or
+ * span limits are enabled.
+ *
+ * It records the references and tags of the span, the tags in a {@link TagStore} within
+ * the {@link SpanLimits}, so that nothing is spent on spans that are not sampled, and
+ * replays them on the LightStep span builder otherwise, or on a pooled {@link SpanRecord}
+ * with span recycling. The spans it starts are {@link JRESpan}s, so that they are finished
+ * through {@link JRETracer#spanFinished}.
+ */
+final class JRESpanBuilder implements Tracer.SpanBuilder {
+    private final JRETracer tracer;
+    private final String operationName;
+
+    // Reference types and contexts, alternating.
+    private List<Object> references;
+    private TagStore tags;
+    // Tags dropped by the span limits.
+    private int droppedTags;
+    // Whether the error tag was set to true, for span metrics.
+    private boolean error;
+    private boolean ignoreActiveSpan;
+    private long startTimestampMicros;
+
+    JRESpanBuilder(JRETracer tracer, String operationName) {
+        this.tracer = tracer;
+        this.operationName = operationName;
+    }
+
+    @Override
+    public Tracer.SpanBuilder asChildOf(SpanContext parent) {
+        return addReference(References.CHILD_OF, parent);
+    }
+
+    @Override
+    public Tracer.SpanBuilder asChildOf(Span parent) {
+        if (parent == null) {
+            return this;
+        }
+        return addReference(References.CHILD_OF, parent.context());
+    }
+
+    @Override
+    public Tracer.SpanBuilder addReference(String referenceType, SpanContext referencedContext) {
+        if (references == null) {
+            references = new ArrayList<>(2);
+        }
+        references.add(referenceType);
+        references.add(referencedContext);
+        return this;
+    }
+
+    @Override
+    public Tracer.SpanBuilder ignoreActiveSpan() {
+        ignoreActiveSpan = true;
+        return this;
+    }
+
+    @Override
+    public Tracer.SpanBuilder withTag(String key, String value) {
+        if (key != null && value != null && acceptTag()) {
+            SpanLimits limits = tracer.spanLimits();
+            tags().add(key, limits == null ? value : limits.limitTagValue(value));
+        }
+        return this;
+    }
+
+    @Override
+    public Tracer.SpanBuilder withTag(String key, boolean value) {
+        if (value && Tags.ERROR.getKey().equals(key)) {
+            error = true;
+        }
+        if (key != null && acceptTag()) {
+            tags().add(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Tracer.SpanBuilder withTag(String key, Number value) {
+        if (key != null && value != null && acceptTag()) {
+            tags().add(key, value);
+        }
+        return this;
+    }
+
+    // Same as com.lightstep.tracer.shared.SpanBuilder.withTag.
+    @Override
+    public <T> Tracer.SpanBuilder withTag(Tag<T> tag, T value) {
+        if (tag == null || tag.getKey() == null || value == null) {
+            return this;
+        }
+        if (value instanceof Number) {
+            withTag(tag.getKey(), (Number) value);
+        } else if (value instanceof Boolean) {
+            withTag(tag.getKey(), ((Boolean) value).booleanValue());
+        } else {
+            withTag(tag.getKey(), value.toString());
+        }
+        return this;
+    }
+
+    @Override
+    public Tracer.SpanBuilder withStartTimestamp(long microseconds) {
+        startTimestampMicros = microseconds;
+        return this;
+    }
+
+    @Override
+    public Span start() {
+        if (tracer.isDisabled()) {
+            return tracer.lightStepSpanBuilder(operationName).start();
+        }
+
+        com.lightstep.tracer.shared.SpanContext parent = parentContext();
+        Sampler sampler = tracer.sampler();
+        if (parent instanceof UnsampledSpanContext) {
+            return startUnsampled(parent.getTraceId(), parent);
+        }
+
+        long traceId = 0;
+        if (sampler != null) {
+            traceId = parent == null ? randomId() : parent.getTraceId();
+            if (!sampler.isSampled(traceId, operationName, parent)) {
+                return startUnsampled(traceId, parent);
+            }
+        }
+
+        SpanRecordPool spanRecords = tracer.spanRecords();
+        if (spanRecords != null && !TracerInternals.isMetaEventLoggingEnabled(tracer)) {
+            return startRecycled(spanRecords, sampler != null || parent != null ? traceId : randomId(), parent);
+        }
+
+        com.lightstep.tracer.shared.SpanBuilder builder = tracer.lightStepSpanBuilder(operationName);
+        if (references != null) {
+            for (int i = 0; i < references.size(); i += 2) {
+                builder.addReference((String) references.get(i), (SpanContext) references.get(i + 1));
+            }
+        }
+        if (parent == null) {
+            builder.ignoreActiveSpan();
+            if (sampler != null) {
+                // Keeps the trace ID the sampling decision was made for.
+                builder.withTraceIdAndSpanId(traceId, randomId());
+            }
+        } else if (references == null) {
+            builder.asChildOf(parent);
+        }
+        if (tags != null) {
+            tags.setOn(builder);
+        }
+
+        long startNanos = -1;
+        if (startTimestampMicros != 0) {
+            builder.withStartTimestamp(startTimestampMicros);
+        } else {
+            startNanos = System.nanoTime();
+        }
+
+        Span span = builder.start();
+        if (!(span instanceof com.lightstep.tracer.shared.Span)) {
+            return span;
+        }
+        return initSpan(new DelegatingSpan((com.lightstep.tracer.shared.Span) span, tracer, startNanos));
+    }
+
+    /**
+     * Starts a span recording its data in a record of {@code spanRecords}, as the LightStep
+     * span builder would.
+     */
+    private Span startRecycled(SpanRecordPool spanRecords, long traceId,
+                               com.lightstep.tracer.shared.SpanContext parent) {
+        if (parent != null) {
+            traceId = parent.getTraceId();
+        }
+        com.lightstep.tracer.shared.SpanContext context =
+                TracerInternals.newSpanContext(traceId, randomId(), parent);
+
+        long startMicros = startTimestampMicros;
+        long startNanos = -1;
+        if (startMicros == 0) {
+            startMicros = System.currentTimeMillis() * 1000;
+            startNanos = System.nanoTime();
+        }
+
+        SpanRecord record = spanRecords.acquire();
+        record.setOperationName(operationName);
+        if (references != null) {
+            for (int i = 0; i < references.size(); i += 2) {
+                Object type = references.get(i);
+                Object referenced = references.get(i + 1);
+                if ((References.CHILD_OF.equals(type) || References.FOLLOWS_FROM.equals(type))
+                        && referenced instanceof com.lightstep.tracer.shared.SpanContext) {
+                    record.addReference((String) type, (com.lightstep.tracer.shared.SpanContext) referenced);
+                }
+            }
+        } else if (parent != null) {
+            record.addReference(References.CHILD_OF, parent);
+        }
+        if (tags != null) {
+            record.tags().addAll(tags);
+        }
+
+        return initSpan(new RecycledSpan(tracer, spanRecords, record, context, startMicros, startNanos));
+    }
+
+    /**
+     * Returns the parent the LightStep span builder would pick: the last context referenced
+     * as child-of or follows-from or, failing that, the context of the active span.
+     */
+    private com.lightstep.tracer.shared.SpanContext parentContext() {
+        com.lightstep.tracer.shared.SpanContext parent = null;
+        if (references != null) {
+            for (int i = 0; i < references.size(); i += 2) {
+                Object type = references.get(i);
+                Object context = references.get(i + 1);
+                if ((References.CHILD_OF.equals(type) || References.FOLLOWS_FROM.equals(type))
+                        && context instanceof com.lightstep.tracer.shared.SpanContext) {
+                    parent = (com.lightstep.tracer.shared.SpanContext) context;
+                }
+            }
+        }
+        if (parent == null && !ignoreActiveSpan) {
+            Span activeSpan = tracer.activeSpan();
+            if (activeSpan != null && activeSpan.context() instanceof com.lightstep.tracer.shared.SpanContext) {
+                parent = (com.lightstep.tracer.shared.SpanContext) activeSpan.context();
+            }
+        }
+        return parent;
+    }
+
+    private Span startUnsampled(long traceId, SpanContext parent) {
+        UnsampledSpanContext context = new UnsampledSpanContext(traceId, randomId(),
+                UnsampledSpanContext.baggageOf(parent));
+        SpanMetrics spanMetrics = tracer.spanMetrics();
+        if (spanMetrics == null) {
+            return new UnsampledSpan(context);
+        }
+        return new UnsampledSpan(context, spanMetrics, operationName, error, startTimestampMicros);
+    }
+
+    private boolean acceptTag() {
+        SpanLimits limits = tracer.spanLimits();
+        if (limits == null || limits.acceptTag(tags == null ? 0 : tags.size())) {
+            return true;
+        }
+        droppedTags++;
+        return false;
+    }
+
+    private JRESpan initSpan(JRESpan span) {
+        if (tracer.spanLimits() != null) {
+            span.countBuilderTags(tags == null ? 0 : tags.size(), droppedTags);
+        }
+        if (error) {
+            span.tagSet(Tags.ERROR.getKey(), true);
+        }
+        return span;
+    }
+
+    private TagStore tags() {
+        if (tags == null) {
+            tags = new TagStore();
+        }
+        return tags;
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+}
@@ -1,24 +1,244 @@
 package com.lightstep.tracer.jre;
 
+import com.lightstep.tracer.metrics.JfrMetrics;
+import com.lightstep.tracer.metrics.SafeMetricsImpl;
+import com.lightstep.tracer.metrics.ScheduledMetrics;
+import com.lightstep.tracer.metrics.SpanMetrics;
 import com.lightstep.tracer.shared.AbstractTracer;
+import com.lightstep.tracer.shared.HeaderCodec;
 import com.lightstep.tracer.shared.Options;
+import com.lightstep.tracer.shared.ReportBufferPool;
+import com.lightstep.tracer.shared.ReportCompression;
 import com.lightstep.tracer.shared.SimpleFuture;
+import com.lightstep.tracer.shared.SpanContext;
+import com.lightstep.tracer.shared.Status;
+import com.lightstep.tracer.shared.StreamingHttpCollectorClientProvider;
+import com.lightstep.tracer.shared.TracerInternals;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import static com.lightstep.tracer.jre.Version.LIGHTSTEP_TRACER_VERSION;
 
 public class JRETracer extends AbstractTracer {
     private static final int JRE_DEFAULT_REPORTING_INTERVAL_MILLIS = 2500;
 
+    // Maximum interval picked by adaptive reporting when no maximum reporting interval is set.
+    private static final long ADAPTIVE_DEFAULT_MAX_INTERVAL_MILLIS = 30000;
+
+    // Upstream default of the maximum reporting interval, meaning it was not set.
+    private static final long UNSET_REPORTING_INTERVAL_MILLIS = 3000;
+
+    /**
+     * {@link Status} tag holding the current reporting interval when adaptive reporting is
+     * enabled.
+     */
+    public static final String REPORTING_INTERVAL_STATUS_KEY = "lightstep.reporting_interval_millis";
+
+    /**
+     * {@link Status} tag holding why the current reporting interval was picked when adaptive
+     * reporting is enabled: {@code initial}, {@code high_water}, {@code idle_backoff},
+     * {@code failure_backoff} or {@code steady}.
+     */
+    public static final String REPORTING_DECISION_STATUS_KEY = "lightstep.reporting_decision";
+
+    /**
+     * {@link Status} tag holding the number of calls made on recycled spans after they were
+     * finished, which were ignored, when span recycling is enabled.
+     */
+    public static final String SPANS_USED_AFTER_FINISH_STATUS_KEY = "lightstep.spans_used_after_finish";
+
+    /**
+     * {@link Status} tags holding the number of tags and logs dropped, and of tag values and
+     * log payloads truncated, by the span limits when they are set.
+     */
+    public static final String DROPPED_SPAN_TAGS_STATUS_KEY = "lightstep.dropped_span_tags";
+    public static final String DROPPED_SPAN_LOGS_STATUS_KEY = "lightstep.dropped_span_logs";
+    public static final String TRUNCATED_TAG_VALUES_STATUS_KEY = "lightstep.truncated_tag_values";
+    public static final String TRUNCATED_LOG_PAYLOADS_STATUS_KEY = "lightstep.truncated_log_payloads";
+
+    private static final String REPORT_EXECUTOR_THREAD_NAME = "lightstep-report-executor";
+
+    // Same as the shared tracer.
+    private static final int CLIENT_METRICS_SAMPLE_PERIOD_SECONDS = 30;
+
+    private static final String MXBEAN_DOMAIN = "com.lightstep.tracer";
+    private static final AtomicInteger MXBEAN_IDS = new AtomicInteger();
+
+    // Spilled spans replayed after each successful report, which keeps them from filling
+    // the report buffer faster than it is emptied.
+    private static final int SPILL_REPLAY_BATCH_SPANS = 500;
+    // Replayed spans not confirmed within this many report deadlines, per attempt, are
+    // read again from the spill queue.
+    private static final int SPILL_REPLAY_TIMEOUT_DEADLINES = 3;
+    // Spans waiting for the report executor to write them to the spill queue, at least,
+    // so that a small report buffer does not drop spans finished in a burst.
+    private static final int MIN_PENDING_SPILLS = 1000;
+
+    private static final HeaderCodec.UnsampledContexts UNSAMPLED_CONTEXTS = new HeaderCodec.UnsampledContexts() {
+        @Override
+        public SpanContext newContext(long traceId, long spanId, Map<String, String> baggage) {
+            return new UnsampledSpanContext(traceId, spanId, baggage);
+        }
+    };
+
     private static final Logger LOGGER = LoggerFactory.getLogger(JRETracer.class);
 
+    // Creates the tracer of the bundle factory when it is on the class path.
+    private static final String BUNDLE_FACTORY_CLASS = "com.lightstep.tracer.jre.LightStepTracerFactory";
+
     private static class JavaTracerHolder {
-        private static final JRETracer INSTANCE = new JRETracer(null);
+        private static final JRETracer INSTANCE = createInstance();
     }
 
+    /**
+     * The report that has been requested but not yet started. Flush requests arriving
+     * while it is queued share it instead of queuing a report of their own.
+     */
+    private final AtomicReference<FlushFuture> pendingFlush = new AtomicReference<>();
+
+    private ScheduledExecutorService reportExecutor;
+    private boolean reportExecutorShutdown;
+
+    // Whether reports run on the SharedScheduler, which is never shut down.
+    private final boolean sharedScheduler;
+    // Runs the flushes of the tracer one at a time on the SharedScheduler, or null.
+    private final Executor tenantExecutor;
+    private ScheduledFuture<?> spillReplay;
+
+    /**
+     * Client metrics sampled after the reports of the shared scheduler, or null if they
+     * are sampled by a metrics thread.
+     */
+    private final ScheduledMetrics scheduledMetrics;
+
+    /**
+     * The client metrics of the tracer when it sends them itself, with its span metrics,
+     * scheduled metrics or JFR metrics, instead of the shared tracer, or null. Like the
+     * shared tracer, it starts their thread with the first span.
+     */
+    private final SafeMetricsImpl clientMetrics;
+    private final Options clientMetricsOptions;
+    private volatile boolean clientMetricsStarted;
+    private Thread clientMetricsThread;
+
+    /**
+     * Queue of finished spans waiting to be handed to the report buffer, or null if spans
+     * are handed over as they finish.
+     */
+    private final SpanBuffer spanBuffer;
+
+    /**
+     * Queue of spans finished while the collector was unavailable, or null if those spans
+     * are only kept in the report buffer.
+     */
+    private final SpillQueue spillQueue;
+
+    private volatile boolean collectorUnavailable;
+
+    // Spans overflowing the report buffer while the collector is unavailable, which the
+    // report executor writes to the spill queue, at most as many as the report buffer holds
+    // or MIN_PENDING_SPILLS.
+    private final Queue<com.lightstep.tracer.grpc.Span> pendingSpills = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSpillCount = new AtomicInteger();
+    private final AtomicBoolean spillWriteScheduled = new AtomicBoolean();
+    private final AtomicLong pendingSpillsDropped = new AtomicLong();
+
+    // Spilled spans added back to the report buffer and not acknowledged yet, or null.
+    private final ReplayedSpans replayedSpans;
+    // Whether the collector responses confirm the replayed spans, rather than the reports.
+    private final boolean replaysConfirmedByCollector;
+    private final long spillReplayTimeoutNanos;
+
+    private final SpanRecordPool spanRecords;
+    private final AtomicLong spansUsedAfterFinish = new AtomicLong();
+
+    /**
+     * Limits on the tags and logs of each span, or null if there are none.
+     */
+    private final SpanLimits spanLimits;
+
+    /**
+     * Metrics aggregated from the finished spans, or null if span metrics are disabled.
+     */
+    private final SpanMetrics spanMetrics;
+
+    /**
+     * Statistics exposed through the {@link JRETracerMXBean}, or null if it is not
+     * registered.
+     */
+    private final ReportStats reportStats;
+    private ObjectName mxBeanName;
+
+    /**
+     * Picks the delay between reports when they are scheduled by this tracer rather than by
+     * the upstream reporting loop, or null otherwise.
+     */
+    private final AdaptiveReportingInterval reportingInterval;
+    private final boolean adaptiveReporting;
+    private final AtomicBoolean reportingStarted = new AtomicBoolean();
+    private ScheduledFuture<?> nextReport;
+
+    // Whether spans are started by a JRESpanBuilder.
+    private final boolean wrapSpans;
+
+    private final boolean streamingReportEncoding;
+
+    // The options of the shared tracer if it sends several reports at once, or null.
+    private final Options pipelinedOptions;
+
+    // Codecs of the propagators of the HTTP_HEADERS and TEXT_MAP formats, or null if they are
+    // not propagators of the shared library.
+    private final HeaderCodec httpHeadersCodec;
+    private final HeaderCodec textMapCodec;
+    // Whether the codecs replace the propagators, or only propagate unsampled contexts.
+    private final boolean headerCodec;
+
+    /**
+     * The options that may change while the tracer runs, replaced as a whole by
+     * {@link #reconfigure}. Null while the shared tracer is constructed.
+     */
+    private volatile DynamicOptions dynamicOptions;
+    private final boolean liveReconfiguration;
+
+    // Size of the report buffer of the shared tracer, which the max buffered spans of the
+    // dynamic options may only lower.
+    private final int reportBufferCapacity;
+    private final AtomicLong spansDroppedOverMaxBuffered = new AtomicLong();
+    private volatile boolean firstErrorLogged;
+
     /**
      * Returns the singleton Tracer instance that can be utilized to record logs and spans.
+     * It is created on the first call, from the tracer parameters of the configuration file
+     * and system properties when lightstep-tracer-jre-bundle is on the class path, and with
+     * the default options otherwise.
      *
      * @return tracer instance
      */
@@ -27,15 +247,977 @@ public class JRETracer extends AbstractTracer {
         return JavaTracerHolder.INSTANCE;
     }
 
+    /**
+     * @param options the options of the tracer, or null for the default ones.
+     */
     public JRETracer(Options options) {
-        super(options.setDefaultReportingIntervalMillis(JRE_DEFAULT_REPORTING_INTERVAL_MILLIS));
+        this(options, new JREOptions.OptionsBuilder().build());
+    }
+
+    /**
+     * @param options the options of the tracer, or null for the default ones.
+     */
+    public JRETracer(Options options, JREOptions jreOptions) {
+        this(options == null ? defaultOptions() : options, jreOptions,
+                jreOptions.jmx ? new ReportStats() : null,
+                jreOptions.isSpillEnabled() ? new ReplayedSpans() : null);
+    }
+
+    private JRETracer(Options options, JREOptions jreOptions, ReportStats reportStats,
+                      ReplayedSpans replayedSpans) {
+        this(options, jreOptions, newSpanMetrics(options, jreOptions),
+                newScheduledMetrics(options, jreOptions), collectsJfrMetrics(options, jreOptions), reportStats,
+                replayedSpans);
+    }
+
+    private JRETracer(Options options, JREOptions jreOptions, SpanMetrics spanMetrics,
+                      ScheduledMetrics scheduledMetrics, boolean jfrMetrics, ReportStats reportStats,
+                      ReplayedSpans replayedSpans) {
+        this(options, jreOptions, spanMetrics, scheduledMetrics, jfrMetrics, reportStats, replayedSpans,
+                sharedOptions(options, jreOptions, reportStats, replayedSpans,
+                        spanMetrics != null || scheduledMetrics != null || jfrMetrics));
+    }
+
+    private JRETracer(Options options, JREOptions jreOptions, SpanMetrics spanMetrics,
+                      ScheduledMetrics scheduledMetrics, boolean jfrMetrics, ReportStats reportStats,
+                      ReplayedSpans replayedSpans, Options sharedOptions) {
+        super(sharedOptions);
+        this.spanMetrics = spanMetrics;
+        this.scheduledMetrics = scheduledMetrics;
+        boolean sendsClientMetrics = spanMetrics != null || scheduledMetrics != null || jfrMetrics;
+        clientMetrics = sendsClientMetrics ? new SafeMetricsImpl(spanMetrics, scheduledMetrics, jfrMetrics) : null;
+        clientMetricsOptions = sendsClientMetrics ? sharedOptions : null;
+        this.reportStats = reportStats;
+        sharedScheduler = jreOptions.sharedScheduler;
+        tenantExecutor = sharedScheduler ? SharedScheduler.newTenantExecutor() : null;
+        spanBuffer = jreOptions.isSpanBufferEnabled() ? new SpanBuffer(jreOptions, this) : null;
+        spillQueue = jreOptions.isSpillEnabled() ? openSpillQueue(jreOptions) : null;
+        this.replayedSpans = replayedSpans;
+        replaysConfirmedByCollector = StreamingHttpCollectorClientProvider.notifiesReportListeners(sharedOptions);
+        spillReplayTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(SPILL_REPLAY_TIMEOUT_DEADLINES
+                * TracerInternals.getDeadlineMillis(sharedOptions) * (1 + jreOptions.maxReportRetries));
+        reportBufferCapacity = TracerInternals.getMaxBufferedSpans(sharedOptions);
+        spanRecords = jreOptions.spanRecycling ? new SpanRecordPool(reportBufferCapacity) : null;
+        spanLimits = SpanLimits.of(jreOptions);
+        adaptiveReporting = jreOptions.adaptiveReporting;
+        reportingInterval = schedulesReports(options, jreOptions) ? newReportingInterval(options, jreOptions) : null;
+        liveReconfiguration = jreOptions.liveReconfiguration;
+        dynamicOptions = DynamicOptions.of(TracerInternals.getVerbosity(sharedOptions),
+                reportingInterval != null
+                        ? reportingInterval.getMaxIntervalMillis()
+                        : TracerInternals.getMaxReportingIntervalMillis(sharedOptions),
+                reportBufferCapacity, jreOptions.sampler);
+        // The fixed schedule of the upstream reporting loop only counts spans, which
+        // buildSpan does without wrapping them.
+        wrapSpans = spanBuffer != null || spillQueue != null || jreOptions.sampler != null
+                || (reportingInterval != null && adaptiveReporting) || spanRecords != null || spanLimits != null
+                || spanMetrics != null || liveReconfiguration;
         addStandardTracerTags();
+
+        // The shared tracer logs meta events on inject and extract, which the codecs do not.
+        headerCodec = jreOptions.headerCodec && !TracerInternals.isMetaEventLoggingEnabled(this);
+        httpHeadersCodec = HeaderCodec.forPropagator(
+                TracerInternals.getPropagator(sharedOptions, Format.Builtin.HTTP_HEADERS));
+        textMapCodec = HeaderCodec.forPropagator(
+                TracerInternals.getPropagator(sharedOptions, Format.Builtin.TEXT_MAP));
+
+        streamingReportEncoding = StreamingHttpCollectorClientProvider.hasStreamingClient(sharedOptions);
+        pipelinedOptions = streamingReportEncoding && jreOptions.maxInflightReports > 1 ? sharedOptions : null;
+        if (jreOptions.usesStreamingClient() && !streamingReportEncoding) {
+            String feature = jreOptions.reportCompression != ReportCompression.NONE ? "Report compression"
+                    : jreOptions.streamingReportEncoding ? "Streaming report encoding"
+                    : jreOptions.sharedScheduler ? "The shared connection pool"
+                    : jreOptions.maxInflightReports > 1 ? "Sending several reports at once"
+                    : jreOptions.maxReportRetries > 0 ? "Retrying failed reports"
+                    : "Balancing reports over collector endpoints";
+            warn(TracerInternals.getCollectorClient(sharedOptions) == Options.CollectorClient.HTTP
+                    ? feature + " is not used: tracer-okhttp is not in the class path"
+                    : feature + " is not used: it requires the HTTP collector client");
+        } else if (!jreOptions.reportCompression.isAvailable()) {
+            warn("Reports are not compressed: " + jreOptions.reportCompression.getContentEncoding()
+                    + " compression is not available in the class path");
+        }
+
+        if (jreOptions.spanMetrics && spanMetrics == null) {
+            warn("Span metrics are not collected: metrics reporting is disabled");
+        }
+        if (jreOptions.jfrMetrics && !jfrMetrics) {
+            warn(JfrMetrics.isAvailable()
+                    ? "JFR metrics are not collected: metrics reporting is disabled"
+                    : "JFR metrics are not collected: JFR event streaming requires Java 14");
+        }
+
+        if (spillQueue != null && !spillQueue.isEmpty()) {
+            // Spans left by a previous process.
+            startSpillReplay();
+        }
+
+        if (reportStats != null) {
+            registerMXBean(TracerInternals.getComponentName(sharedOptions));
+        }
+    }
+
+    @Override
+    public Tracer.SpanBuilder buildSpan(String operationName) {
+        if (clientMetrics != null && !clientMetricsStarted) {
+            startClientMetrics();
+        }
+        if (!wrapSpans) {
+            if (reportingInterval != null) {
+                // Counted as they start rather than as they reach the report buffer.
+                spanReported();
+            }
+            return super.buildSpan(operationName);
+        }
+        return new JRESpanBuilder(this, operationName);
+    }
+
+    /**
+     * Injects {@code spanContext} like the shared tracer, except that the contexts of spans
+     * that are not sampled are marked as such in the LightStep and B3 headers.
+     */
+    @Override
+    public <C> void inject(io.opentracing.SpanContext spanContext, Format<C> format, C carrier) {
+        HeaderCodec codec = headerCodec(format);
+        boolean sampled = !(spanContext instanceof UnsampledSpanContext);
+        if (codec != null && spanContext instanceof SpanContext && (headerCodec || !sampled)) {
+            codec.inject((SpanContext) spanContext, carrier, sampled);
+        } else {
+            super.inject(spanContext, format, carrier);
+        }
+    }
+
+    /**
+     * Extracts the context of {@code carrier} like the shared tracer, except that with a
+     * sampler, the contexts marked as not sampled in the LightStep and B3 headers are
+     * extracted as such, and their children are not sampled either.
+     */
+    @Override
+    public <C> io.opentracing.SpanContext extract(Format<C> format, C carrier) {
+        HeaderCodec codec = headerCodec(format);
+        if (codec != null && wrapSpans && sampler() != null) {
+            return codec.extract(carrier, UNSAMPLED_CONTEXTS);
+        }
+        return codec != null && headerCodec ? codec.extract(carrier) : super.extract(format, carrier);
+    }
+
+    private HeaderCodec headerCodec(Format<?> format) {
+        if (format == Format.Builtin.HTTP_HEADERS) {
+            return httpHeadersCodec;
+        }
+        return format == Format.Builtin.TEXT_MAP ? textMapCodec : null;
+    }
+
+    /**
+     * Returns the status of the tracer. With adaptive reporting enabled, it also holds the
+     * {@link #REPORTING_INTERVAL_STATUS_KEY} and {@link #REPORTING_DECISION_STATUS_KEY} tags,
+     * with span recycling enabled, the {@link #SPANS_USED_AFTER_FINISH_STATUS_KEY} tag, and
+     * with span limits, the {@link #DROPPED_SPAN_TAGS_STATUS_KEY},
+     * {@link #DROPPED_SPAN_LOGS_STATUS_KEY}, {@link #TRUNCATED_TAG_VALUES_STATUS_KEY} and
+     * {@link #TRUNCATED_LOG_PAYLOADS_STATUS_KEY} tags.
+     */
+    @Override
+    public Status status() {
+        Status status = super.status();
+        boolean adaptive = reportingInterval != null && adaptiveReporting;
+        long spansDropped = spansDroppedOverMaxBuffered.get();
+        if (!adaptive && spanRecords == null && spanLimits == null && spansDropped == 0) {
+            return status;
+        }
+
+        Map<String, String> tags = new HashMap<>();
+        if (adaptive) {
+            tags.put(REPORTING_INTERVAL_STATUS_KEY, Long.toString(reportingInterval.getIntervalMillis()));
+            tags.put(REPORTING_DECISION_STATUS_KEY,
+                    reportingInterval.getDecision().name().toLowerCase(Locale.ROOT));
+        }
+        if (spanRecords != null) {
+            tags.put(SPANS_USED_AFTER_FINISH_STATUS_KEY, Long.toString(spansUsedAfterFinish.get()));
+        }
+        if (spanLimits != null) {
+            tags.put(DROPPED_SPAN_TAGS_STATUS_KEY, Long.toString(spanLimits.droppedTagsCount()));
+            tags.put(DROPPED_SPAN_LOGS_STATUS_KEY, Long.toString(spanLimits.droppedLogsCount()));
+            tags.put(TRUNCATED_TAG_VALUES_STATUS_KEY, Long.toString(spanLimits.truncatedTagValuesCount()));
+            tags.put(TRUNCATED_LOG_PAYLOADS_STATUS_KEY, Long.toString(spanLimits.truncatedLogPayloadsCount()));
+        }
+        return TracerInternals.withTags(status, tags, spansDropped);
+    }
+
+    com.lightstep.tracer.shared.SpanBuilder lightStepSpanBuilder(String operationName) {
+        return (com.lightstep.tracer.shared.SpanBuilder) super.buildSpan(operationName);
+    }
+
+    Sampler sampler() {
+        return dynamicOptions.sampler;
+    }
+
+    SpanRecordPool spanRecords() {
+        return spanRecords;
+    }
+
+    SpanLimits spanLimits() {
+        return spanLimits;
+    }
+
+    SpanMetrics spanMetrics() {
+        return spanMetrics;
+    }
+
+    /**
+     * Adds the record of a finished span to the report buffer.
+     */
+    void addToReport(com.lightstep.tracer.grpc.Span span) {
+        TracerInternals.addSpan(this, span);
+    }
+
+    /**
+     * Called when a recycled span is written to after being finished. The call is ignored,
+     * as the record of the span may already be used by another span.
+     */
+    void spanUsedAfterFinish(JRESpan span, String method) {
+        spansUsedAfterFinish.incrementAndGet();
+        warn("Span used after being finished, ignoring " + method + ": " + span);
+    }
+
+    boolean isStreamingReportEncoding() {
+        return streamingReportEncoding;
+    }
+
+    /**
+     * Returns the number of finished spans dropped by the span buffer because it was full.
+     * Spans dropped because the report buffer was full are counted by {@link #status()}.
+     *
+     * @return the number of dropped spans, or 0 if the span buffer is not enabled
+     */
+    public long getSpanBufferDroppedCount() {
+        return spanBuffer == null ? 0 : spanBuffer.droppedCount();
+    }
+
+    int getSpanBufferSize() {
+        return spanBuffer == null ? 0 : spanBuffer.size();
+    }
+
+    /**
+     * Returns the number of spans overflowing the report buffer while the collector was
+     * unavailable that were dropped because the spill queue, or the spans waiting to be
+     * written to it, were full.
+     *
+     * @return the number of dropped spans, or 0 if the spill queue is not enabled
+     */
+    public long getSpillDroppedCount() {
+        return spillQueue == null ? 0 : spillQueue.droppedCount() + pendingSpillsDropped.get();
+    }
+
+    /**
+     * Returns the current values of the options that may change while the tracer runs.
+     */
+    public DynamicOptions getDynamicOptions() {
+        return dynamicOptions;
+    }
+
+    /**
+     * Changes the options set in {@code changes}, leaving the others unchanged. The
+     * changes are applied together: spans are started, buffered and reported either with
+     * all of them or with none.
+     *
+     * @throws IllegalStateException if the tracer was not created with
+     *                               {@link JREOptions.OptionsBuilder#withLiveReconfiguration}
+     */
+    public synchronized void reconfigure(DynamicOptions changes) {
+        if (!liveReconfiguration) {
+            throw new IllegalStateException("Live reconfiguration is not enabled");
+        }
+
+        DynamicOptions options = dynamicOptions.merge(changes);
+        if (options.maxBufferedSpans > reportBufferCapacity) {
+            warn("Max buffered spans " + options.maxBufferedSpans + " lowered to " + reportBufferCapacity
+                    + ", the size of the report buffer");
+            options = options.merge(new DynamicOptions.OptionsBuilder()
+                    .withMaxBufferedSpans(reportBufferCapacity)
+                    .build());
+        }
+
+        if (reportingInterval != null) {
+            long maxIntervalMillis = options.maxReportingIntervalMillis;
+            reportingInterval.reconfigure(adaptiveReporting
+                    ? Math.min(AdaptiveReportingInterval.MIN_INTERVAL_MILLIS, maxIntervalMillis)
+                    : maxIntervalMillis, maxIntervalMillis, options.maxBufferedSpans);
+        }
+        dynamicOptions = options;
+        info("Tracer reconfigured: " + options);
+
+        if (reportingInterval != null && reportingStarted.get()) {
+            scheduleNextReport();
+        }
+    }
+
+    /**
+     * Requests a report of any data stored in the log and span buffers without blocking the
+     * calling thread. Concurrent requests made while a report is queued share that report.
+     *
+     * @return a future completed with whether the report succeeded
+     */
+    public CompletableFuture<Boolean> flushAsync() {
+        return scheduleFlush(true).toCompletableFuture();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (clientMetrics != null) {
+            stopClientMetrics();
+        }
+        unregisterMXBean();
+        shutdownReportExecutor();
+        if (spanBuffer != null) {
+            spanBuffer.close();
+        }
+        if (spillQueue != null) {
+            writePendingSpills();
+            spillQueue.close();
+        }
+    }
+
+    /**
+     * Starts the thread of {@link #clientMetrics}, like the shared tracer does with its own,
+     * once, unless the tracer is closed.
+     */
+    private void startClientMetrics() {
+        synchronized (clientMetrics) {
+            if (clientMetricsStarted) {
+                return;
+            }
+            clientMetricsStarted = true;
+            try {
+                clientMetricsThread = clientMetrics.createMetricsThread(
+                        TracerInternals.getComponentName(clientMetricsOptions),
+                        TracerInternals.getAccessToken(clientMetricsOptions),
+                        TracerInternals.getServiceVersion(clientMetricsOptions),
+                        TracerInternals.getMetricsUrl(clientMetricsOptions), CLIENT_METRICS_SAMPLE_PERIOD_SECONDS);
+            } catch (RuntimeException e) {
+                error("Failed to initialize Metrics thread, new initialization will not be retried.", e);
+            }
+            if (clientMetricsThread != null) {
+                clientMetricsThread.setDaemon(true);
+                clientMetricsThread.start();
+            }
+        }
+    }
+
+    private void stopClientMetrics() {
+        synchronized (clientMetrics) {
+            clientMetricsStarted = true;
+            Thread thread = clientMetricsThread;
+            clientMetricsThread = null;
+            if (thread == null) {
+                return;
+            }
+            if (thread instanceof Closeable) {
+                try {
+                    ((Closeable) thread).close();
+                } catch (IOException e) {
+                    warn("Failed to close the metrics thread", e);
+                }
+            }
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Called when a {@link JRESpan} is finished.
+     */
+    void spanFinished(JRESpan span) {
+        if (spanBuffer != null) {
+            spanBuffer.add(span);
+        } else {
+            handOff(span);
+        }
+    }
+
+    /**
+     * Adds a finished span to the report buffer or, when it is full while the collector is
+     * unavailable, to the spill queue.
+     */
+    void handOff(JRESpan span) {
+        if (spillQueue != null && collectorUnavailable && isReportBufferFull()) {
+            spill(span.toGrpcSpan());
+            span.recycle();
+        } else if (isOverMaxBufferedSpans()) {
+            spansDroppedOverMaxBuffered.incrementAndGet();
+            span.recycle();
+        } else {
+            span.finishDelegate();
+            if (reportingInterval != null) {
+                spanReported();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the report buffer holds as many spans as it, or the max buffered
+     * spans of the dynamic options, allow.
+     */
+    private boolean isReportBufferFull() {
+        return TracerInternals.getBufferedSpans(this)
+                >= Math.min(dynamicOptions.maxBufferedSpans, reportBufferCapacity);
+    }
+
+    /**
+     * Queues a span overflowing the report buffer for the report executor to write to the
+     * spill queue, which keeps the disk writes off the threads finishing spans.
+     */
+    private void spill(com.lightstep.tracer.grpc.Span span) {
+        if (pendingSpillCount.incrementAndGet() > Math.max(reportBufferCapacity, MIN_PENDING_SPILLS)) {
+            pendingSpillCount.decrementAndGet();
+            pendingSpillsDropped.incrementAndGet();
+            return;
+        }
+        pendingSpills.add(span);
+        if (!spillWriteScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        ScheduledExecutorService executor = reportExecutor();
+        try {
+            if (executor != null) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        writePendingSpills();
+                    }
+                });
+                return;
+            }
+        } catch (RejectedExecutionException e) {
+            // Closed: written by close().
+        }
+        spillWriteScheduled.set(false);
+    }
+
+    private void writePendingSpills() {
+        spillWriteScheduled.set(false);
+        boolean spilled = false;
+        com.lightstep.tracer.grpc.Span span;
+        while ((span = pendingSpills.poll()) != null) {
+            pendingSpillCount.decrementAndGet();
+            spilled |= spillQueue.append(span);
+        }
+        if (spilled) {
+            startSpillReplay();
+        }
+    }
+
+    /**
+     * Returns whether the report buffer holds as many spans as the max buffered spans of
+     * the dynamic options, when they lowered it. The spans are counted since the previous
+     * report started, so the limit is approximate while a report is being sent.
+     */
+    private boolean isOverMaxBufferedSpans() {
+        int maxBufferedSpans = dynamicOptions.maxBufferedSpans;
+        return maxBufferedSpans < reportBufferCapacity && reportingInterval != null
+                && reportingInterval.bufferedSpans() >= maxBufferedSpans;
+    }
+
+    /**
+     * Called when a span reaches the report buffer while reports are scheduled by this
+     * tracer, or when it starts if spans are not wrapped. Like the upstream reporting loop,
+     * reporting starts with the first span.
+     */
+    private void spanReported() {
+        if (!reportingStarted.get() && reportingStarted.compareAndSet(false, true)) {
+            scheduleNextReport();
+        }
+        if (reportingInterval.spanBuffered()) {
+            scheduleFlush(false);
+        }
     }
 
     // Flush any data stored in the log and span buffers
     @Override
     protected SimpleFuture<Boolean> flushInternal(boolean explicitRequest) {
-        return new SimpleFuture<>(sendReport(explicitRequest));
+        if (Thread.holdsLock(mutex)) {
+            // close() flushes while holding the buffer lock, so the report
+            // executor could not make progress: report on this thread instead.
+            long startNanos = System.nanoTime();
+            if (spanBuffer != null) {
+                spanBuffer.tryDrain();
+            }
+            boolean result = sendReport(explicitRequest);
+            if (reportStats != null) {
+                reportStats.flushed(System.nanoTime() - startNanos);
+            }
+            return new SimpleFuture<>(result);
+        }
+
+        return scheduleFlush(explicitRequest);
+    }
+
+    private FlushFuture scheduleFlush(boolean explicitRequest) {
+        while (true) {
+            FlushFuture pending = pendingFlush.get();
+            if (pending != null) {
+                if (explicitRequest) {
+                    pending.markExplicitRequest();
+                }
+                return pending;
+            }
+
+            final FlushFuture future = new FlushFuture(explicitRequest);
+            if (!pendingFlush.compareAndSet(null, future)) {
+                continue;
+            }
+
+            ScheduledExecutorService executor = reportExecutor();
+            if (executor == null) {
+                pendingFlush.compareAndSet(future, null);
+                future.set(false);
+                return future;
+            }
+
+            try {
+                (tenantExecutor != null ? tenantExecutor : executor).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runFlush(future);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pendingFlush.compareAndSet(future, null);
+                future.set(false);
+            }
+            return future;
+        }
+    }
+
+    private void runFlush(FlushFuture future) {
+        // Requests arriving from now on need a new report, as this one may
+        // already have taken its snapshot of the buffers.
+        pendingFlush.compareAndSet(future, null);
+
+        long startNanos = System.nanoTime();
+        boolean result = false;
+        int reportedSpans = 0;
+        try {
+            drainSpanBuffer();
+            if (reportingInterval != null) {
+                reportedSpans = reportingInterval.reportStarted();
+            }
+            result = sendReport(future.isExplicitRequest());
+            if (result && future.isExplicitRequest() && pipelinedOptions != null) {
+                // Flushed once the collector answered the reports in flight.
+                result = StreamingHttpCollectorClientProvider.awaitInflightReports(pipelinedOptions);
+            }
+            if (spillQueue != null) {
+                replaySpilledSpans(result);
+            }
+        } catch (RuntimeException e) {
+            error("Exception while sending report: ", e);
+        } finally {
+            if (reportStats != null) {
+                reportStats.flushed(System.nanoTime() - startNanos);
+            }
+            if (reportingInterval != null && reportingStarted.get()) {
+                reportingInterval.reportCompleted(result, reportedSpans);
+                scheduleNextReportIfBuffered();
+            }
+            future.set(result);
+            if (scheduledMetrics != null) {
+                scheduledMetrics.reportSent();
+            }
+        }
+    }
+
+    /**
+     * Schedules the next report while spans are left to report. Otherwise reporting stops,
+     * like the upstream reporting loop, until the next span reaches the report buffer.
+     * Spans that are not wrapped are counted as they start, before they can be buffered,
+     * so reports stay scheduled for them.
+     */
+    private void scheduleNextReportIfBuffered() {
+        if (!wrapSpans || hasUnreportedSpans()) {
+            scheduleNextReport();
+            return;
+        }
+
+        reportingStarted.set(false);
+        // A span buffered meanwhile may have found reporting still started.
+        if (hasUnreportedSpans() && reportingStarted.compareAndSet(false, true)) {
+            scheduleNextReport();
+        }
+    }
+
+    private boolean hasUnreportedSpans() {
+        return reportingInterval.bufferedSpans() > 0 || TracerInternals.getBufferedSpans(this) > 0
+                || (spanBuffer != null && spanBuffer.size() > 0);
+    }
+
+    /**
+     * Schedules the next report after the delay picked by {@link #reportingInterval},
+     * replacing the report scheduled previously.
+     */
+    private synchronized void scheduleNextReport() {
+        ScheduledExecutorService executor = reportExecutor();
+        if (executor == null) {
+            return;
+        }
+
+        if (nextReport != null) {
+            nextReport.cancel(false);
+        }
+        try {
+            nextReport = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    scheduleFlush(false);
+                }
+            }, reportingInterval.nextDelayMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            nextReport = null;
+        }
+    }
+
+    private static JRETracer createInstance() {
+        try {
+            Class<?> factory = Class.forName(BUNDLE_FACTORY_CLASS);
+            Object tracer = factory.getMethod("getTracer").invoke(factory.getConstructor().newInstance());
+            if (tracer instanceof JRETracer) {
+                return (JRETracer) tracer;
+            }
+        } catch (ClassNotFoundException e) {
+            // The bundle is not on the class path.
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.warn("Failed to create the tracer from the tracer parameters, using the default options", e);
+        }
+        return new JRETracer(null);
+    }
+
+    private static Options defaultOptions() {
+        try {
+            return new Options.OptionsBuilder().build();
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("Unexpected error when building the default options", e);
+        }
+    }
+
+    /**
+     * Returns the client metrics of the tracer when they are sampled on the shared
+     * scheduler, or null otherwise.
+     */
+    private static ScheduledMetrics newScheduledMetrics(Options options, JREOptions jreOptions) {
+        if (!jreOptions.sharedScheduler || TracerInternals.isMetricsReportingDisabled(options)) {
+            return null;
+        }
+        return new ScheduledMetrics(SharedScheduler.get());
+    }
+
+    /**
+     * Returns whether the JFR metrics are added to the client metrics of the tracer.
+     */
+    private static boolean collectsJfrMetrics(Options options, JREOptions jreOptions) {
+        return jreOptions.jfrMetrics && !TracerInternals.isMetricsReportingDisabled(options)
+                && JfrMetrics.isAvailable();
+    }
+
+    /**
+     * Returns the span metrics of the tracer, or null if they are not collected.
+     */
+    private static SpanMetrics newSpanMetrics(Options options, JREOptions jreOptions) {
+        if (!jreOptions.spanMetrics || TracerInternals.isMetricsReportingDisabled(options)) {
+            return null;
+        }
+        return new SpanMetrics(jreOptions.spanMetricsMaxOperations);
+    }
+
+    /**
+     * Returns the options the shared tracer is built with. When reports are scheduled by
+     * this tracer, the upstream reporting loop is disabled, and when this tracer sends the
+     * client metrics, the upstream metrics thread is.
+     */
+    private static Options sharedOptions(Options options, JREOptions jreOptions, ReportStats reportStats,
+                                         ReplayedSpans replayedSpans, boolean sendsClientMetrics) {
+        Options sharedOptions = options.setDefaultReportingIntervalMillis(JRE_DEFAULT_REPORTING_INTERVAL_MILLIS);
+        if (schedulesReports(options, jreOptions) || sendsClientMetrics) {
+            try {
+                sharedOptions = new Options.OptionsBuilder(sharedOptions)
+                        .withDisableReportingLoop(schedulesReports(options, jreOptions)
+                                || TracerInternals.isReportingLoopDisabled(options))
+                        .withDisableMetricsReporting(sendsClientMetrics
+                                || TracerInternals.isMetricsReportingDisabled(options))
+                        .build();
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Unexpected error when building a new set of options from a valid set of existing options", e);
+            }
+        }
+        if (jreOptions.usesStreamingClient()) {
+            ReportCompression compression = jreOptions.reportCompression.isAvailable()
+                    ? jreOptions.reportCompression : ReportCompression.NONE;
+            sharedOptions = StreamingHttpCollectorClientProvider.forStreamingReportEncoding(sharedOptions,
+                    ReportBufferPool.shared(jreOptions.directReportBuffers), compression,
+                    jreOptions.reportCompressionLevel, jreOptions.sharedScheduler, jreOptions.maxInflightReports,
+                    jreOptions.maxReportRetries);
+            if (jreOptions.collectorEndpoints != null) {
+                sharedOptions = StreamingHttpCollectorClientProvider.withCollectorEndpoints(sharedOptions,
+                        jreOptions.collectorEndpoints);
+            }
+        }
+        if (reportStats != null) {
+            sharedOptions = StreamingHttpCollectorClientProvider.withReportListener(sharedOptions, reportStats);
+        }
+        if (replayedSpans != null) {
+            sharedOptions = StreamingHttpCollectorClientProvider.withReportListener(sharedOptions, replayedSpans);
+        }
+        return sharedOptions;
+    }
+
+    /**
+     * Returns whether reports are scheduled by this tracer: with adaptive reporting, with
+     * live reconfiguration and with the shared scheduler.
+     */
+    private static boolean schedulesReports(Options options, JREOptions jreOptions) {
+        return (jreOptions.adaptiveReporting || jreOptions.liveReconfiguration || jreOptions.sharedScheduler)
+                && !TracerInternals.isReportingLoopDisabled(options);
+    }
+
+    private static AdaptiveReportingInterval newReportingInterval(Options options, JREOptions jreOptions) {
+        int maxBufferedSpans = TracerInternals.getMaxBufferedSpans(options);
+        long maxIntervalMillis = TracerInternals.getMaxReportingIntervalMillis(options);
+        if (!jreOptions.adaptiveReporting) {
+            // The schedule of the upstream reporting loop: a fixed interval, and a report as
+            // soon as half the report buffer is filled.
+            long intervalMillis = maxIntervalMillis == UNSET_REPORTING_INTERVAL_MILLIS
+                    ? JRE_DEFAULT_REPORTING_INTERVAL_MILLIS
+                    : maxIntervalMillis;
+            return new AdaptiveReportingInterval(intervalMillis, intervalMillis, maxBufferedSpans);
+        }
+
+        if (maxIntervalMillis == UNSET_REPORTING_INTERVAL_MILLIS) {
+            maxIntervalMillis = ADAPTIVE_DEFAULT_MAX_INTERVAL_MILLIS;
+        }
+        return new AdaptiveReportingInterval(maxIntervalMillis, maxBufferedSpans);
+    }
+
+    private synchronized void registerMXBean(String componentName) {
+        try {
+            ObjectName name = new ObjectName(MXBEAN_DOMAIN + ":type=JRETracer,component="
+                    + ObjectName.quote(componentName == null ? "" : componentName)
+                    + ",id=" + MXBEAN_IDS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new JRETracerMXBeanImpl(this, reportStats), name);
+            mxBeanName = name;
+        } catch (JMException | SecurityException e) {
+            error("Failed to register the tracer MXBean: ", e);
+        }
+    }
+
+    private synchronized void unregisterMXBean() {
+        if (mxBeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mxBeanName);
+        } catch (JMException | SecurityException e) {
+            warn("Failed to unregister the tracer MXBean: ", e);
+        }
+        mxBeanName = null;
+    }
+
+    /**
+     * Returns the MXBean name of the tracer, or null if it is not registered.
+     */
+    synchronized ObjectName mxBeanName() {
+        return mxBeanName;
+    }
+
+    private SpillQueue openSpillQueue(JREOptions jreOptions) {
+        try {
+            return new SpillQueue(new File(jreOptions.spillDirectory), jreOptions.spillMaxBytes,
+                    SpillQueue.DEFAULT_SEGMENT_BYTES);
+        } catch (IOException | RuntimeException e) {
+            error("Failed to open the spill queue, spans will not be spilled: ", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reports regularly while spilled spans are left, as the reporting loop stops once
+     * no new span reaches the report buffer, until the spill queue is drained.
+     */
+    private synchronized void startSpillReplay() {
+        if (spillReplay != null) {
+            return;
+        }
+        ScheduledExecutorService executor = reportExecutor();
+        if (executor == null) {
+            return;
+        }
+
+        try {
+            spillReplay = executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    if (!stopDrainedSpillReplay()) {
+                        scheduleFlush(false);
+                    }
+                }
+            }, JRE_DEFAULT_REPORTING_INTERVAL_MILLIS, JRE_DEFAULT_REPORTING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            spillReplay = null;
+        }
+    }
+
+    /**
+     * Cancels the spill replay if the spill queue is drained, which spans spilled later
+     * start again, and returns whether the replay is stopped.
+     */
+    private synchronized boolean stopDrainedSpillReplay() {
+        if (spillReplay == null) {
+            return true;
+        }
+        if (!spillQueue.isEmpty()) {
+            return false;
+        }
+        spillReplay.cancel(false);
+        spillReplay = null;
+        return true;
+    }
+
+    /**
+     * Called after each report. The replayed spans the collector confirmed are
+     * acknowledged, in the order they were read, and once they all are, the next batch is
+     * added to the report buffer after a successful report. Replayed spans left
+     * unconfirmed for {@link #spillReplayTimeoutNanos}, lost with a failed report, are read
+     * again: a spilled span may be reported twice, but is only deleted once the collector
+     * answered a report carrying it.
+     */
+    private void replaySpilledSpans(boolean reportSucceeded) {
+        collectorUnavailable = !reportSucceeded;
+        if (reportSucceeded && !replaysConfirmedByCollector) {
+            // The spans added after the previous report were part of this one.
+            replayedSpans.confirmAll();
+        }
+        spillQueue.acknowledge(replayedSpans.takeConfirmed());
+        if (!replayedSpans.isEmpty()) {
+            if (System.nanoTime() - replayedSpans.addedNanos() < spillReplayTimeoutNanos) {
+                return;
+            }
+            replayedSpans.clear();
+            spillQueue.rewind(0);
+        }
+        if (reportSucceeded && !isDisabled()) {
+            addSpilledSpans();
+        }
+    }
+
+    /**
+     * Adds the next batch of spilled spans to the report buffer, up to the first one it
+     * drops when full, which is read again with the following ones after the next report.
+     */
+    private void addSpilledSpans() {
+        List<com.lightstep.tracer.grpc.Span> records = spillQueue.read(SPILL_REPLAY_BATCH_SPANS);
+        // Holding the lock of the report buffer, the spans dropped can only be these.
+        synchronized (mutex) {
+            long spansDropped = super.status().getSpansDropped();
+            for (com.lightstep.tracer.grpc.Span record : records) {
+                TracerInternals.addSpan(this, record);
+                if (super.status().getSpansDropped() != spansDropped) {
+                    break;
+                }
+                replayedSpans.add(record.getSpanContext().getSpanId());
+            }
+        }
+        if (replayedSpans.size() < records.size()) {
+            spillQueue.rewind(replayedSpans.size());
+        }
+    }
+
+    private void drainSpanBuffer() {
+        if (spanBuffer != null) {
+            spanBuffer.drain();
+        }
+    }
+
+    private synchronized ScheduledExecutorService reportExecutor() {
+        if (reportExecutorShutdown) {
+            return null;
+        }
+
+        if (sharedScheduler) {
+            return SharedScheduler.get();
+        }
+        if (reportExecutor == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                    ReporterThreads.newThreadFactory(REPORT_EXECUTOR_THREAD_NAME));
+            // Scheduled reports are dropped on close, which reports right away.
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            reportExecutor = executor;
+        }
+
+        return reportExecutor;
+    }
+
+    private synchronized void shutdownReportExecutor() {
+        reportExecutorShutdown = true;
+        if (sharedScheduler) {
+            // Reports and flushes already queued find the tracer disabled.
+            if (nextReport != null) {
+                nextReport.cancel(false);
+                nextReport = null;
+            }
+            if (spillReplay != null) {
+                spillReplay.cancel(false);
+                spillReplay = null;
+            }
+        } else if (reportExecutor != null) {
+            reportExecutor.shutdown();
+            reportExecutor = null;
+        }
+    }
+
+    // The internal logging methods of the shared tracer, with the verbosity of the dynamic
+    // options once they are set.
+
+    @Override
+    protected void debug(String msg, Throwable throwable) {
+        DynamicOptions options = dynamicOptions;
+        if (options == null) {
+            super.debug(msg, throwable);
+        } else if (options.verbosity >= Options.VERBOSITY_DEBUG) {
+            printLogToConsole(InternalLogLevel.DEBUG, msg, throwable);
+        }
+    }
+
+    @Override
+    protected void info(String msg, Throwable throwable) {
+        DynamicOptions options = dynamicOptions;
+        if (options == null) {
+            super.info(msg, throwable);
+        } else if (options.verbosity >= Options.VERBOSITY_INFO) {
+            printLogToConsole(InternalLogLevel.INFO, msg, throwable);
+        }
+    }
+
+    @Override
+    protected void warn(String msg, Throwable throwable) {
+        DynamicOptions options = dynamicOptions;
+        if (options == null) {
+            super.warn(msg, throwable);
+        } else if (options.verbosity >= Options.VERBOSITY_INFO) {
+            printLogToConsole(InternalLogLevel.WARN, msg, throwable);
+        }
+    }
+
+    @Override
+    protected void error(String msg, Throwable throwable) {
+        DynamicOptions options = dynamicOptions;
+        if (options == null) {
+            super.error(msg, throwable);
+            return;
+        }
+        if (options.verbosity < Options.VERBOSITY_FIRST_ERROR_ONLY
+                || (options.verbosity == Options.VERBOSITY_FIRST_ERROR_ONLY && firstErrorLogged)) {
+            return;
+        }
+        firstErrorLogged = true;
+        printLogToConsole(InternalLogLevel.ERROR, msg, throwable);
     }
 
     @Override
@@ -0,0 +1,137 @@
+package com.lightstep.tracer.jre;
+
+/**
+ * Management interface of a {@link JRETracer}, registered with the platform MBean server
+ * as {@code com.lightstep.tracer:type=JRETracer,component=<component name>,id=<n>} when
+ * {@link JREOptions.OptionsBuilder#withJmx} is enabled.
+ *
+ * Counters are totals since the tracer was created. Percentiles and maximums are those of
+ * the values recorded since the tracer was created or {@link #resetHistograms()} was last
+ * called, with a precision of 1/8. Report latencies, sizes and ages are only measured with
+ * the HTTP collector client.
+ *
+ * The {@link DynamicOptions} of the tracer are exposed as well, and may be changed when
+ * {@link JREOptions.OptionsBuilder#withLiveReconfiguration} is enabled; otherwise, changing
+ * them fails with an {@link IllegalStateException}.
+ */
+public interface JRETracerMXBean {
+    /**
+     * Spans acknowledged by the collector.
+     */
+    long getSpansReported();
+
+    /**
+     * Spans dropped because the report buffer was full.
+     */
+    long getSpansDropped();
+
+    /**
+     * Spans dropped because the span buffer was full.
+     */
+    long getSpanBufferDropped();
+
+    /**
+     * Spans finished while the collector was unavailable that were dropped because the
+     * spill queue was full.
+     */
+    long getSpillDropped();
+
+    /**
+     * Finished spans waiting in the span buffer.
+     */
+    int getSpanBufferSize();
+
+    /**
+     * Reports acknowledged by the collector.
+     */
+    long getReportsSent();
+
+    /**
+     * Reports that got no response or an error from the collector.
+     */
+    long getReportsFailed();
+
+    /**
+     * Errors returned by the collector.
+     */
+    long getCollectorErrors();
+
+    /**
+     * Total size of the reports sent, before compression.
+     */
+    long getReportBytes();
+
+    long getReportLatencyMicrosP50();
+
+    long getReportLatencyMicrosP99();
+
+    long getReportLatencyMicrosMax();
+
+    long getReportSizeBytesP50();
+
+    long getReportSizeBytesP99();
+
+    long getReportSizeBytesMax();
+
+    /**
+     * Time spent flushing: draining the span buffer, sending the report and replaying
+     * spilled spans.
+     */
+    long getFlushTimeMicrosP50();
+
+    long getFlushTimeMicrosP99();
+
+    long getFlushTimeMicrosMax();
+
+    /**
+     * Time from the finish of the reported spans to the acknowledgement of their report.
+     * Growing ages mean that the tracer is falling behind, before spans get dropped.
+     */
+    long getReportAgeMillisP50();
+
+    long getReportAgeMillisP99();
+
+    long getReportAgeMillisMax();
+
+    /**
+     * Age of the oldest span of the latest acknowledged report.
+     */
+    long getLastReportAgeMillis();
+
+    /**
+     * Clears the latency, size, flush time and age histograms.
+     */
+    void resetHistograms();
+
+    int getVerbosity();
+
+    void setVerbosity(int verbosity);
+
+    long getMaxReportingIntervalMillis();
+
+    void setMaxReportingIntervalMillis(long maxReportingIntervalMillis);
+
+    int getMaxBufferedSpans();
+
+    void setMaxBufferedSpans(int maxBufferedSpans);
+
+    /**
+     * The sampler deciding which traces are recorded, or {@code none} if all are.
+     */
+    String getSampler();
+
+    /**
+     * Records traces with {@code probability}.
+     */
+    void sampleWithProbability(double probability);
+
+    /**
+     * Records at most {@code tracesPerSecond} traces per second.
+     */
+    void sampleAtRate(double tracesPerSecond);
+
+    /**
+     * Records all traces.
+     */
+    void disableSampling();
+}
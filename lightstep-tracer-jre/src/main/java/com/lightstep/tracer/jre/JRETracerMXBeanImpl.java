@@ -0,0 +1,183 @@
+package com.lightstep.tracer.jre;
+
+final class JRETracerMXBeanImpl implements JRETracerMXBean {
+    private final JRETracer tracer;
+    private final ReportStats stats;
+
+    JRETracerMXBeanImpl(JRETracer tracer, ReportStats stats) {
+        this.tracer = tracer;
+        this.stats = stats;
+    }
+
+    @Override
+    public long getSpansReported() {
+        return stats.spansReported.get();
+    }
+
+    @Override
+    public long getSpansDropped() {
+        return tracer.status().getSpansDropped();
+    }
+
+    @Override
+    public long getSpanBufferDropped() {
+        return tracer.getSpanBufferDroppedCount();
+    }
+
+    @Override
+    public long getSpillDropped() {
+        return tracer.getSpillDroppedCount();
+    }
+
+    @Override
+    public int getSpanBufferSize() {
+        return tracer.getSpanBufferSize();
+    }
+
+    @Override
+    public long getReportsSent() {
+        return stats.reportsSent.get();
+    }
+
+    @Override
+    public long getReportsFailed() {
+        return stats.reportsFailed.get();
+    }
+
+    @Override
+    public long getCollectorErrors() {
+        return stats.collectorErrors.get();
+    }
+
+    @Override
+    public long getReportBytes() {
+        return stats.reportBytes.get();
+    }
+
+    @Override
+    public long getReportLatencyMicrosP50() {
+        return stats.reportLatencyMicros.getValueAtQuantile(0.5);
+    }
+
+    @Override
+    public long getReportLatencyMicrosP99() {
+        return stats.reportLatencyMicros.getValueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getReportLatencyMicrosMax() {
+        return stats.reportLatencyMicros.getMax();
+    }
+
+    @Override
+    public long getReportSizeBytesP50() {
+        return stats.reportSizeBytes.getValueAtQuantile(0.5);
+    }
+
+    @Override
+    public long getReportSizeBytesP99() {
+        return stats.reportSizeBytes.getValueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getReportSizeBytesMax() {
+        return stats.reportSizeBytes.getMax();
+    }
+
+    @Override
+    public long getFlushTimeMicrosP50() {
+        return stats.flushTimeMicros.getValueAtQuantile(0.5);
+    }
+
+    @Override
+    public long getFlushTimeMicrosP99() {
+        return stats.flushTimeMicros.getValueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getFlushTimeMicrosMax() {
+        return stats.flushTimeMicros.getMax();
+    }
+
+    @Override
+    public long getReportAgeMillisP50() {
+        return stats.reportAgeMillis.getValueAtQuantile(0.5);
+    }
+
+    @Override
+    public long getReportAgeMillisP99() {
+        return stats.reportAgeMillis.getValueAtQuantile(0.99);
+    }
+
+    @Override
+    public long getReportAgeMillisMax() {
+        return stats.reportAgeMillis.getMax();
+    }
+
+    @Override
+    public long getLastReportAgeMillis() {
+        return stats.lastReportAgeMillis;
+    }
+
+    @Override
+    public void resetHistograms() {
+        stats.resetHistograms();
+    }
+
+    @Override
+    public int getVerbosity() {
+        return tracer.getDynamicOptions().getVerbosity();
+    }
+
+    @Override
+    public void setVerbosity(int verbosity) {
+        tracer.reconfigure(new DynamicOptions.OptionsBuilder().withVerbosity(verbosity).build());
+    }
+
+    @Override
+    public long getMaxReportingIntervalMillis() {
+        return tracer.getDynamicOptions().getMaxReportingIntervalMillis();
+    }
+
+    @Override
+    public void setMaxReportingIntervalMillis(long maxReportingIntervalMillis) {
+        tracer.reconfigure(new DynamicOptions.OptionsBuilder()
+                .withMaxReportingIntervalMillis(maxReportingIntervalMillis)
+                .build());
+    }
+
+    @Override
+    public int getMaxBufferedSpans() {
+        return tracer.getDynamicOptions().getMaxBufferedSpans();
+    }
+
+    @Override
+    public void setMaxBufferedSpans(int maxBufferedSpans) {
+        tracer.reconfigure(new DynamicOptions.OptionsBuilder().withMaxBufferedSpans(maxBufferedSpans).build());
+    }
+
+    @Override
+    public String getSampler() {
+        Sampler sampler = tracer.getDynamicOptions().getSampler();
+        return sampler == null ? "none" : sampler.toString();
+    }
+
+    @Override
+    public void sampleWithProbability(double probability) {
+        setSampler(new ProbabilisticSampler(probability));
+    }
+
+    @Override
+    public void sampleAtRate(double tracesPerSecond) {
+        setSampler(new RateLimitingSampler(tracesPerSecond));
+    }
+
+    @Override
+    public void disableSampling() {
+        setSampler(null);
+    }
+
+    private void setSampler(Sampler sampler) {
+        tracer.reconfigure(new DynamicOptions.OptionsBuilder().withSampler(sampler).build());
+    }
+}
@@ -0,0 +1,22 @@
+package com.lightstep.tracer.jre;
+
+/**
+ * What the span buffer does with a finished span when it is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * Drop the span being finished, keeping the spans already buffered.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drop the oldest buffered span to make room for the span being finished.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Make the finishing thread wait for room, up to the configured timeout, and then
+     * drop the span being finished.
+     */
+    BLOCK
+}
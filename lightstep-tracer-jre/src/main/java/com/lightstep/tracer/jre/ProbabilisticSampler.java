@@ -0,0 +1,51 @@
+package com.lightstep.tracer.jre;
+
+import io.opentracing.SpanContext;
+
+/**
+ * Samples a fixed fraction of traces.
+ *
+ * The decision only depends on a hash of the trace ID, so every span of a trace, in every
+ * process using this sampler with the same probability, gets the same decision without the
+ * decision having to be propagated.
+ */
+public final class ProbabilisticSampler implements Sampler {
+    private final double probability;
+    private final long threshold;
+
+    /**
+     * @param probability the fraction of traces to sample, between 0 and 1.
+     */
+    public ProbabilisticSampler(double probability) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Invalid sampling probability: " + probability);
+        }
+
+        this.probability = probability;
+        // Traces are sampled when the top 53 bits of the hash are below the threshold.
+        this.threshold = (long) (probability * (1L << 53));
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    @Override
+    public boolean isSampled(long traceId, String operationName, SpanContext parent) {
+        return (hash(traceId) >>> 11) < threshold;
+    }
+
+    /**
+     * The SplitMix64 finalizer, spreading trace IDs that are not uniformly distributed.
+     */
+    static long hash(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return "ProbabilisticSampler{probability=" + probability + "}";
+    }
+}
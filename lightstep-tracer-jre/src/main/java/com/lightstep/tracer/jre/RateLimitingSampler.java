@@ -0,0 +1,67 @@
+package com.lightstep.tracer.jre;
+
+import io.opentracing.SpanContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples up to a fixed number of traces per second, allowing bursts of up to one second's
+ * worth of traces.
+ *
+ * Only spans starting a trace are rate limited: spans with a sampled parent, local or
+ * remote, are always sampled, so that traces are recorded whole. Parents that are not
+ * sampled, including remote ones marked as such in their headers, never reach the sampler.
+ */
+public final class RateLimitingSampler implements Sampler {
+    private final double tracesPerSecond;
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    /**
+     * Theoretical arrival time of the next trace, as per the generic cell rate algorithm.
+     */
+    private final AtomicLong nextArrivalNanos;
+
+    /**
+     * @param tracesPerSecond the maximum number of traces sampled per second.
+     */
+    public RateLimitingSampler(double tracesPerSecond) {
+        if (!(tracesPerSecond > 0)) {
+            throw new IllegalArgumentException("Invalid sampling rate: " + tracesPerSecond);
+        }
+
+        this.tracesPerSecond = tracesPerSecond;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tracesPerSecond));
+        this.burstNanos = Math.max(intervalNanos, TimeUnit.SECONDS.toNanos(1));
+        this.nextArrivalNanos = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    public double getTracesPerSecond() {
+        return tracesPerSecond;
+    }
+
+    @Override
+    public boolean isSampled(long traceId, String operationName, SpanContext parent) {
+        if (parent != null) {
+            return true;
+        }
+
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = nextArrivalNanos.get();
+            long next = Math.max(arrival, now - burstNanos) + intervalNanos;
+            if (next - now > 0) {
+                return false;
+            }
+            if (nextArrivalNanos.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitingSampler{tracesPerSecond=" + tracesPerSecond + "}";
+    }
+}
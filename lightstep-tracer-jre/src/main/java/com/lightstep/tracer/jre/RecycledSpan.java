@@ -0,0 +1,235 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.shared.SpanContext;
+import com.lightstep.tracer.shared.TracerInternals;
+import io.opentracing.Span;
+import io.opentracing.tag.Tag;
+
+import java.util.Map;
+
+/**
+ * {@link JRESpan} recording its data in a pooled {@link SpanRecord} instead of a span of
+ * the shared tracer library. Once finished and added to the report buffer, the record is
+ * returned to its pool and may be reused by another span at once, so each call checks,
+ * under the record lock, that the record is still this span's and that the span is not
+ * finished. Calls that fail the check are ignored and reported through
+ * {@link JRETracer#spanUsedAfterFinish}, instead of writing to another span.
+ *
+ * The context is kept by the span itself, so that it can still be used as a parent once
+ * the span is finished.
+ */
+final class RecycledSpan extends JRESpan {
+    private final SpanRecordPool pool;
+    private final SpanRecord record;
+    private final int generation;
+    // The context the span is reported with, and the current one, which may have more baggage.
+    private final SpanContext startContext;
+    private volatile SpanContext context;
+    private final long startMicros;
+    private final long startNanos;
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} at which the span was started, or -1
+     *                   if the span was given an explicit start timestamp.
+     */
+    RecycledSpan(JRETracer tracer, SpanRecordPool pool, SpanRecord record, SpanContext context,
+                 long startMicros, long startNanos) {
+        super(tracer);
+        this.pool = pool;
+        this.record = record;
+        this.generation = record.generation;
+        this.startContext = context;
+        this.context = context;
+        this.startMicros = startMicros;
+        this.startNanos = startNanos;
+    }
+
+    @Override
+    void finishDelegate() {
+        tracer.addToReport(toGrpcSpan());
+        recycle();
+    }
+
+    @Override
+    com.lightstep.tracer.grpc.Span toGrpcSpan() {
+        synchronized (record) {
+            if (record.generation != generation) {
+                throw new IllegalStateException("The record of the span was already recycled");
+            }
+            return record.toGrpcSpan(startContext, startMicros, getFinishMicros());
+        }
+    }
+
+    @Override
+    void recycle() {
+        synchronized (record) {
+            if (record.generation == generation) {
+                pool.release(record);
+            }
+        }
+    }
+
+    @Override
+    long getStartMicros() {
+        return startMicros;
+    }
+
+    @Override
+    String getOperationName() {
+        synchronized (record) {
+            return record.generation == generation ? record.getOperationName() : null;
+        }
+    }
+
+    @Override
+    void addLimitTag(String key, long value) {
+        synchronized (record) {
+            if (record.generation == generation) {
+                record.tags().add(key, value);
+            }
+        }
+    }
+
+    @Override
+    long nowMicros() {
+        if (startNanos < 0) {
+            return System.currentTimeMillis() * 1000;
+        }
+        return startMicros + (System.nanoTime() - startNanos) / 1000;
+    }
+
+    @Override
+    public SpanContext context() {
+        return context;
+    }
+
+    @Override
+    public Span setTag(String key, String value) {
+        if (key == null || value == null) {
+            return this;
+        }
+        synchronized (record) {
+            if (checkInUse("setTag") && acceptTag()) {
+                SpanLimits limits = tracer.spanLimits();
+                record.tags().add(key, limits == null ? value : limits.limitTagValue(value));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Span setTag(String key, boolean value) {
+        if (key == null) {
+            return this;
+        }
+        tagSet(key, value);
+        synchronized (record) {
+            if (checkInUse("setTag") && acceptTag()) {
+                record.tags().add(key, value);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Span setTag(String key, Number value) {
+        if (key == null || value == null) {
+            return this;
+        }
+        synchronized (record) {
+            if (checkInUse("setTag") && acceptTag()) {
+                record.tags().add(key, value);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public <T> Span setTag(Tag<T> tag, T value) {
+        if (tag == null || value == null) {
+            return this;
+        }
+        tag.set(this, value);
+        return this;
+    }
+
+    @Override
+    public Span log(Map<String, ?> fields) {
+        return log(nowMicros(), fields);
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, Map<String, ?> fields) {
+        synchronized (record) {
+            if (checkInUse("log") && acceptLog()) {
+                SpanLimits limits = tracer.spanLimits();
+                record.addLog(timestampMicroseconds, limits == null ? fields : limits.limitLogPayload(fields));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Span log(String event) {
+        return log(nowMicros(), event);
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, String event) {
+        synchronized (record) {
+            if (checkInUse("log") && acceptLog()) {
+                SpanLimits limits = tracer.spanLimits();
+                record.addLog(timestampMicroseconds, limits == null ? event : limits.limitLogMessage(event));
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public synchronized Span setBaggageItem(String key, String value) {
+        context = context.withBaggageItem(key, value);
+        return this;
+    }
+
+    @Override
+    public String getBaggageItem(String key) {
+        return TracerInternals.getBaggageItem(context, key);
+    }
+
+    @Override
+    public Span setOperationName(String operationName) {
+        synchronized (record) {
+            if (checkInUse("setOperationName")) {
+                record.setOperationName(operationName);
+            }
+        }
+        return this;
+    }
+
+    private boolean acceptTag() {
+        SpanLimits limits = tracer.spanLimits();
+        return limits == null || acceptTag(limits);
+    }
+
+    private boolean acceptLog() {
+        SpanLimits limits = tracer.spanLimits();
+        return limits == null || acceptLog(limits);
+    }
+
+    /**
+     * Returns whether the record may be written to, reporting the call otherwise. Must be
+     * called while holding the record lock.
+     */
+    private boolean checkInUse(String method) {
+        if (record.generation == generation && !isFinished()) {
+            return true;
+        }
+        tracer.spanUsedAfterFinish(this, method);
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "RecycledSpan{traceId=" + context.toTraceId() + ", spanId=" + context.toSpanId() + "}";
+    }
+}
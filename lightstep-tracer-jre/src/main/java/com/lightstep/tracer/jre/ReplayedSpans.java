@@ -0,0 +1,90 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.lightstep.tracer.grpc.Span;
+import com.lightstep.tracer.shared.ReportListener;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Spans of the spill queue added back to the report buffer and not acknowledged yet, in
+ * the order they were read. A span is confirmed once the collector answered a report
+ * carrying it: as a report listener, from the responses of the collector, which follow
+ * the reports sent several at once or retried, or through {@link #confirmAll()} after a
+ * successful report, for the collector clients that do not notify report listeners.
+ */
+final class ReplayedSpans implements ReportListener {
+    private final ArrayDeque<Long> spanIds = new ArrayDeque<>();
+    private final Set<Long> pending = new HashSet<>();
+    private final Set<Long> confirmed = new HashSet<>();
+    private long addedNanos;
+
+    synchronized void add(long spanId) {
+        if (spanIds.isEmpty()) {
+            addedNanos = System.nanoTime();
+        }
+        spanIds.add(spanId);
+        pending.add(spanId);
+    }
+
+    synchronized boolean isEmpty() {
+        return spanIds.isEmpty();
+    }
+
+    synchronized int size() {
+        return spanIds.size();
+    }
+
+    /**
+     * Returns the time the spans left were added, in {@link System#nanoTime()}.
+     */
+    synchronized long addedNanos() {
+        return addedNanos;
+    }
+
+    synchronized void confirmAll() {
+        confirmed.addAll(pending);
+    }
+
+    /**
+     * Removes and counts the oldest spans that are confirmed, up to the first one that is
+     * not.
+     */
+    synchronized int takeConfirmed() {
+        int count = 0;
+        while (!spanIds.isEmpty() && confirmed.contains(spanIds.peek())) {
+            Long spanId = spanIds.poll();
+            pending.remove(spanId);
+            confirmed.remove(spanId);
+            count++;
+        }
+        return count;
+    }
+
+    synchronized void clear() {
+        spanIds.clear();
+        pending.clear();
+        confirmed.clear();
+    }
+
+    @Override
+    public void reportSent(ReportRequest request, ReportResponse response, long latencyNanos) {
+        if (response == null) {
+            return;
+        }
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            for (Span span : request.getSpansList()) {
+                long spanId = span.getSpanContext().getSpanId();
+                if (pending.contains(spanId)) {
+                    confirmed.add(spanId);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.lightstep.tracer.grpc.Span;
+import com.lightstep.tracer.metrics.LogLinearHistogram;
+import com.lightstep.tracer.shared.ReportListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters and histograms of the reports sent by a tracer and of the time it spends
+ * flushing, exposed through {@link JRETracerMXBean}.
+ *
+ * The age of a span is the time from its finish to the acknowledgement of the report
+ * holding it, so it includes the time spent in the span buffer, the report buffer and the
+ * spill queue. It is measured with the wall clock, as spans only hold their finish time
+ * as a timestamp.
+ */
+final class ReportStats implements ReportListener {
+    final AtomicLong reportsSent = new AtomicLong();
+    final AtomicLong reportsFailed = new AtomicLong();
+    final AtomicLong collectorErrors = new AtomicLong();
+    final AtomicLong spansReported = new AtomicLong();
+    final AtomicLong reportBytes = new AtomicLong();
+
+    final LogLinearHistogram reportLatencyMicros = new LogLinearHistogram();
+    final LogLinearHistogram reportSizeBytes = new LogLinearHistogram();
+    final LogLinearHistogram reportAgeMillis = new LogLinearHistogram();
+    final LogLinearHistogram flushTimeMicros = new LogLinearHistogram();
+
+    // Age of the oldest span of the latest acknowledged report.
+    volatile long lastReportAgeMillis;
+
+    @Override
+    public void reportSent(ReportRequest request, ReportResponse response, long latencyNanos) {
+        reportLatencyMicros.record(latencyNanos / 1000);
+        int bytes = request.getSerializedSize();
+        reportSizeBytes.record(bytes);
+        reportBytes.addAndGet(bytes);
+
+        if (response == null || response.getErrorsCount() > 0) {
+            reportsFailed.incrementAndGet();
+            if (response != null) {
+                collectorErrors.addAndGet(response.getErrorsCount());
+            }
+            return;
+        }
+
+        reportsSent.incrementAndGet();
+        if (request.getSpansCount() == 0) {
+            return;
+        }
+        spansReported.addAndGet(request.getSpansCount());
+        long nowMicros = System.currentTimeMillis() * 1000;
+        long oldestMillis = 0;
+        for (Span span : request.getSpansList()) {
+            long finishMicros = JRESpan.toEpochMicros(span.getStartTimestamp()) + span.getDurationMicros();
+            long ageMillis = Math.max(0, (nowMicros - finishMicros) / 1000);
+            reportAgeMillis.record(ageMillis);
+            oldestMillis = Math.max(oldestMillis, ageMillis);
+        }
+        lastReportAgeMillis = oldestMillis;
+    }
+
+    void flushed(long durationNanos) {
+        flushTimeMicros.record(durationNanos / 1000);
+    }
+
+    void resetHistograms() {
+        reportLatencyMicros.reset();
+        reportSizeBytes.reset();
+        reportAgeMillis.reset();
+        flushTimeMicros.reset();
+    }
+}
@@ -0,0 +1,35 @@
+package com.lightstep.tracer.jre;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads running the background loops of the tracer: reporting, metrics and
+ * the span buffer.
+ *
+ * These are daemon platform threads. On Java 21 and later, the multi-release JAR replaces
+ * this class with one creating virtual threads, whose idle stacks cost next to nothing.
+ */
+public final class ReporterThreads {
+    private ReporterThreads() {}
+
+    /**
+     * Returns an unstarted daemon thread running {@code runnable}.
+     */
+    public static Thread newThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Returns a factory of daemon threads named {@code name}.
+     */
+    public static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return ReporterThreads.newThread(name, runnable);
+            }
+        };
+    }
+}
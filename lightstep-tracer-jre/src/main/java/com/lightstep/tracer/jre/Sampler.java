@@ -0,0 +1,27 @@
+package com.lightstep.tracer.jre;
+
+import io.opentracing.SpanContext;
+
+/**
+ * Decides which traces are recorded by {@link JRETracer}.
+ *
+ * Spans that are not sampled get a context carrying their trace and span IDs, so that the
+ * trace is still propagated, but their tags, logs and timings are neither recorded nor
+ * reported. Children of a span that is not sampled are never sampled, and the sampler is
+ * not consulted for them: this includes the contexts extracted from LightStep or B3
+ * headers marked as not sampled, as {@link JRETracer} injects the contexts of the spans
+ * that are not sampled.
+ *
+ * @see JREOptions.OptionsBuilder#withSampler(Sampler)
+ */
+public interface Sampler {
+    /**
+     * Returns whether a span is recorded. Called from the thread starting the span.
+     *
+     * @param traceId the ID of the trace the span belongs to.
+     * @param operationName the operation name of the span.
+     * @param parent the context of the sampled parent of the span, which may belong to
+     *               another process, or null if the span starts a trace.
+     */
+    boolean isSampled(long traceId, String operationName, SpanContext parent);
+}
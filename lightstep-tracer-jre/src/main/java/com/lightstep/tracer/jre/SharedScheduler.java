@@ -0,0 +1,109 @@
+package com.lightstep.tracer.jre;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduler shared by the tracers created with
+ * {@link JREOptions.OptionsBuilder#withSharedScheduler(boolean)}, running their reports,
+ * flushes and client metrics samples on a small pool of threads, so that a tracer whose
+ * collector is slow does not hold back the others. The threads end after a minute without
+ * any task scheduled, and the scheduler is never shut down: closing a tracer cancels its
+ * own tasks.
+ *
+ * The flushes of each tracer go through a {@link TenantExecutor}, which runs them one at a
+ * time and queues at most one of them in the pool at once, so that the tracers, each with
+ * its own report buffer, get their reports sent in turn.
+ */
+final class SharedScheduler {
+    private static final String THREAD_NAME = "lightstep-shared-scheduler";
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final int MAX_THREADS = 4;
+
+    private SharedScheduler() {}
+
+    private static class Holder {
+        private static final ScheduledExecutorService EXECUTOR = create();
+    }
+
+    static ScheduledExecutorService get() {
+        return Holder.EXECUTOR;
+    }
+
+    /**
+     * Returns a new executor running its tasks in order on the shared scheduler.
+     */
+    static Executor newTenantExecutor() {
+        return new TenantExecutor();
+    }
+
+    private static ScheduledExecutorService create() {
+        int threads = Math.min(MAX_THREADS, Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads,
+                ReporterThreads.newThreadFactory(THREAD_NAME));
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        // The reports replaced by earlier ones would otherwise stay queued until due.
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Executor of a single tracer, running one task per turn in the shared scheduler queue
+     * and going back to the end of the queue while tasks are left.
+     */
+    static final class TenantExecutor implements Executor, Runnable {
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean queued;
+
+        private TenantExecutor() {}
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                tasks.add(task);
+                if (queued) {
+                    return;
+                }
+                queued = true;
+            }
+
+            try {
+                get().execute(this);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    tasks.remove(task);
+                    queued = false;
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            Runnable task;
+            synchronized (this) {
+                task = tasks.poll();
+            }
+
+            try {
+                if (task != null) {
+                    task.run();
+                }
+            } finally {
+                boolean more;
+                synchronized (this) {
+                    more = queued = !tasks.isEmpty();
+                }
+                if (more) {
+                    get().execute(this);
+                }
+            }
+        }
+    }
+}
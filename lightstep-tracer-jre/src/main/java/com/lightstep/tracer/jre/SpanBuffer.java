@@ -0,0 +1,163 @@
+package com.lightstep.tracer.jre;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queues finished spans in a {@link SpanRingBuffer} and hands them over to the tracer from
+ * a single drain thread, so that the lock guarding the tracer's report buffer is only ever
+ * taken off the request path.
+ *
+ * The drain thread wakes up periodically, and is woken up early by producers once the ring
+ * buffer is half full. Reports drain the buffer themselves before collecting spans, and
+ * wait for the drain thread to hand over the spans it already took.
+ */
+class SpanBuffer {
+    private static final String DRAIN_THREAD_NAME = "lightstep-span-buffer";
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpanBuffer.class);
+
+    private final JRETracer tracer;
+    private final SpanRingBuffer<JRESpan> ring;
+    private final int highWaterMark;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    private volatile Thread drainThread;
+    private volatile boolean drainThreadParked;
+    private volatile boolean closed;
+
+    SpanBuffer(JREOptions options, JRETracer tracer) {
+        this.tracer = tracer;
+        this.ring = new SpanRingBuffer<>(
+                options.spanBufferCapacity,
+                options.spanBufferOverflowPolicy,
+                TimeUnit.MILLISECONDS.toNanos(options.spanBufferBlockTimeoutMillis),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        wakeDrainThread();
+                    }
+                });
+        this.highWaterMark = Math.max(1, options.spanBufferCapacity / 2);
+    }
+
+    /**
+     * Queues a finished span.
+     *
+     * @return false if the span was dropped.
+     */
+    boolean add(JRESpan span) {
+        if (drainThread == null) {
+            startDrainThread();
+        }
+
+        boolean added = ring.add(span);
+        if (ring.size() >= highWaterMark) {
+            wakeDrainThread();
+        }
+        return added;
+    }
+
+    /**
+     * Hands all queued spans over to the tracer, once any drain in progress is done.
+     *
+     * @return the number of spans handed over.
+     */
+    int drain() {
+        drainLock.lock();
+        try {
+            return drainQueued();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Hands all queued spans over to the tracer, unless another drain is in progress. For
+     * callers holding the lock of the tracer's report buffer, which the drain in progress
+     * may be waiting for.
+     *
+     * @return the number of spans handed over.
+     */
+    int tryDrain() {
+        if (!drainLock.tryLock()) {
+            return 0;
+        }
+        try {
+            return drainQueued();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private int drainQueued() {
+        int drained = 0;
+        JRESpan span;
+        while ((span = ring.poll()) != null) {
+            try {
+                tracer.handOff(span);
+            } catch (RuntimeException e) {
+                LOGGER.error("Exception while finishing a buffered span", e);
+            }
+            drained++;
+        }
+        return drained;
+    }
+
+    int size() {
+        return ring.size();
+    }
+
+    long droppedCount() {
+        return ring.droppedCount();
+    }
+
+    void close() {
+        closed = true;
+        Thread thread = drainThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void startDrainThread() {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+
+        Thread thread = ReporterThreads.newThread(DRAIN_THREAD_NAME, new Runnable() {
+            @Override
+            public void run() {
+                runDrainLoop();
+            }
+        });
+        drainThread = thread;
+        thread.start();
+    }
+
+    private void runDrainLoop() {
+        while (!closed) {
+            drain();
+
+            drainThreadParked = true;
+            if (ring.size() == 0 && !closed) {
+                LockSupport.parkNanos(this, DRAIN_INTERVAL_NANOS);
+            }
+            drainThreadParked = false;
+        }
+    }
+
+    private void wakeDrainThread() {
+        Thread thread = drainThread;
+        if (thread != null && drainThreadParked) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.lightstep.tracer.jre;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-span limits on the number of tags and logs and on the size of tag values and log
+ * payloads, applied when they are recorded, with the counts of what they dropped and
+ * truncated. A limit of 0 means no limit.
+ *
+ * Truncated values end with {@link #TRUNCATION_MARKER}, which counts towards the limit,
+ * and spans that had tags or logs
+ * dropped get a {@link #DROPPED_TAGS_KEY} or {@link #DROPPED_LOGS_KEY} tag when finished.
+ */
+final class SpanLimits {
+    static final String TRUNCATION_MARKER = "...[truncated]";
+    static final String DROPPED_TAGS_KEY = "lightstep.dropped_tags";
+    static final String DROPPED_LOGS_KEY = "lightstep.dropped_logs";
+
+    final int maxLogsPerSpan;
+    final int maxTagsPerSpan;
+    final int maxLogPayloadBytes;
+    final int maxTagValueBytes;
+
+    private final AtomicLong droppedTags = new AtomicLong();
+    private final AtomicLong droppedLogs = new AtomicLong();
+    private final AtomicLong truncatedTagValues = new AtomicLong();
+    private final AtomicLong truncatedLogPayloads = new AtomicLong();
+
+    private SpanLimits(JREOptions options) {
+        this.maxLogsPerSpan = options.maxLogsPerSpan;
+        this.maxTagsPerSpan = options.maxTagsPerSpan;
+        this.maxLogPayloadBytes = options.maxLogPayloadBytes;
+        this.maxTagValueBytes = options.maxTagValueBytes;
+    }
+
+    /**
+     * Returns the limits set in {@code options}, or null if none is.
+     */
+    static SpanLimits of(JREOptions options) {
+        if (options.maxLogsPerSpan == 0 && options.maxTagsPerSpan == 0
+                && options.maxLogPayloadBytes == 0 && options.maxTagValueBytes == 0) {
+            return null;
+        }
+        return new SpanLimits(options);
+    }
+
+    /**
+     * Returns whether a span holding {@code tagCount} tags may get another one, counting it
+     * as dropped otherwise.
+     */
+    boolean acceptTag(int tagCount) {
+        if (maxTagsPerSpan == 0 || tagCount < maxTagsPerSpan) {
+            return true;
+        }
+        droppedTags.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns whether a span holding {@code logCount} logs may get another one, counting it
+     * as dropped otherwise.
+     */
+    boolean acceptLog(int logCount) {
+        if (maxLogsPerSpan == 0 || logCount < maxLogsPerSpan) {
+            return true;
+        }
+        droppedLogs.incrementAndGet();
+        return false;
+    }
+
+    String limitTagValue(String value) {
+        if (maxTagValueBytes == 0 || !exceeds(value, maxTagValueBytes)) {
+            return value;
+        }
+        truncatedTagValues.incrementAndGet();
+        return truncate(value, maxTagValueBytes);
+    }
+
+    String limitLogMessage(String message) {
+        if (maxLogPayloadBytes == 0 || message == null || !exceeds(message, maxLogPayloadBytes)) {
+            return message;
+        }
+        truncatedLogPayloads.incrementAndGet();
+        return truncate(message, maxLogPayloadBytes);
+    }
+
+    /**
+     * Returns {@code fields}, or a copy of them with values truncated so that their total
+     * size is within the payload limit. Strings and the values encoded as JSON count, while
+     * numbers and booleans do not.
+     */
+    Map<String, ?> limitLogPayload(Map<String, ?> fields) {
+        if (maxLogPayloadBytes == 0 || fields == null) {
+            return fields;
+        }
+
+        long bytes = 0;
+        for (Object value : fields.values()) {
+            if (isPayload(value)) {
+                bytes += utf8Length(value.toString(), maxLogPayloadBytes - bytes + 1);
+                if (bytes > maxLogPayloadBytes) {
+                    break;
+                }
+            }
+        }
+        if (bytes <= maxLogPayloadBytes) {
+            return fields;
+        }
+
+        truncatedLogPayloads.incrementAndGet();
+        Map<String, Object> limited = new LinkedHashMap<>(fields.size() * 2);
+        int remaining = maxLogPayloadBytes;
+        for (Map.Entry<String, ?> field : fields.entrySet()) {
+            Object value = field.getValue();
+            if (isPayload(value)) {
+                String string = value.toString();
+                int length = (int) utf8Length(string, remaining + 1);
+                if (length > remaining) {
+                    value = truncate(string, remaining);
+                    remaining = 0;
+                } else {
+                    remaining -= length;
+                }
+            }
+            limited.put(field.getKey(), value);
+        }
+        return limited;
+    }
+
+    long droppedTagsCount() {
+        return droppedTags.get();
+    }
+
+    long droppedLogsCount() {
+        return droppedLogs.get();
+    }
+
+    long truncatedTagValuesCount() {
+        return truncatedTagValues.get();
+    }
+
+    long truncatedLogPayloadsCount() {
+        return truncatedLogPayloads.get();
+    }
+
+    private static boolean isPayload(Object value) {
+        return value != null && !(value instanceof Number) && !(value instanceof Boolean);
+    }
+
+    private static boolean exceeds(String value, int maxBytes) {
+        // Each char takes at most 3 bytes in UTF-8.
+        return value.length() > maxBytes / 3 && utf8Length(value, maxBytes + 1) > maxBytes;
+    }
+
+    /**
+     * Returns the first bytes of {@code value} in UTF-8, without splitting a character,
+     * followed by {@link #TRUNCATION_MARKER}, in at most {@code maxBytes}. Under the size
+     * of the marker, the value is cut without it.
+     */
+    static String truncate(String value, int maxBytes) {
+        boolean marked = maxBytes >= TRUNCATION_MARKER.length();
+        if (marked) {
+            // The marker is ASCII, one byte per char.
+            maxBytes -= TRUNCATION_MARKER.length();
+        }
+        int bytes = 0;
+        int end = 0;
+        while (end < value.length()) {
+            char c = value.charAt(end);
+            int charBytes;
+            int chars = 1;
+            if (c < 0x80) {
+                charBytes = 1;
+            } else if (c < 0x800) {
+                charBytes = 2;
+            } else if (Character.isHighSurrogate(c) && end + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(end + 1))) {
+                charBytes = 4;
+                chars = 2;
+            } else {
+                charBytes = 3;
+            }
+            if (bytes + charBytes > maxBytes) {
+                break;
+            }
+            bytes += charBytes;
+            end += chars;
+        }
+        return marked ? value.substring(0, end) + TRUNCATION_MARKER : value.substring(0, end);
+    }
+
+    /**
+     * Returns the size of {@code value} in UTF-8, counting no further than {@code limit}.
+     */
+    static long utf8Length(String value, long limit) {
+        long bytes = 0;
+        for (int i = 0; i < value.length() && bytes < limit; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
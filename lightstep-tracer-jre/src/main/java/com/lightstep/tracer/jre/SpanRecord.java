@@ -0,0 +1,181 @@
+package com.lightstep.tracer.jre;
+
+import com.google.protobuf.Timestamp;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.Log;
+import com.lightstep.tracer.grpc.Reference;
+import com.lightstep.tracer.shared.SpanContext;
+import com.lightstep.tracer.shared.TracerInternals;
+import io.opentracing.References;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mutable record of a span started by a {@link RecycledSpan}, holding its operation name,
+ * references, tags and logs until it is finished. It is converted to the protobuf span
+ * added to the report buffer, then cleared and returned to its {@link SpanRecordPool} with
+ * its log records, to be reused by another span.
+ *
+ * Guarded by its own lock, which {@link RecycledSpan} holds while checking that the record
+ * is still its own.
+ */
+final class SpanRecord {
+    // Lists grown past these sizes are not kept when the record is reused.
+    private static final int MAX_RETAINED_LOGS = 32;
+    private static final int MAX_RETAINED_LOG_FIELDS = 16;
+
+    private static final String LOG_KEY_MESSAGE = "message";
+
+    /**
+     * Incremented each time the record is returned to its pool.
+     */
+    int generation;
+
+    private String operationName;
+    // Reference types and contexts, alternating.
+    private final List<Object> references = new ArrayList<>(2);
+    private final TagStore tags = new TagStore();
+    // Log records, of which the first logCount are in use.
+    private ArrayList<LogRecord> logs = new ArrayList<>(4);
+    private int logCount;
+
+    String getOperationName() {
+        return operationName;
+    }
+
+    void setOperationName(String operationName) {
+        this.operationName = operationName;
+    }
+
+    void addReference(String type, SpanContext context) {
+        references.add(type);
+        references.add(context);
+    }
+
+    TagStore tags() {
+        return tags;
+    }
+
+    void addLog(long timestampMicros, Map<String, ?> fields) {
+        LogRecord log = nextLog(timestampMicros);
+        for (Map.Entry<String, ?> field : fields.entrySet()) {
+            if (field.getKey() != null) {
+                log.fields.add(field.getKey());
+                log.fields.add(field.getValue());
+            }
+        }
+    }
+
+    void addLog(long timestampMicros, String message) {
+        LogRecord log = nextLog(timestampMicros);
+        log.fields.add(LOG_KEY_MESSAGE);
+        log.fields.add(message);
+    }
+
+    private LogRecord nextLog(long timestampMicros) {
+        LogRecord log;
+        if (logCount < logs.size()) {
+            log = logs.get(logCount);
+        } else {
+            log = new LogRecord();
+            logs.add(log);
+        }
+        logCount++;
+        log.timestampMicros = timestampMicros;
+        return log;
+    }
+
+    /**
+     * Returns the protobuf span of this record, encoded the same way as the spans of the
+     * shared library.
+     */
+    com.lightstep.tracer.grpc.Span toGrpcSpan(SpanContext context, long startMicros, long finishMicros) {
+        com.lightstep.tracer.grpc.Span.Builder span = com.lightstep.tracer.grpc.Span.newBuilder()
+                .setOperationName(operationName)
+                .setSpanContext(context.getInnerSpanCtx())
+                .setStartTimestamp(toTimestamp(startMicros))
+                .setDurationMicros(finishMicros - startMicros);
+
+        for (int i = 0; i < references.size(); i += 2) {
+            span.addReferences(Reference.newBuilder()
+                    .setRelationship(References.CHILD_OF.equals(references.get(i))
+                            ? Reference.Relationship.CHILD_OF
+                            : Reference.Relationship.FOLLOWS_FROM)
+                    .setSpanContext(((SpanContext) references.get(i + 1)).getInnerSpanCtx()));
+        }
+
+        tags.addTo(span);
+
+        for (int i = 0; i < logCount; i++) {
+            LogRecord record = logs.get(i);
+            Log.Builder log = Log.newBuilder().setTimestamp(toTimestamp(record.timestampMicros));
+            for (int f = 0; f < record.fields.size(); f += 2) {
+                log.addFields(toLogField((String) record.fields.get(f), record.fields.get(f + 1)));
+            }
+            span.addLogs(log);
+        }
+        return span.build();
+    }
+
+    /**
+     * Clears the record for its next span.
+     */
+    void reset() {
+        generation++;
+        operationName = null;
+        references.clear();
+        tags.clear();
+        if (logs.size() > MAX_RETAINED_LOGS) {
+            logs = new ArrayList<>(4);
+        } else {
+            for (int i = 0; i < logCount; i++) {
+                logs.get(i).reset();
+            }
+        }
+        logCount = 0;
+    }
+
+    // Same as com.lightstep.tracer.shared.Span.log.
+    private static KeyValue.Builder toLogField(String key, Object value) {
+        KeyValue.Builder field = KeyValue.newBuilder().setKey(key);
+        if (value == null) {
+            field.setStringValue("");
+        } else if (value instanceof String) {
+            field.setStringValue((String) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            field.setIntValue(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            field.setDoubleValue(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            field.setStringValue(value.toString());
+        } else if (value instanceof Boolean) {
+            field.setBoolValue((Boolean) value);
+        } else {
+            field.setJsonValue(TracerInternals.toJsonValue(value.toString()));
+        }
+        return field;
+    }
+
+    private static Timestamp toTimestamp(long micros) {
+        return Timestamp.newBuilder()
+                .setSeconds(micros / 1000000L)
+                .setNanos((int) (micros % 1000000L) * 1000)
+                .build();
+    }
+
+    private static final class LogRecord {
+        long timestampMicros;
+        // Field keys and values, alternating.
+        ArrayList<Object> fields = new ArrayList<>(4);
+
+        void reset() {
+            if (fields.size() > 2 * MAX_RETAINED_LOG_FIELDS) {
+                fields = new ArrayList<>(4);
+            } else {
+                fields.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.lightstep.tracer.jre;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of the {@link SpanRecord}s of recycled spans. Records are taken when a span is
+ * started and returned once the finished span has been added to the report buffer; when
+ * the pool is empty, new records are allocated, and records returned to a full pool are
+ * left to the garbage collector.
+ */
+final class SpanRecordPool {
+    private final BlockingQueue<SpanRecord> records;
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    SpanRecordPool(int capacity) {
+        this.records = new ArrayBlockingQueue<>(capacity);
+    }
+
+    SpanRecord acquire() {
+        SpanRecord record = records.poll();
+        if (record == null) {
+            return new SpanRecord();
+        }
+        reusedCount.incrementAndGet();
+        return record;
+    }
+
+    /**
+     * Clears {@code record} and returns it to the pool. Must be called while holding the
+     * lock of {@code record}.
+     */
+    void release(SpanRecord record) {
+        record.reset();
+        records.offer(record);
+    }
+
+    /**
+     * Returns the number of spans started with a reused record.
+     */
+    long reusedCount() {
+        return reusedCount.get();
+    }
+}
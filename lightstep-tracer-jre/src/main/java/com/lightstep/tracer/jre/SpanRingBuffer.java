@@ -0,0 +1,177 @@
+package com.lightstep.tracer.jre;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free queue for finished spans, based on Dmitry Vyukov's bounded MPMC queue.
+ *
+ * Each slot carries a sequence number telling producers and consumers whether it is free
+ * for the current lap, so {@link #add} and {@link #poll} only ever CAS a position counter
+ * and never take a lock. Any number of threads may produce; consuming is done by the span
+ * buffer drain thread, but may safely happen on several threads at once, which is what
+ * {@link OverflowPolicy#DROP_OLDEST} relies on.
+ */
+final class SpanRingBuffer<E> {
+    private static final long BLOCK_BACKOFF_NANOS = 50000;
+
+    private final int capacity;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+    private final Runnable onFull;
+
+    /**
+     * @param capacity the maximum number of elements held. At least 2 slots are used, as
+     *                 with a single slot the sequence published by a producer could not be
+     *                 told apart from the one handing the slot over to the next lap.
+     * @param policy what {@link #add} does when the buffer is full.
+     * @param blockTimeoutNanos how long {@link OverflowPolicy#BLOCK} waits for room.
+     * @param onFull invoked whenever {@link #add} finds the buffer full, so that the
+     *               consumer can be woken up.
+     */
+    SpanRingBuffer(int capacity, OverflowPolicy policy, long blockTimeoutNanos, Runnable onFull) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy cannot be null");
+        }
+
+        capacity = Math.max(2, capacity);
+        this.capacity = capacity;
+        this.elements = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.policy = policy;
+        this.blockTimeoutNanos = blockTimeoutNanos;
+        this.onFull = onFull;
+    }
+
+    /**
+     * Adds an element, applying the overflow policy if the buffer is full.
+     *
+     * @return false if the element was dropped.
+     */
+    boolean add(E element) {
+        if (offer(element)) {
+            return true;
+        }
+
+        switch (policy) {
+            case DROP_OLDEST:
+                do {
+                    notifyFull();
+                    if (poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                } while (!offer(element));
+                return true;
+
+            case BLOCK:
+                long deadline = System.nanoTime() + blockTimeoutNanos;
+                do {
+                    notifyFull();
+                    if (System.nanoTime() - deadline >= 0) {
+                        dropped.incrementAndGet();
+                        return false;
+                    }
+                    LockSupport.parkNanos(this, BLOCK_BACKOFF_NANOS);
+                } while (!offer(element));
+                return true;
+
+            default:
+                notifyFull();
+                dropped.incrementAndGet();
+                return false;
+        }
+    }
+
+    /**
+     * Adds an element if there is room for it.
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = index(position);
+            long delta = sequences.get(index) - position;
+            if (delta == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // Publishes the element to consumers.
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (delta < 0) {
+                // The slot still holds the element from the previous lap.
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the element, or null if the buffer is empty.
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int index = index(position);
+            long delta = sequences.get(index) - (position + 1);
+            if (delta == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(index);
+                    elements.lazySet(index, null);
+                    // Hands the slot over to producers of the next lap.
+                    sequences.lazySet(index, position + capacity);
+                    return element;
+                }
+                position = head.get();
+            } else if (delta < 0) {
+                // The slot has not been published yet.
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) {
+            return 0;
+        }
+        return size > capacity ? capacity : (int) size;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long droppedCount() {
+        return dropped.get();
+    }
+
+    private int index(long position) {
+        return (int) (position % capacity);
+    }
+
+    private void notifyFull() {
+        if (onFull != null) {
+            onFull.run();
+        }
+    }
+}
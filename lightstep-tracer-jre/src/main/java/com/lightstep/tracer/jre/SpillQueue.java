@@ -0,0 +1,389 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.grpc.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue of finished spans stored on disk, in segment files of a maximum size written and
+ * read through their channel, which is closed before a segment is deleted.
+ *
+ * Spans are appended to the newest segment and read back in order. Reading does not remove
+ * them: {@link #acknowledge(int)} records that the oldest spans read have been reported,
+ * and deletes the segments that are fully acknowledged, while {@link #rewind(int)} makes
+ * the spans read but not acknowledged readable again. The acknowledged position is kept in
+ * each segment's header, so that the spans left in the directory by a previous process are
+ * read back on startup.
+ *
+ * Segment layout: a header made of a magic number and the acknowledged position, followed
+ * by records made of a length and a serialized {@link Span}. A zero length ends a segment.
+ */
+class SpillQueue {
+    static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int MAGIC = 0x4c535350;
+    private static final int ACK_POSITION_OFFSET = 4;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 4;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillQueue.class);
+
+    private final File directory;
+    private final long maxBytes;
+    private final int segmentBytes;
+    private final LinkedList<Segment> segments = new LinkedList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private long nextSequence;
+    private boolean closed;
+
+    /**
+     * Opens the queue stored in {@code directory}, creating the directory if needed.
+     *
+     * @param maxBytes the maximum size of all the segment files.
+     * @param segmentBytes the size of each segment file; reduced to {@code maxBytes} if larger.
+     */
+    SpillQueue(File directory, long maxBytes, int segmentBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create spill directory " + directory);
+        }
+
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = (int) Math.min(segmentBytes, maxBytes);
+        if (this.segmentBytes <= HEADER_BYTES + RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Spill size too small: " + maxBytes);
+        }
+
+        openExistingSegments();
+    }
+
+    /**
+     * Appends a span to the queue.
+     *
+     * @return false if the queue is full and the span was dropped.
+     */
+    synchronized boolean append(Span span) {
+        int size = span.getSerializedSize();
+        int recordBytes = RECORD_HEADER_BYTES + size;
+
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.sealed || segment.remaining() < recordBytes) {
+            if (segment != null) {
+                segment.sealed = true;
+            }
+            segment = null;
+            if (HEADER_BYTES + recordBytes <= segmentBytes
+                    && (long) (segments.size() + 1) * segmentBytes <= maxBytes) {
+                segment = createSegment();
+            }
+        }
+        if (segment == null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        try {
+            segment.write(span.toByteArray());
+        } catch (IOException e) {
+            LOGGER.error("Failed to write span to spill segment " + segment.file, e);
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads up to {@code maxSpans} spans that have not been read yet.
+     */
+    synchronized List<Span> read(int maxSpans) {
+        List<Span> spans = new ArrayList<>();
+        for (Segment segment : segments) {
+            while (spans.size() < maxSpans && segment.readPosition < segment.writePosition) {
+                int position = segment.readPosition;
+                try {
+                    spans.add(segment.read());
+                } catch (IOException e) {
+                    LOGGER.error("Skipping corrupted spill segment " + segment.file, e);
+                    segment.corruptedPosition = position;
+                    segment.readPosition = segment.writePosition;
+                }
+            }
+            if (spans.size() == maxSpans) {
+                break;
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Marks the {@code spans} oldest spans read and not acknowledged yet as reported,
+     * deleting the segments holding only reported spans.
+     */
+    synchronized void acknowledge(int spans) {
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            while (segment.ackPosition < segment.readPosition) {
+                if (segment.ackPosition == segment.corruptedPosition) {
+                    // Skipped when read, without being counted.
+                    segment.ackPosition = segment.readPosition;
+                    break;
+                }
+                if (spans == 0) {
+                    break;
+                }
+                segment.ackPosition = segment.recordEnd(segment.ackPosition);
+                spans--;
+            }
+            if (segment.ackPosition == segment.writePosition) {
+                iterator.remove();
+                segment.delete();
+            } else {
+                segment.acknowledge();
+                if (segment.ackPosition < segment.readPosition) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the spans read and not acknowledged readable again, except for the
+     * {@code keptSpans} oldest ones.
+     */
+    synchronized void rewind(int keptSpans) {
+        for (Segment segment : segments) {
+            int position = segment.ackPosition;
+            while (keptSpans > 0 && position < segment.readPosition) {
+                position = segment.recordEnd(position);
+                keptSpans--;
+            }
+            segment.readPosition = position;
+        }
+    }
+
+    /**
+     * Returns whether some spans have not been acknowledged yet.
+     */
+    synchronized boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    long droppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Closes the segment files, which are left in the directory with the spans not
+     * acknowledged yet. Spans appended afterwards are dropped.
+     */
+    synchronized void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        closed = true;
+    }
+
+    private Segment createSegment() {
+        if (closed) {
+            return null;
+        }
+
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        Segment segment = null;
+        try {
+            segment = new Segment(file, open(file), segmentBytes);
+            segment.writeInt(0, MAGIC);
+            segment.acknowledge();
+            segments.addLast(segment);
+            return segment;
+        } catch (IOException e) {
+            LOGGER.error("Failed to create spill segment " + file, e);
+            if (segment != null) {
+                segment.delete();
+            }
+            return null;
+        }
+    }
+
+    private void openExistingSegments() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null) {
+            throw new IOException("Could not list spill directory " + directory);
+        }
+        Arrays.sort(files);
+
+        for (File file : files) {
+            String sequence = file.getName().substring(SEGMENT_PREFIX.length(),
+                    file.getName().length() - SEGMENT_SUFFIX.length());
+            try {
+                nextSequence = Math.max(nextSequence, Long.parseLong(sequence) + 1);
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            Segment segment = new Segment(file, open(file), (int) Math.min(file.length(), Integer.MAX_VALUE));
+            if (segment.capacity < HEADER_BYTES || segment.readInt(0) != MAGIC) {
+                LOGGER.warn("Ignoring invalid spill segment " + file);
+                segment.close();
+                continue;
+            }
+
+            // Segments left by a previous process are only read from, never appended to.
+            segment.sealed = true;
+            segment.readPosition = segment.readInt(ACK_POSITION_OFFSET);
+            segment.writePosition = segment.scanEnd();
+            if (segment.readPosition < HEADER_BYTES || segment.readPosition > segment.writePosition) {
+                segment.readPosition = HEADER_BYTES;
+            }
+            segment.ackPosition = segment.readPosition;
+            segments.addLast(segment);
+        }
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        // Closing the channel closes the file.
+        @SuppressWarnings("resource")
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        return raf.getChannel();
+    }
+
+    private static class Segment {
+        final File file;
+        final FileChannel channel;
+        // Size the segment may grow to.
+        final int capacity;
+        private final ByteBuffer intBuffer = ByteBuffer.allocate(4);
+        int ackPosition = HEADER_BYTES;
+        int readPosition = HEADER_BYTES;
+        int writePosition = HEADER_BYTES;
+        // Position of the record the rest of the segment was skipped from, or -1.
+        int corruptedPosition = -1;
+        boolean sealed;
+
+        Segment(File file, FileChannel channel, int capacity) {
+            this.file = file;
+            this.channel = channel;
+            this.capacity = capacity;
+        }
+
+        int remaining() {
+            return capacity - writePosition;
+        }
+
+        void write(byte[] record) throws IOException {
+            writeFully(ByteBuffer.wrap(record), writePosition + RECORD_HEADER_BYTES);
+            // The length is written last, so that a partially written record reads as the
+            // end of the segment.
+            writeInt(writePosition, record.length);
+            writePosition += RECORD_HEADER_BYTES + record.length;
+        }
+
+        Span read() throws IOException {
+            int size = readInt(readPosition);
+            ByteBuffer record = ByteBuffer.allocate(size);
+            readFully(record, readPosition + RECORD_HEADER_BYTES);
+            readPosition += RECORD_HEADER_BYTES + size;
+            return Span.parseFrom(record.array());
+        }
+
+        /**
+         * Returns the position of the record following the one at {@code position}, which
+         * has been read before.
+         */
+        int recordEnd(int position) {
+            try {
+                return position + RECORD_HEADER_BYTES + readInt(position);
+            } catch (IOException e) {
+                LOGGER.error("Failed to read spill segment " + file, e);
+                return readPosition;
+            }
+        }
+
+        int scanEnd() throws IOException {
+            int position = HEADER_BYTES;
+            while (position + RECORD_HEADER_BYTES <= capacity) {
+                int size = readInt(position);
+                if (size <= 0 || position + RECORD_HEADER_BYTES + size > capacity) {
+                    break;
+                }
+                position += RECORD_HEADER_BYTES + size;
+            }
+            return position;
+        }
+
+        void acknowledge() {
+            try {
+                writeInt(ACK_POSITION_OFFSET, ackPosition);
+            } catch (IOException e) {
+                LOGGER.error("Failed to write the acknowledged position of spill segment " + file, e);
+            }
+        }
+
+        int readInt(int position) throws IOException {
+            intBuffer.clear();
+            readFully(intBuffer, position);
+            return intBuffer.getInt(0);
+        }
+
+        void writeInt(int position, int value) throws IOException {
+            intBuffer.clear();
+            intBuffer.putInt(0, value);
+            writeFully(intBuffer, position);
+        }
+
+        private void readFully(ByteBuffer buffer, int position) throws IOException {
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    // Past the end of a segment not fully written, as if zeroed.
+                    while (buffer.hasRemaining()) {
+                        buffer.put((byte) 0);
+                    }
+                }
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer, int position) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close spill segment " + file, e);
+            }
+        }
+
+        void delete() {
+            close();
+            if (!file.delete()) {
+                LOGGER.warn("Failed to delete spill segment " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.grpc.KeyValue;
+import io.opentracing.Tracer;
+
+import java.util.Arrays;
+
+/**
+ * Array-backed tags of a span, in the order they were set. Spans have few tags, so they
+ * are kept in parallel arrays instead of maps, with long, double and boolean values kept
+ * unboxed until the span is encoded.
+ *
+ * Not thread-safe.
+ */
+final class TagStore {
+    private static final int INITIAL_CAPACITY = 8;
+    // Arrays grown past this capacity are not kept when the store is cleared.
+    private static final int MAX_RETAINED_CAPACITY = 64;
+
+    private static final byte STRING = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+
+    private String[] keys;
+    private byte[] types;
+    // Long values, double values as raw long bits, and booleans as 0 or 1.
+    private long[] primitives;
+    private String[] strings;
+    private int size;
+
+    TagStore() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(String key, String value) {
+        int i = next(key, STRING);
+        strings[i] = value;
+    }
+
+    void add(String key, long value) {
+        int i = next(key, LONG);
+        primitives[i] = value;
+    }
+
+    void add(String key, double value) {
+        int i = next(key, DOUBLE);
+        primitives[i] = Double.doubleToRawLongBits(value);
+    }
+
+    void add(String key, boolean value) {
+        int i = next(key, BOOLEAN);
+        primitives[i] = value ? 1 : 0;
+    }
+
+    /**
+     * Adds a numeric tag the way the spans of the shared library do: integers and longs
+     * as int values, floats and doubles as double values, and other numbers as strings.
+     */
+    void add(String key, Number value) {
+        if (value instanceof Long || value instanceof Integer) {
+            add(key, value.longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            add(key, value.doubleValue());
+        } else {
+            add(key, value.toString());
+        }
+    }
+
+    /**
+     * Adds a tag whose type is only known at runtime, such as a global tag.
+     */
+    void add(String key, Object value) {
+        if (value instanceof String) {
+            add(key, (String) value);
+        } else if (value instanceof Boolean) {
+            add(key, ((Boolean) value).booleanValue());
+        } else if (value instanceof Number) {
+            add(key, (Number) value);
+        } else {
+            add(key, value.toString());
+        }
+    }
+
+    void addAll(TagStore other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.keys, 0, keys, size, other.size);
+        System.arraycopy(other.types, 0, types, size, other.size);
+        System.arraycopy(other.primitives, 0, primitives, size, other.size);
+        System.arraycopy(other.strings, 0, strings, size, other.size);
+        size += other.size;
+    }
+
+    /**
+     * Sets the tags on {@code builder}, boxing their values.
+     */
+    void setOn(Tracer.SpanBuilder builder) {
+        for (int i = 0; i < size; i++) {
+            switch (types[i]) {
+                case LONG:
+                    builder.withTag(keys[i], primitives[i]);
+                    break;
+                case DOUBLE:
+                    builder.withTag(keys[i], Double.longBitsToDouble(primitives[i]));
+                    break;
+                case BOOLEAN:
+                    builder.withTag(keys[i], primitives[i] != 0);
+                    break;
+                default:
+                    builder.withTag(keys[i], strings[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds the tags to {@code span}.
+     */
+    void addTo(com.lightstep.tracer.grpc.Span.Builder span) {
+        for (int i = 0; i < size; i++) {
+            KeyValue.Builder tag = KeyValue.newBuilder().setKey(keys[i]);
+            switch (types[i]) {
+                case LONG:
+                    tag.setIntValue(primitives[i]);
+                    break;
+                case DOUBLE:
+                    tag.setDoubleValue(Double.longBitsToDouble(primitives[i]));
+                    break;
+                case BOOLEAN:
+                    tag.setBoolValue(primitives[i] != 0);
+                    break;
+                default:
+                    tag.setStringValue(strings[i]);
+            }
+            span.addTags(tag);
+        }
+    }
+
+    void clear() {
+        if (keys.length > MAX_RETAINED_CAPACITY) {
+            allocate(INITIAL_CAPACITY);
+        } else {
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(strings, 0, size, null);
+        }
+        size = 0;
+    }
+
+    private int next(String key, byte type) {
+        ensureCapacity(size + 1);
+        keys[size] = key;
+        types[size] = type;
+        return size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= keys.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, keys.length * 2);
+        keys = Arrays.copyOf(keys, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        primitives = Arrays.copyOf(primitives, newCapacity);
+        strings = Arrays.copyOf(strings, newCapacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        types = new byte[capacity];
+        primitives = new long[capacity];
+        strings = new String[capacity];
+    }
+}
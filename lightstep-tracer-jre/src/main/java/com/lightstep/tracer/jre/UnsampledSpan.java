@@ -0,0 +1,139 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.metrics.SpanMetrics;
+import io.opentracing.Span;
+import io.opentracing.tag.Tag;
+import io.opentracing.tag.Tags;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Span that is not sampled: only its context, including baggage, is kept, along with what
+ * the span metrics need when they are enabled.
+ */
+final class UnsampledSpan implements Span {
+    private volatile UnsampledSpanContext context;
+
+    // Null if span metrics are disabled.
+    private final SpanMetrics spanMetrics;
+    private final AtomicBoolean finished;
+    private volatile String operationName;
+    private volatile boolean error;
+    private final long startMicros;
+    private final long startNanos;
+
+    UnsampledSpan(UnsampledSpanContext context) {
+        this.context = context;
+        this.spanMetrics = null;
+        this.finished = null;
+        this.startMicros = 0;
+        this.startNanos = 0;
+    }
+
+    /**
+     * @param startMicros the explicit start timestamp of the span, or 0 to start it now.
+     */
+    UnsampledSpan(UnsampledSpanContext context, SpanMetrics spanMetrics, String operationName,
+                  boolean error, long startMicros) {
+        this.context = context;
+        this.spanMetrics = spanMetrics;
+        this.finished = new AtomicBoolean();
+        this.operationName = operationName;
+        this.error = error;
+        if (startMicros == 0) {
+            this.startMicros = System.currentTimeMillis() * 1000;
+            this.startNanos = System.nanoTime();
+        } else {
+            this.startMicros = startMicros;
+            this.startNanos = -1;
+        }
+    }
+
+    @Override
+    public UnsampledSpanContext context() {
+        return context;
+    }
+
+    @Override
+    public Span setTag(String key, String value) {
+        return this;
+    }
+
+    @Override
+    public Span setTag(String key, boolean value) {
+        if (value && Tags.ERROR.getKey().equals(key)) {
+            error = true;
+        }
+        return this;
+    }
+
+    @Override
+    public Span setTag(String key, Number value) {
+        return this;
+    }
+
+    @Override
+    public <T> Span setTag(Tag<T> tag, T value) {
+        if (tag != null && Boolean.TRUE.equals(value)) {
+            setTag(tag.getKey(), true);
+        }
+        return this;
+    }
+
+    @Override
+    public Span log(Map<String, ?> fields) {
+        return this;
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, Map<String, ?> fields) {
+        return this;
+    }
+
+    @Override
+    public Span log(String event) {
+        return this;
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, String event) {
+        return this;
+    }
+
+    @Override
+    public synchronized Span setBaggageItem(String key, String value) {
+        context = context.withBaggageItem(key, value);
+        return this;
+    }
+
+    @Override
+    public String getBaggageItem(String key) {
+        return context.getBaggageItem(key);
+    }
+
+    @Override
+    public Span setOperationName(String operationName) {
+        this.operationName = operationName;
+        return this;
+    }
+
+    @Override
+    public void finish() {
+        if (spanMetrics == null) {
+            return;
+        }
+        if (startNanos < 0) {
+            finish(System.currentTimeMillis() * 1000);
+        } else {
+            finish(startMicros + (System.nanoTime() - startNanos) / 1000);
+        }
+    }
+
+    @Override
+    public void finish(long finishMicros) {
+        if (spanMetrics != null && finished.compareAndSet(false, true)) {
+            spanMetrics.record(operationName, finishMicros - startMicros, error);
+        }
+    }
+}
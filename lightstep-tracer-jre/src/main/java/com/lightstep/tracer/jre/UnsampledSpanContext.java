@@ -0,0 +1,52 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.shared.SpanContext;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Context of a span that is not sampled. It is propagated like any LightStep span context,
+ * except that the LightStep and B3 headers mark it as not sampled, and marks the spans
+ * started as its children, in this process or in the ones extracting it, as not sampled.
+ */
+final class UnsampledSpanContext extends SpanContext {
+    private final Map<String, String> baggage;
+
+    UnsampledSpanContext(long traceId, long spanId, Map<String, String> baggage) {
+        super(traceId, spanId);
+        this.baggage = baggage;
+    }
+
+    static Map<String, String> baggageOf(io.opentracing.SpanContext context) {
+        if (context == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> baggage = null;
+        for (Map.Entry<String, String> entry : context.baggageItems()) {
+            if (baggage == null) {
+                baggage = new HashMap<>();
+            }
+            baggage.put(entry.getKey(), entry.getValue());
+        }
+        return baggage == null ? Collections.<String, String>emptyMap() : baggage;
+    }
+
+    String getBaggageItem(String key) {
+        return baggage.get(key);
+    }
+
+    @Override
+    public UnsampledSpanContext withBaggageItem(String key, String value) {
+        Map<String, String> newBaggage = new HashMap<>(baggage);
+        newBaggage.put(key, value);
+        return new UnsampledSpanContext(getTraceId(), getSpanId(), newBaggage);
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, String>> baggageItems() {
+        return baggage.entrySet();
+    }
+}
@@ -0,0 +1,92 @@
+package com.lightstep.tracer.metrics;
+
+import com.lightstep.tracer.grpc.IngestRequest;
+import com.lightstep.tracer.grpc.KeyValue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Points added to each client metrics sample besides those of the metric groups of the
+ * metrics reporter: the {@link SpanMetrics} of the tracer and the {@link JfrMetrics}, with
+ * the labels of the other client metrics.
+ */
+final class AdditionalPoints implements Closeable {
+    private static final String HOSTNAME_KEY = "lightstep.hostname";
+
+    private final String componentName;
+    private final String serviceVersion;
+    private final SpanMetrics spanMetrics;
+    private final JfrMetrics jfrMetrics;
+    private long previousTimestampSeconds = System.currentTimeMillis() / 1000;
+    private boolean sampled;
+
+    private AdditionalPoints(String componentName, String serviceVersion, SpanMetrics spanMetrics,
+                             JfrMetrics jfrMetrics) {
+        this.componentName = componentName;
+        this.serviceVersion = serviceVersion;
+        this.spanMetrics = spanMetrics;
+        this.jfrMetrics = jfrMetrics;
+    }
+
+    /**
+     * Returns the points of {@code spanMetrics} and {@code jfrMetrics}, either of which may
+     * be null, or null if both are.
+     */
+    static AdditionalPoints of(String componentName, String serviceVersion, SpanMetrics spanMetrics,
+                               JfrMetrics jfrMetrics) {
+        if (spanMetrics == null && jfrMetrics == null) {
+            return null;
+        }
+        return new AdditionalPoints(componentName, serviceVersion, spanMetrics, jfrMetrics);
+    }
+
+    // The reporter of the request must be set.
+    void addTo(ProtobufSender sender, IngestRequest.Builder request) {
+        long timestampSeconds = System.currentTimeMillis() / 1000;
+        long durationSeconds = timestampSeconds - previousTimestampSeconds;
+        previousTimestampSeconds = timestampSeconds;
+        // The first sample is taken as the metrics thread starts, with the first span: the
+        // span metrics are left to add up until the next one rather than sent over no time.
+        if (spanMetrics != null && sampled) {
+            spanMetrics.addPoints(request, timestampSeconds, durationSeconds, labels(request));
+        }
+        if (jfrMetrics != null) {
+            try {
+                jfrMetrics.execute(sender, request, timestampSeconds, durationSeconds);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        sampled = true;
+    }
+
+    // Same labels as the other client metrics.
+    private List<KeyValue> labels(IngestRequest.Builder request) {
+        List<KeyValue> labels = new ArrayList<>(3);
+        labels.add(KeyValue.newBuilder()
+                .setKey(LightStepConstants.Tags.COMPONENT_NAME_KEY)
+                .setStringValue(componentName)
+                .build());
+        for (KeyValue tag : request.getReporter().getTagsList()) {
+            if (HOSTNAME_KEY.equals(tag.getKey())) {
+                labels.add(tag);
+            }
+        }
+        labels.add(KeyValue.newBuilder()
+                .setKey(LightStepConstants.Tags.SERVICE_VERSION_KEY)
+                .setStringValue(serviceVersion)
+                .build());
+        return labels;
+    }
+
+    @Override
+    public void close() {
+        if (jfrMetrics != null) {
+            jfrMetrics.close();
+        }
+    }
+}
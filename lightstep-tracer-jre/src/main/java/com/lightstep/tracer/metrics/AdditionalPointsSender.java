@@ -0,0 +1,31 @@
+package com.lightstep.tracer.metrics;
+
+import com.lightstep.tracer.grpc.IngestRequest;
+
+/**
+ * {@link OkHttpSender} adding {@link AdditionalPoints} to each sample: the span metrics
+ * of the tracer and the JFR runtime metrics.
+ */
+class AdditionalPointsSender extends OkHttpSender {
+    private final AdditionalPoints points;
+
+    AdditionalPointsSender(String componentName, String accessToken, String serviceVersion, String serviceUrl,
+                           int deadlineMillis, AdditionalPoints points) {
+        super(componentName, accessToken, serviceVersion, serviceUrl, deadlineMillis);
+        this.points = points;
+    }
+
+    // Called once per sample, before the metric groups add theirs.
+    @Override
+    IngestRequest.Builder setReporter(IngestRequest.Builder request) {
+        super.setReporter(request);
+        points.addTo(this, request);
+        return request;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        points.close();
+    }
+}
@@ -0,0 +1,42 @@
+package com.lightstep.tracer.metrics;
+
+import java.io.Closeable;
+
+/**
+ * Runtime metrics consumed from JFR event streaming as the events happen, instead of
+ * polled once per sample: GC pauses, allocation, safepoints and the CPU load of the JVM.
+ * They are added to the client metrics of the tracers created with
+ * {@code JREOptions.OptionsBuilder.withJfrMetrics(true)}.
+ *
+ * JFR event streaming requires Java 14. This is the Java 8 version of the class, for which
+ * it is never available; the multi-release JAR replaces it with one consuming the events.
+ */
+public final class JfrMetrics extends MetricGroup implements Closeable {
+    private JfrMetrics() {
+        super(null);
+    }
+
+    /**
+     * Returns whether JFR event streaming is available in this JVM.
+     */
+    public static boolean isAvailable() {
+        return false;
+    }
+
+    /**
+     * Starts consuming the events, and returns the metrics, or null if JFR event streaming
+     * is not available.
+     */
+    static JfrMetrics start() {
+        return null;
+    }
+
+    @Override
+    <I, O> long[] newSample() {
+        return new long[0];
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -4,6 +4,8 @@ import com.lightstep.tracer.shared.MetricsProvider;
 import com.lightstep.tracer.shared.SafeMetrics;
 
 public class MetricsProviderImpl extends MetricsProvider {
+    // The JRETracers with span metrics, JFR metrics or the shared scheduler send their own
+    // client metrics, with the SafeMetricsImpl they create, instead of these.
     @Override
     public SafeMetrics create() {
         return new SafeMetricsImpl();
@@ -1,13 +1,45 @@
 package com.lightstep.tracer.metrics;
 
+import com.lightstep.tracer.jre.ReporterThreads;
 import com.lightstep.tracer.shared.SafeMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class SafeMetricsImpl implements SafeMetrics {
   private static final Logger logger = LoggerFactory.getLogger(SafeMetricsImpl.class);
+  private static final String METRICS_THREAD_NAME = "lightstep-metrics";
   private static final boolean isJdk17 = System.getProperty("java.version").startsWith("1.7");
 
+  /**
+   * Span metrics of the tracer, sent with the other client metrics, or null.
+   */
+  private final SpanMetrics spanMetrics;
+
+  /**
+   * Client metrics sampled on the scheduler of the tracer, or null if they are sampled by
+   * a metrics thread.
+   */
+  private final ScheduledMetrics scheduledMetrics;
+
+  /**
+   * Whether the {@link JfrMetrics} are sent with the other client metrics.
+   */
+  private final boolean jfrMetrics;
+
+  public SafeMetricsImpl() {
+    this(null, null, false);
+  }
+
+  public SafeMetricsImpl(SpanMetrics spanMetrics) {
+    this(spanMetrics, null, false);
+  }
+
+  public SafeMetricsImpl(SpanMetrics spanMetrics, ScheduledMetrics scheduledMetrics, boolean jfrMetrics) {
+    this.spanMetrics = spanMetrics;
+    this.scheduledMetrics = scheduledMetrics;
+    this.jfrMetrics = jfrMetrics;
+  }
+
   @Override
   public Thread createMetricsThread(final String componentName, final String accessToken,
             final String serviceVersion, final String serviceUrl, final int samplePeriodSeconds) {
@@ -16,9 +48,39 @@ public class SafeMetricsImpl implements SafeMetrics {
       return null;
     }
 
-    // TODO: Can we unify samplePeriodSeconds in a single place?
-    final Sender<?,?> sender = new OkHttpSender(componentName, accessToken, serviceVersion,
-                serviceUrl, samplePeriodSeconds * 1000);
-    return new Metrics(sender, samplePeriodSeconds);
+    if (scheduledMetrics != null) {
+      return scheduledMetrics.newStarter(componentName, accessToken, serviceVersion, serviceUrl,
+          samplePeriodSeconds, spanMetrics, jfrMetrics);
+    }
+
+    // The sender and its HTTP client, the system information read by Metrics and the JFR
+    // recording stream are created by the metrics thread itself rather than on the first
+    // span's finish.
+    return ReporterThreads.newThread(METRICS_THREAD_NAME, new Runnable() {
+      @Override
+      public void run() {
+        // TODO: Can we unify samplePeriodSeconds in a single place?
+        final AdditionalPoints points = AdditionalPoints.of(componentName, serviceVersion, spanMetrics,
+            jfrMetrics ? JfrMetrics.start() : null);
+        final Sender<?,?> sender = points == null
+            ? new OkHttpSender(componentName, accessToken, serviceVersion, serviceUrl, samplePeriodSeconds * 1000)
+            : new AdditionalPointsSender(componentName, accessToken, serviceVersion, serviceUrl,
+                samplePeriodSeconds * 1000, points);
+        final Metrics metrics = new Metrics(sender, samplePeriodSeconds);
+        try {
+          // The tracer stops the metrics thread by interrupting it, which ends the loop of
+          // Metrics.run(), unless that happened while the metrics were being created.
+          if (!Thread.currentThread().isInterrupted()) {
+            metrics.run();
+          }
+        } finally {
+          try {
+            metrics.close();
+          } catch (Exception e) {
+            logger.debug("Failed to close the metrics sender", e);
+          }
+        }
+      }
+    });
   }
 }
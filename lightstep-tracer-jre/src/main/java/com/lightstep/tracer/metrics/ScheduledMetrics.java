@@ -0,0 +1,184 @@
+package com.lightstep.tracer.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import oshi.SystemInfo;
+import oshi.hardware.HardwareAbstractionLayer;
+
+import java.io.Closeable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client metrics of a tracer sampled on the scheduler running its reports, instead of on
+ * a metrics thread of their own. The tracer calls {@link #reportSent()} after each report,
+ * and a sample due within a tenth of the sample period is sent right away, in the same
+ * wakeup of the scheduler; samples are only scheduled on their own while no reports are
+ * sent.
+ *
+ * A sample that fails is not retried: its points are sent with the next one.
+ */
+public final class ScheduledMetrics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ScheduledMetrics.class);
+
+    private static final String THREAD_NAME = "lightstep-metrics-init";
+
+    // Bounded well below the sample period, as a sample holds up the reports of the
+    // scheduler.
+    private static final long SAMPLE_TIMEOUT_MILLIS = 10000;
+
+    private final ScheduledExecutorService scheduler;
+
+    // Set once the sender and the metric groups are created.
+    private volatile Sampler sampler;
+    private volatile boolean closed;
+
+    public ScheduledMetrics(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Called by the scheduler after each report of the tracer.
+     */
+    public void reportSent() {
+        Sampler sampler = this.sampler;
+        if (sampler != null) {
+            sampler.sampleIfDue(sampler.samplePeriodMillis / 10);
+        }
+    }
+
+    /**
+     * Returns the thread the tracer starts in place of the metrics thread. It
+     * creates the sender and reads the system information, which the scheduler is not
+     * held up by, then schedules the first sample and ends. Closing it stops the samples.
+     */
+    Thread newStarter(String componentName, String accessToken, String serviceVersion, String serviceUrl,
+                      int samplePeriodSeconds, SpanMetrics spanMetrics, boolean jfrMetrics) {
+        return new Starter(componentName, accessToken, serviceVersion, serviceUrl, samplePeriodSeconds,
+                spanMetrics, jfrMetrics);
+    }
+
+    private synchronized void startSampling(Sender<?, ?> sender, long samplePeriodMillis) {
+        if (closed) {
+            closeSender(sender);
+            return;
+        }
+        HardwareAbstractionLayer hal = new SystemInfo().getHardware();
+        sampler = new Sampler(sender, new MetricGroup[] {new CpuMetricGroup(hal), new NetworkMetricGroup(hal),
+                new MemoryMetricGroup(hal), new GcMetricGroup(hal)}, samplePeriodMillis);
+        sampler.schedule();
+    }
+
+    private synchronized void close() {
+        closed = true;
+        if (sampler != null) {
+            sampler.cancel();
+            closeSender(sampler.sender);
+        }
+    }
+
+    private static void closeSender(Sender<?, ?> sender) {
+        try {
+            sender.close();
+        } catch (Exception e) {
+            LOGGER.debug("Failed to close the metrics sender", e);
+        }
+    }
+
+    /**
+     * Samples the metrics, on the scheduler thread only.
+     */
+    private final class Sampler implements Runnable {
+        final Sender<?, ?> sender;
+        final MetricGroup[] metricGroups;
+        final long samplePeriodMillis;
+        private long nextSampleMillis;
+        private ScheduledFuture<?> nextSample;
+
+        Sampler(Sender<?, ?> sender, MetricGroup[] metricGroups, long samplePeriodMillis) {
+            this.sender = sender;
+            this.metricGroups = metricGroups;
+            this.samplePeriodMillis = samplePeriodMillis;
+        }
+
+        @Override
+        public void run() {
+            sampleIfDue(0);
+        }
+
+        synchronized void sampleIfDue(long earlyMillis) {
+            if (closed || System.currentTimeMillis() < nextSampleMillis - earlyMillis) {
+                return;
+            }
+            try {
+                sender.updateSampleRequest(metricGroups);
+                sender.exec(SAMPLE_TIMEOUT_MILLIS);
+            } catch (Exception e) {
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.warn(e.getMessage(), e);
+                } else {
+                    LOGGER.warn(e.getClass().getName() + ": " + e.getMessage());
+                }
+            }
+            schedule();
+        }
+
+        // Replaces the scheduled sample, which a sample sent after a report makes early.
+        synchronized void schedule() {
+            nextSampleMillis = System.currentTimeMillis() + samplePeriodMillis;
+            if (nextSample != null) {
+                nextSample.cancel(false);
+            }
+            try {
+                nextSample = scheduler.schedule(this, samplePeriodMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                nextSample = null;
+            }
+        }
+
+        synchronized void cancel() {
+            if (nextSample != null) {
+                nextSample.cancel(false);
+                nextSample = null;
+            }
+        }
+    }
+
+    private final class Starter extends Thread implements Closeable {
+        private final String componentName;
+        private final String accessToken;
+        private final String serviceVersion;
+        private final String serviceUrl;
+        private final int samplePeriodSeconds;
+        private final SpanMetrics spanMetrics;
+        private final boolean jfrMetrics;
+
+        Starter(String componentName, String accessToken, String serviceVersion, String serviceUrl,
+                int samplePeriodSeconds, SpanMetrics spanMetrics, boolean jfrMetrics) {
+            super(THREAD_NAME);
+            setDaemon(true);
+            this.componentName = componentName;
+            this.accessToken = accessToken;
+            this.serviceVersion = serviceVersion;
+            this.serviceUrl = serviceUrl;
+            this.samplePeriodSeconds = samplePeriodSeconds;
+            this.spanMetrics = spanMetrics;
+            this.jfrMetrics = jfrMetrics;
+        }
+
+        @Override
+        public void run() {
+            AdditionalPoints points = AdditionalPoints.of(componentName, serviceVersion, spanMetrics,
+                    jfrMetrics ? JfrMetrics.start() : null);
+            startSampling(new SharedClientSender(componentName, accessToken, serviceVersion, serviceUrl,
+                    samplePeriodSeconds * 1000, points), samplePeriodSeconds * 1000L);
+        }
+
+        @Override
+        public void close() {
+            ScheduledMetrics.this.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.lightstep.tracer.metrics;
+
+import com.lightstep.tracer.grpc.IngestRequest;
+import com.lightstep.tracer.grpc.IngestResponse;
+import com.lightstep.tracer.shared.SharedHttpClient;
+import lightstep.okhttp3.Call;
+import lightstep.okhttp3.MediaType;
+import lightstep.okhttp3.OkHttpClient;
+import lightstep.okhttp3.Request;
+import lightstep.okhttp3.RequestBody;
+import lightstep.okhttp3.Response;
+import lightstep.okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sender of the client metrics going through the connection pool of
+ * {@link SharedHttpClient}, shared with the span reports, instead of an HTTP client of its
+ * own like {@link OkHttpSender}. Adds the {@link AdditionalPoints} to each sample, if
+ * any.
+ */
+class SharedClientSender extends ProtobufSender {
+    private static final String OCTET_STREAM_TYPE = "application/octet-stream";
+    private static final MediaType PROTO_MEDIA_TYPE = MediaType.parse(OCTET_STREAM_TYPE);
+
+    private final OkHttpClient client;
+    private final URL collectorURL;
+    private final AdditionalPoints points;
+
+    /**
+     * @param points the points added to each sample, or null.
+     */
+    SharedClientSender(String componentName, String accessToken, String serviceVersion, String serviceUrl,
+                       int deadlineMillis, AdditionalPoints points) {
+        super(componentName, accessToken, serviceVersion, serviceUrl);
+        this.client = SharedHttpClient.newClient(deadlineMillis);
+        this.points = points;
+        try {
+            this.collectorURL = new URL(serviceUrl);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    // Called once per sample, before the metric groups add theirs.
+    @Override
+    IngestRequest.Builder setReporter(IngestRequest.Builder request) {
+        super.setReporter(request);
+        if (points != null) {
+            points.addTo(this, request);
+        }
+        return request;
+    }
+
+    @Override
+    IngestResponse invoke(IngestRequest.Builder request, long timeout) throws IOException {
+        Call call = client.newCall(new Request.Builder()
+                .url(collectorURL)
+                .addHeader("Accept", OCTET_STREAM_TYPE)
+                .addHeader("Content-Type", OCTET_STREAM_TYPE)
+                .addHeader("Lightstep-Access-Token", accessToken)
+                .post(RequestBody.create(request.build().toByteArray(), PROTO_MEDIA_TYPE))
+                .build());
+
+        call.timeout().deadline(timeout, TimeUnit.MILLISECONDS);
+        try (Response response = call.execute()) {
+            // Like OkHttpSender, the sample is not sent again when it is refused.
+            if (response.code() != 200) {
+                return IngestResponse.getDefaultInstance();
+            }
+            try (ResponseBody body = response.body()) {
+                return IngestResponse.parseFrom(body.byteStream());
+            }
+        }
+    }
+
+    // The shared client is never shut down.
+    @Override
+    public void close() {
+        if (points != null) {
+            points.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.lightstep.tracer.metrics;
+
+import com.google.protobuf.Duration;
+import com.google.protobuf.Timestamp;
+import com.lightstep.tracer.grpc.IngestRequest;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.MetricKind;
+import com.lightstep.tracer.grpc.MetricPoint;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request rate, error count and duration histogram of the spans finished by a tracer, per
+ * operation, sent with the other client metrics once per sample period.
+ *
+ * At most {@code maxOperations} operations are tracked; spans of further operations are
+ * counted under {@link #OTHER_OPERATION}. Durations go to a {@link LogLinearHistogram}, so
+ * that the reported percentiles are within 1/8 of the actual durations.
+ */
+public final class SpanMetrics {
+    public static final int DEFAULT_MAX_OPERATIONS = 100;
+
+    /**
+     * Operation under which the spans of the operations past the limit are counted.
+     */
+    public static final String OTHER_OPERATION = "lightstep.other_operations";
+
+    static final String REQUESTS_METRIC = "span.requests";
+    static final String ERRORS_METRIC = "span.errors";
+    static final String DURATION_METRIC = "span.duration_micros";
+    static final String OPERATION_LABEL = "operation";
+    static final String QUANTILE_LABEL = "quantile";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final String[] QUANTILE_NAMES = {"0.5", "0.9", "0.99"};
+
+    private final int maxOperations;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    public SpanMetrics(int maxOperations) {
+        if (maxOperations <= 0) {
+            throw new IllegalArgumentException("Invalid max operations: " + maxOperations);
+        }
+        this.maxOperations = maxOperations;
+    }
+
+    /**
+     * Records a finished span.
+     */
+    public void record(String operationName, long durationMicros, boolean error) {
+        if (operationName == null) {
+            operationName = "";
+        }
+        OperationMetrics metrics = operations.get(operationName);
+        if (metrics == null) {
+            metrics = addOperation(operationName);
+        }
+        metrics.requests.incrementAndGet();
+        if (error) {
+            metrics.errors.incrementAndGet();
+        }
+        metrics.durations.record(durationMicros);
+    }
+
+    private OperationMetrics addOperation(String operationName) {
+        if (operations.size() >= maxOperations && !operations.containsKey(operationName)) {
+            operationName = OTHER_OPERATION;
+        }
+        OperationMetrics metrics = operations.get(operationName);
+        if (metrics == null) {
+            OperationMetrics added = new OperationMetrics();
+            metrics = operations.putIfAbsent(operationName, added);
+            if (metrics == null) {
+                metrics = added;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the number of spans of {@code operationName} finished since the metrics were
+     * last sent.
+     */
+    public long getRequestCount(String operationName) {
+        OperationMetrics metrics = operations.get(operationName);
+        return metrics == null ? 0 : metrics.requests.get();
+    }
+
+    /**
+     * Returns the number of spans of {@code operationName} finished with an error since the
+     * metrics were last sent.
+     */
+    public long getErrorCount(String operationName) {
+        OperationMetrics metrics = operations.get(operationName);
+        return metrics == null ? 0 : metrics.errors.get();
+    }
+
+    /**
+     * Adds to {@code request} the metrics recorded since the previous call, with
+     * {@code labels}, and resets them.
+     */
+    void addPoints(IngestRequest.Builder request, long timestampSeconds, long durationSeconds,
+                   List<KeyValue> labels) {
+        long[] counts = new long[LogLinearHistogram.BUCKETS];
+        for (Map.Entry<String, OperationMetrics> entry : operations.entrySet()) {
+            OperationMetrics metrics = entry.getValue();
+            long requests = metrics.requests.getAndSet(0);
+            long errors = metrics.errors.getAndSet(0);
+            long total = metrics.durations.drainTo(counts);
+            if (requests == 0 && total == 0) {
+                continue;
+            }
+
+            KeyValue operation = KeyValue.newBuilder()
+                    .setKey(OPERATION_LABEL)
+                    .setStringValue(entry.getKey())
+                    .build();
+            request.addPoints(point(REQUESTS_METRIC, MetricKind.COUNTER, requests, timestampSeconds,
+                    durationSeconds, labels, operation).build());
+            request.addPoints(point(ERRORS_METRIC, MetricKind.COUNTER, errors, timestampSeconds,
+                    durationSeconds, labels, operation).build());
+            if (total == 0) {
+                continue;
+            }
+            for (int q = 0; q < QUANTILES.length; q++) {
+                request.addPoints(point(DURATION_METRIC, MetricKind.GAUGE, LogLinearHistogram.quantile(counts, total, QUANTILES[q]),
+                        timestampSeconds, durationSeconds, labels, operation)
+                        .addLabels(KeyValue.newBuilder().setKey(QUANTILE_LABEL).setStringValue(QUANTILE_NAMES[q]))
+                        .build());
+            }
+        }
+    }
+
+    private static MetricPoint.Builder point(String name, MetricKind kind, double value, long timestampSeconds,
+                                             long durationSeconds, List<KeyValue> labels, KeyValue operation) {
+        return MetricPoint.newBuilder()
+                .setMetricName(name)
+                .setKind(kind)
+                .setStart(Timestamp.newBuilder().setSeconds(timestampSeconds))
+                .setDuration(Duration.newBuilder().setSeconds(durationSeconds))
+                .setDoubleValue(value)
+                .addAllLabels(labels)
+                .addLabels(operation);
+    }
+
+    private static final class OperationMetrics {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final LogLinearHistogram durations = new LogLinearHistogram();
+    }
+}
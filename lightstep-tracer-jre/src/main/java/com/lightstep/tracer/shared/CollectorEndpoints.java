@@ -0,0 +1,158 @@
+package com.lightstep.tracer.shared;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collector endpoints a client spreads its reports over. Each report goes to the better of
+ * two endpoints picked at random, the one with the lower latency, averaged over the recent
+ * reports, times the number of its reports in flight plus one, so that a slow endpoint gets
+ * fewer reports without all the reports going to the fastest one.
+ *
+ * A failed report counts as taking the whole deadline. After {@link #EJECTION_FAILURES}
+ * failures in a row, an endpoint is ejected: it gets no reports for
+ * {@link #BASE_EJECTION_MILLIS}, doubling with each ejection in a row up to
+ * {@link #MAX_EJECTION_MILLIS}, and then gets reports again until it fails again. When all
+ * the endpoints are ejected, reports go to the one whose ejection ends first.
+ */
+final class CollectorEndpoints {
+    static final int EJECTION_FAILURES = 3;
+    static final long BASE_EJECTION_MILLIS = 10000;
+    static final long MAX_EJECTION_MILLIS = 5 * 60 * 1000;
+
+    // Weight of the latest report in the average latency.
+    private static final double LATENCY_DECAY = 0.2;
+
+    private final List<Endpoint> endpoints;
+    private final long failureLatencyNanos;
+
+    CollectorEndpoints(List<URL> urls, long deadlineMillis) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No collector endpoints");
+        }
+        List<Endpoint> endpoints = new ArrayList<>(urls.size());
+        for (URL url : urls) {
+            endpoints.add(new Endpoint(url));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.failureLatencyNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+    }
+
+    List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Returns the endpoint to send the next report to, counting the report in flight until
+     * {@link #reportEnded} is called.
+     */
+    Endpoint pick() {
+        Endpoint endpoint = endpoints.size() == 1 ? endpoints.get(0) : choose(System.nanoTime());
+        endpoint.reportStarted();
+        return endpoint;
+    }
+
+    private Endpoint choose(long nowNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int size = endpoints.size();
+        int first = random.nextInt(size);
+        // A second endpoint other than the first one.
+        int second = (first + 1 + random.nextInt(size - 1)) % size;
+        Endpoint a = endpoints.get(first);
+        Endpoint b = endpoints.get(second);
+        boolean aAvailable = a.isAvailable(nowNanos);
+        boolean bAvailable = b.isAvailable(nowNanos);
+        if (aAvailable && bAvailable) {
+            return a.load() <= b.load() ? a : b;
+        }
+        if (aAvailable || bAvailable) {
+            return aAvailable ? a : b;
+        }
+
+        // Both ejected: any available endpoint, or the one whose ejection ends first.
+        Endpoint failover = null;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.isAvailable(nowNanos)) {
+                return endpoint;
+            }
+            if (failover == null || endpoint.ejectedUntilNanos() - failover.ejectedUntilNanos() < 0) {
+                failover = endpoint;
+            }
+        }
+        return failover;
+    }
+
+    /**
+     * Records the end of a report sent to {@code endpoint} by {@link #pick()}.
+     */
+    void reportEnded(Endpoint endpoint, long latencyNanos, boolean success) {
+        endpoint.reportEnded(success ? latencyNanos : Math.max(latencyNanos, failureLatencyNanos), success,
+                System.nanoTime());
+    }
+
+    static final class Endpoint {
+        final URL url;
+        private int inflightReports;
+        private double latencyNanos;
+        private int failures;
+        private int ejections;
+        private boolean ejected;
+        private long ejectedUntilNanos;
+
+        private Endpoint(URL url) {
+            this.url = url;
+        }
+
+        synchronized void reportStarted() {
+            inflightReports++;
+        }
+
+        synchronized void reportEnded(long latencyNanos, boolean success, long nowNanos) {
+            inflightReports--;
+            this.latencyNanos = this.latencyNanos == 0
+                    ? latencyNanos
+                    : this.latencyNanos + LATENCY_DECAY * (latencyNanos - this.latencyNanos);
+            if (success) {
+                failures = 0;
+                ejections = 0;
+                ejected = false;
+                return;
+            }
+
+            failures++;
+            if (failures >= EJECTION_FAILURES && !isEjected(nowNanos)) {
+                long ejectionMillis = Math.min(MAX_EJECTION_MILLIS, BASE_EJECTION_MILLIS << Math.min(ejections, 20));
+                ejections++;
+                ejected = true;
+                ejectedUntilNanos = nowNanos + TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+                // Back after the ejection, until it fails again.
+                failures = EJECTION_FAILURES - 1;
+            }
+        }
+
+        synchronized boolean isAvailable(long nowNanos) {
+            return !isEjected(nowNanos);
+        }
+
+        synchronized boolean isEjected(long nowNanos) {
+            return ejected && ejectedUntilNanos - nowNanos > 0;
+        }
+
+        synchronized long ejectedUntilNanos() {
+            return ejectedUntilNanos;
+        }
+
+        synchronized double load() {
+            return (latencyNanos + 1) * (inflightReports + 1);
+        }
+
+        @Override
+        public String toString() {
+            return url.toString();
+        }
+    }
+}
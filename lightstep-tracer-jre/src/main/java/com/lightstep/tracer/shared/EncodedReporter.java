@@ -0,0 +1,34 @@
+package com.lightstep.tracer.shared;
+
+import com.google.protobuf.ByteString;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.Reporter;
+
+import java.util.List;
+
+/**
+ * Serialized form of the {@link Reporter} of the reports of a tracer, with its global
+ * tags, encoded once instead of for every report.
+ *
+ * The tracer builds the reporter of each report from the same builder, whose tags list is
+ * shared by the reporters built until a tag is added, so a reporter with the same ID and
+ * the same tags list instance is known to encode to the same bytes. Any other reporter is
+ * encoded again and replaces the cached one.
+ */
+public final class EncodedReporter {
+    private long reporterId;
+    private List<KeyValue> tags;
+    private ByteString encoded;
+
+    /**
+     * Returns the serialized form of {@code reporter}.
+     */
+    public synchronized ByteString encode(Reporter reporter) {
+        if (encoded == null || reporter.getReporterId() != reporterId || reporter.getTagsList() != tags) {
+            reporterId = reporter.getReporterId();
+            tags = reporter.getTagsList();
+            encoded = reporter.toByteString();
+        }
+        return encoded;
+    }
+}
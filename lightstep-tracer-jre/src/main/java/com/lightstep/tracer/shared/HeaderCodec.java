@@ -0,0 +1,199 @@
+package com.lightstep.tracer.shared;
+
+import io.opentracing.propagation.TextMapExtract;
+import io.opentracing.propagation.TextMapInject;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Propagator of the LightStep ({@code ot-tracer-*}) or B3 ({@code X-B3-*}) headers, which
+ * injects and extracts the same headers as {@link Propagator#HTTP_HEADERS} and
+ * {@link B3Propagator} without their intermediate strings and boxed IDs: header names are
+ * matched ignoring case in place, without lowercasing them, and IDs are decoded from the
+ * header values straight into {@code long}s. Inject puts the hex IDs that the
+ * {@link SpanContext} formats once, when it is created, instead of formatting them again.
+ *
+ * IDs are read like the shared library does, keeping the last 16 hex digits of longer
+ * ones, except that IDs with a sign are invalid.
+ *
+ * Unlike the shared propagators, which always mark contexts as sampled, the codecs can
+ * inject contexts as not sampled, and extract the contexts marked as such through
+ * {@link UnsampledContexts}. A sampled header of {@code 0} or {@code false}, in any case,
+ * marks a context as not sampled; any other value, or none, as sampled.
+ */
+public final class HeaderCodec implements Propagator {
+    /**
+     * The {@code ot-tracer-*} and {@code ot-baggage-*} headers of
+     * {@link Propagator#HTTP_HEADERS} and {@link Propagator#TEXT_MAP}.
+     */
+    public static final HeaderCodec LIGHTSTEP = new HeaderCodec("ot-tracer-traceid", "ot-tracer-spanid",
+            "ot-tracer-sampled", "true", "false", "ot-baggage-", false);
+
+    /**
+     * The {@code X-B3-*} headers of {@link B3Propagator}, which keeps the trace ID header as
+     * the foreign trace ID of the contexts it extracts, so that 128-bit trace IDs are
+     * propagated unchanged.
+     */
+    public static final HeaderCodec B3 = new HeaderCodec("X-B3-TraceId", "X-B3-SpanId", "X-B3-Sampled", "1", "0",
+            null, true);
+
+    private static final int MAX_ID_DIGITS = 16;
+
+    private final String traceIdName;
+    private final String spanIdName;
+    private final String sampledName;
+    private final String sampledValue;
+    private final String unsampledValue;
+    // Prefix of the baggage headers, or null if baggage is not propagated.
+    private final String baggagePrefix;
+    private final boolean foreignTraceId;
+
+    private HeaderCodec(String traceIdName, String spanIdName, String sampledName, String sampledValue,
+                        String unsampledValue, String baggagePrefix, boolean foreignTraceId) {
+        this.traceIdName = traceIdName;
+        this.spanIdName = spanIdName;
+        this.sampledName = sampledName;
+        this.sampledValue = sampledValue;
+        this.unsampledValue = unsampledValue;
+        this.baggagePrefix = baggagePrefix;
+        this.foreignTraceId = foreignTraceId;
+    }
+
+    /**
+     * Returns the codec of the headers of {@code propagator}, or null if it is not one of
+     * the propagators of the shared library.
+     */
+    public static HeaderCodec forPropagator(Propagator propagator) {
+        if (propagator == Propagator.HTTP_HEADERS || propagator == Propagator.TEXT_MAP) {
+            return LIGHTSTEP;
+        }
+        if (propagator != null && propagator.getClass() == B3Propagator.class) {
+            return B3;
+        }
+        return null;
+    }
+
+    @Override
+    public <C> void inject(SpanContext context, C carrier) {
+        inject(context, carrier, true);
+    }
+
+    /**
+     * Injects {@code context} into {@code carrier}, marked as sampled or not.
+     */
+    public <C> void inject(SpanContext context, C carrier, boolean sampled) {
+        if (!(carrier instanceof TextMapInject)) {
+            return;
+        }
+
+        TextMapInject textMap = (TextMapInject) carrier;
+        String traceId = foreignTraceId ? context.getForeignTraceId() : null;
+        textMap.put(traceIdName, traceId != null ? traceId : context.toTraceId());
+        textMap.put(spanIdName, context.toSpanId());
+        textMap.put(sampledName, sampled ? sampledValue : unsampledValue);
+        if (baggagePrefix != null) {
+            for (Map.Entry<String, String> entry : context.baggageItems()) {
+                textMap.put(baggagePrefix + entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public <C> SpanContext extract(C carrier) {
+        return extract(carrier, null);
+    }
+
+    /**
+     * Extracts the context of {@code carrier} like {@link #extract(Object)}, except that
+     * the contexts marked as not sampled are created by {@code unsampled}, unless it is
+     * null.
+     */
+    public <C> SpanContext extract(C carrier, UnsampledContexts unsampled) {
+        if (!(carrier instanceof TextMapExtract)) {
+            return null;
+        }
+
+        String traceId = null;
+        String spanId = null;
+        boolean sampled = true;
+        Map<String, String> baggage = null;
+        for (Map.Entry<String, String> entry : (TextMapExtract) carrier) {
+            String key = entry.getKey();
+            if (key.equalsIgnoreCase(traceIdName)) {
+                traceId = entry.getValue();
+            } else if (key.equalsIgnoreCase(spanIdName)) {
+                spanId = entry.getValue();
+            } else if (key.equalsIgnoreCase(sampledName)) {
+                sampled = !isUnsampled(entry.getValue());
+            } else if (baggagePrefix != null && key.regionMatches(true, 0, baggagePrefix, 0, baggagePrefix.length())) {
+                if (baggage == null) {
+                    baggage = new HashMap<>();
+                }
+                baggage.put(key.substring(baggagePrefix.length()).toLowerCase(Locale.ENGLISH), entry.getValue());
+            }
+        }
+        if (!isHexId(traceId) || !isHexId(spanId)) {
+            return null;
+        }
+        if (baggage == null) {
+            baggage = Collections.emptyMap();
+        }
+        if (!sampled && unsampled != null) {
+            return unsampled.newContext(decodeHexId(traceId), decodeHexId(spanId), baggage);
+        }
+        return new SpanContext(decodeHexId(traceId), decodeHexId(spanId), baggage, foreignTraceId ? traceId : null);
+    }
+
+    private static boolean isUnsampled(String value) {
+        return "0".equals(value) || "false".equalsIgnoreCase(value);
+    }
+
+    /**
+     * Returns whether {@code value} is a non-empty string of hex digits.
+     */
+    static boolean isHexId(String value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (hexDigit(value.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of the last 16 digits of {@code value}, a valid {@link #isHexId}.
+     */
+    static long decodeHexId(String value) {
+        long id = 0;
+        for (int i = Math.max(0, value.length() - MAX_ID_DIGITS); i < value.length(); i++) {
+            id = (id << 4) | hexDigit(value.charAt(i));
+        }
+        return id;
+    }
+
+    private static int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Creates the contexts of the headers marked as not sampled.
+     */
+    public interface UnsampledContexts {
+        SpanContext newContext(long traceId, long spanId, Map<String, String> baggage);
+    }
+}
@@ -0,0 +1,51 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+
+/**
+ * Collector client creating the one it delegates to on the first report, so that the
+ * HTTP client, its connection pool and TLS setup are not created with the tracer but by
+ * the reporting thread, and not at all by tracers that never report.
+ */
+abstract class LazyCollectorClient extends CollectorClient {
+    private CollectorClient client;
+    private boolean shutdown;
+
+    /**
+     * Returns the collector client to delegate to, or null if none is available.
+     */
+    abstract CollectorClient create();
+
+    private synchronized CollectorClient client() {
+        if (client == null && !shutdown) {
+            client = create();
+            if (client == null) {
+                shutdown = true;
+            }
+        }
+        return client;
+    }
+
+    @Override
+    synchronized void reconnect() {
+        // Nothing to reconnect before the first report.
+        if (client != null) {
+            client.reconnect();
+        }
+    }
+
+    @Override
+    synchronized void shutdown() {
+        shutdown = true;
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    @Override
+    ReportResponse report(ReportRequest request) {
+        CollectorClient client = client();
+        return client == null ? null : client.report(request);
+    }
+}
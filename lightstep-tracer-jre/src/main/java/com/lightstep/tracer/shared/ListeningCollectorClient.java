@@ -0,0 +1,39 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+
+/**
+ * Collector client notifying a {@link ReportListener} of the reports sent by another one.
+ */
+class ListeningCollectorClient extends CollectorClient {
+    private final CollectorClient client;
+    private final ReportListener listener;
+
+    ListeningCollectorClient(CollectorClient client, ReportListener listener) {
+        this.client = client;
+        this.listener = listener;
+    }
+
+    @Override
+    void reconnect() {
+        client.reconnect();
+    }
+
+    @Override
+    void shutdown() {
+        client.shutdown();
+    }
+
+    @Override
+    ReportResponse report(ReportRequest request) {
+        long startNanos = System.nanoTime();
+        ReportResponse response = null;
+        try {
+            response = client.report(request);
+            return response;
+        } finally {
+            listener.reportSent(request, response, System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.Command;
+import com.lightstep.tracer.grpc.InternalMetrics;
+import com.lightstep.tracer.grpc.MetricsSample;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.lightstep.tracer.grpc.Span;
+import com.lightstep.tracer.jre.ReporterThreads;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collector client sending up to {@code maxInflightReports} reports at once through
+ * another one, so that the reporting thread does not wait for the collector to answer a
+ * report before sending the next one. A report beyond the limit waits for one of the
+ * reports in flight to end.
+ *
+ * The reporting thread is answered right away with a response standing for the report
+ * sent: its timestamps follow the clock offset of the report, which the clock state thus
+ * keeps, and it carries the commands of the collector responses acknowledged since the
+ * previous one. Empty reports, which the tracer sends to sample the clock offset until it
+ * is known, are sent right away and answered with the collector response.
+ *
+ * Collector responses are acknowledged in the order the reports were sent. The spans of a
+ * failed report are added back to the report buffer, unless spans are dropped on failure,
+ * in which case they are counted as dropped in the next report. The next report after a
+ * failed one is answered with no response, without being sent, so that the tracer sees
+ * the failure: it counts it and keeps the spans of that report in its buffer.
+ */
+class PipelinedCollectorClient extends CollectorClient {
+    private static final String THREAD_NAME = "lightstep-report-pipeline";
+    private static final String SPANS_DROPPED_METRIC = "spans.dropped";
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final AbstractTracer tracer;
+    private final CollectorClient client;
+    private final Semaphore inflightReports;
+    private final ThreadPoolExecutor executor;
+
+    // Reports sent and not yet acknowledged, in the order they were sent.
+    private final ArrayDeque<InflightReport> inflight = new ArrayDeque<>();
+    private long sentReports;
+    private long acknowledgedReports;
+    // Sequence number of the last failed report, or -1.
+    private long lastFailedReport = -1;
+    // Sequence number of the last failed report the tracer was answered with, or -1.
+    private long reportedFailedReport = -1;
+    private int droppedSpans;
+    private final List<Command> commands = new ArrayList<>();
+
+    PipelinedCollectorClient(AbstractTracer tracer, CollectorClient client, int maxInflightReports) {
+        this.tracer = tracer;
+        this.client = client;
+        this.inflightReports = new Semaphore(maxInflightReports);
+        this.executor = new ThreadPoolExecutor(maxInflightReports, maxInflightReports,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                ReporterThreads.newThreadFactory(THREAD_NAME));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    void reconnect() {
+        client.reconnect();
+    }
+
+    @Override
+    void shutdown() {
+        // The reports in flight end on their own, within the deadline of the client.
+        executor.shutdown();
+        client.shutdown();
+    }
+
+    @Override
+    ReportResponse report(ReportRequest request) {
+        synchronized (this) {
+            if (lastFailedReport > reportedFailedReport) {
+                reportedFailedReport = lastFailedReport;
+                return null;
+            }
+        }
+        if (request.getSpansCount() == 0) {
+            return client.report(withDroppedSpans(request));
+        }
+
+        inflightReports.acquireUninterruptibly();
+        final InflightReport report;
+        synchronized (this) {
+            report = new InflightReport(sentReports++, withDroppedSpans(request));
+            inflight.add(report);
+        }
+        try {
+            executor.execute(report);
+        } catch (RejectedExecutionException e) {
+            // Shut down: the report fails like the ones sent to a closed client.
+            report.run();
+        }
+
+        long collectorMicros = System.currentTimeMillis() * 1000 + request.getTimestampOffsetMicros();
+        ReportResponse.Builder response = ReportResponse.newBuilder()
+                .setReceiveTimestamp(Util.epochTimeMicrosToProtoTime(collectorMicros))
+                .setTransmitTimestamp(Util.epochTimeMicrosToProtoTime(collectorMicros));
+        synchronized (this) {
+            response.addAllCommands(commands);
+            commands.clear();
+        }
+        return response.build();
+    }
+
+    /**
+     * Waits for the reports sent so far to be acknowledged, at most {@code timeoutMillis},
+     * and returns whether they all were and succeeded.
+     */
+    synchronized boolean awaitReports(long timeoutMillis) {
+        long firstReport = acknowledgedReports;
+        long lastReport = sentReports;
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (acknowledgedReports < lastReport) {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return lastFailedReport < firstReport;
+    }
+
+    /**
+     * Returns {@code request} with the spans of the failed reports counted as dropped.
+     */
+    private ReportRequest withDroppedSpans(ReportRequest request) {
+        int dropped;
+        synchronized (this) {
+            dropped = droppedSpans;
+            droppedSpans = 0;
+        }
+        if (dropped == 0) {
+            return request;
+        }
+
+        ReportRequest.Builder builder = request.toBuilder();
+        InternalMetrics.Builder metrics = builder.getInternalMetricsBuilder();
+        for (int i = 0; i < metrics.getCountsCount(); i++) {
+            MetricsSample count = metrics.getCounts(i);
+            if (SPANS_DROPPED_METRIC.equals(count.getName())) {
+                metrics.setCounts(i, count.toBuilder().setIntValue(count.getIntValue() + dropped));
+                return builder.build();
+            }
+        }
+        metrics.addCounts(MetricsSample.newBuilder().setName(SPANS_DROPPED_METRIC).setIntValue(dropped));
+        return builder.build();
+    }
+
+    /**
+     * Acknowledges the reports that ended, up to the first one still in flight.
+     */
+    private void acknowledge() {
+        List<Span> restoredSpans = null;
+        synchronized (this) {
+            while (!inflight.isEmpty() && inflight.peek().ended) {
+                InflightReport report = inflight.poll();
+                acknowledgedReports++;
+                ReportResponse response = report.response;
+                if (response != null && response.getErrorsCount() == 0) {
+                    commands.addAll(response.getCommandsList());
+                    continue;
+                }
+
+                lastFailedReport = report.sequence;
+                if (tracer.dropSpansOnFailure) {
+                    droppedSpans += report.request.getSpansCount();
+                } else {
+                    if (restoredSpans == null) {
+                        restoredSpans = new ArrayList<>();
+                    }
+                    restoredSpans.addAll(report.request.getSpansList());
+                }
+            }
+            notifyAll();
+        }
+
+        if (restoredSpans != null) {
+            // Spans past the capacity of the report buffer are counted as dropped by the tracer.
+            for (Span span : restoredSpans) {
+                tracer.addSpan(span);
+            }
+        }
+    }
+
+    private final class InflightReport implements Runnable {
+        final long sequence;
+        final ReportRequest request;
+        // Written before ended, which is read under the lock of the client.
+        ReportResponse response;
+        boolean ended;
+
+        InflightReport(long sequence, ReportRequest request) {
+            this.sequence = sequence;
+            this.request = request;
+        }
+
+        @Override
+        public void run() {
+            ReportResponse response = null;
+            try {
+                response = client.report(request);
+                if (response != null) {
+                    for (String error : response.getErrorsList()) {
+                        tracer.error("Collector response contained error: " + error);
+                    }
+                }
+            } catch (RuntimeException e) {
+                tracer.error("Exception sending report to collector: ", e);
+            } finally {
+                synchronized (PipelinedCollectorClient.this) {
+                    this.response = response;
+                    ended = true;
+                }
+                inflightReports.release();
+                acknowledge();
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.lightstep.tracer.shared;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Pool of fixed-size buffers that reports are encoded into, a buffer at a time, before
+ * being written to the collector connection. A report only holds one buffer while it is
+ * encoded, so a few pooled buffers serve all the tracers of a process.
+ */
+public final class ReportBufferPool {
+    public static final int DEFAULT_BUFFER_BYTES = 64 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    private static final ReportBufferPool HEAP = new ReportBufferPool(DEFAULT_BUFFER_BYTES, false);
+    private static final ReportBufferPool DIRECT = new ReportBufferPool(DEFAULT_BUFFER_BYTES, true);
+
+    private final int bufferBytes;
+    private final boolean direct;
+    private final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    /**
+     * Returns the pool shared by the tracers of this process.
+     *
+     * @param direct whether the pool holds direct buffers, which are written to sockets
+     *               without an extra copy.
+     */
+    public static ReportBufferPool shared(boolean direct) {
+        return direct ? DIRECT : HEAP;
+    }
+
+    public ReportBufferPool(int bufferBytes, boolean direct) {
+        if (bufferBytes <= 0) {
+            throw new IllegalArgumentException("Invalid report buffer size: " + bufferBytes);
+        }
+        this.bufferBytes = bufferBytes;
+        this.direct = direct;
+    }
+
+    /**
+     * Returns a cleared buffer, from the pool if one is available.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        return direct ? ByteBuffer.allocateDirect(bufferBytes) : ByteBuffer.allocate(bufferBytes);
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire()} to the pool.
+     */
+    public void release(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    public int getBufferBytes() {
+        return bufferBytes;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+}
@@ -0,0 +1,116 @@
+package com.lightstep.tracer.shared;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content encodings of the reports sent by the HTTP collector client. Gzip is always
+ * available; zstd needs zstd-jni and lz4 needs lz4-java in the class path.
+ */
+public enum ReportCompression {
+    NONE(null, null),
+    GZIP("gzip", null),
+    ZSTD("zstd", "com.github.luben.zstd.ZstdOutputStream"),
+    LZ4("lz4", "net.jpountz.lz4.LZ4FrameOutputStream");
+
+    /**
+     * Level picking the default of each compression.
+     */
+    public static final int DEFAULT_LEVEL = -1;
+
+    private static final int GZIP_BUFFER_BYTES = 8192;
+
+    private final String contentEncoding;
+    private final Constructor<? extends OutputStream> streamConstructor;
+
+    ReportCompression(String contentEncoding, String streamClassName) {
+        this.contentEncoding = contentEncoding;
+        this.streamConstructor = streamClassName == null ? null : findConstructor(streamClassName);
+    }
+
+    /**
+     * Value of the Content-Encoding header of compressed reports, or null if they are
+     * not compressed.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Returns whether the library implementing this compression is in the class path.
+     */
+    public boolean isAvailable() {
+        return this == NONE || this == GZIP || streamConstructor != null;
+    }
+
+    /**
+     * Returns a stream compressing what is written to {@code out}, at {@code level} if the
+     * compression has levels (zstd: 1 to 22, gzip: 0 to 9, lz4 has none). Closing it
+     * writes the end of the compressed data but leaves {@code out} open.
+     */
+    public OutputStream newOutputStream(OutputStream out, final int level) throws IOException {
+        OutputStream target = new UnclosedOutputStream(out);
+        switch (this) {
+            case NONE:
+                return target;
+            case GZIP:
+                return new GZIPOutputStream(target, GZIP_BUFFER_BYTES) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            default:
+                if (streamConstructor == null) {
+                    throw new IllegalStateException(name() + " compression is not available");
+                }
+                try {
+                    if (streamConstructor.getParameterTypes().length == 2) {
+                        return streamConstructor.newInstance(target, level == DEFAULT_LEVEL ? 3 : level);
+                    }
+                    return streamConstructor.newInstance(target);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                } catch (ReflectiveOperationException e) {
+                    throw new IOException(e);
+                }
+        }
+    }
+
+    private static Constructor<? extends OutputStream> findConstructor(String className) {
+        try {
+            Class<? extends OutputStream> streamClass =
+                    Class.forName(className).asSubclass(OutputStream.class);
+            try {
+                return streamClass.getConstructor(OutputStream.class, int.class);
+            } catch (NoSuchMethodException e) {
+                return streamClass.getConstructor(OutputStream.class);
+            }
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null;
+        }
+    }
+
+    // Keeps the request body open once the compressed data is complete.
+    private static final class UnclosedOutputStream extends FilterOutputStream {
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.lightstep.tracer.shared;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.UnknownFieldSet;
+import com.lightstep.tracer.grpc.ReportRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Writes a {@link ReportRequest} to a channel through a pooled buffer, a field at a time,
+ * instead of serializing the whole report to a byte array first. The bytes written are
+ * the same as those of {@link ReportRequest#toByteArray()}, unless the report is compressed.
+ *
+ * Compressed reports have their spans grouped by trace, so that the compressor finds the
+ * operation names, tags and baggage shared by the spans of a trace close to each other.
+ *
+ * The reporter, with the global tags of the tracer, may be taken from an
+ * {@link EncodedReporter} instead of being serialized for every report.
+ */
+public final class ReportEncoder {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final EncodedReporter encodedReporter;
+    private CodedOutputStream output;
+
+    private ReportEncoder(WritableByteChannel channel, ByteBuffer buffer, EncodedReporter encodedReporter) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.encodedReporter = encodedReporter;
+        this.output = CodedOutputStream.newInstance(buffer);
+    }
+
+    /**
+     * Writes {@code request} to {@code channel}, using a buffer of {@code pool}.
+     */
+    public static void write(ReportRequest request, WritableByteChannel channel, ReportBufferPool pool)
+            throws IOException {
+        write(request, channel, pool, null, false);
+    }
+
+    /**
+     * Writes {@code request} to {@code channel} compressed with {@code compression} at
+     * {@code level}, using a buffer of {@code pool}.
+     */
+    public static void write(ReportRequest request, WritableByteChannel channel, ReportBufferPool pool,
+                             ReportCompression compression, int level) throws IOException {
+        write(request, channel, pool, compression, level, null);
+    }
+
+    /**
+     * Writes {@code request} to {@code channel} compressed with {@code compression} at
+     * {@code level}, using a buffer of {@code pool}, and taking the serialized reporter from
+     * {@code encodedReporter} if not null.
+     */
+    public static void write(ReportRequest request, WritableByteChannel channel, ReportBufferPool pool,
+                             ReportCompression compression, int level, EncodedReporter encodedReporter)
+            throws IOException {
+        if (compression == ReportCompression.NONE) {
+            write(request, channel, pool, encodedReporter, false);
+            return;
+        }
+
+        OutputStream out = compression.newOutputStream(Channels.newOutputStream(channel), level);
+        write(request, Channels.newChannel(out), pool, encodedReporter, true);
+        out.close();
+    }
+
+    private static void write(ReportRequest request, WritableByteChannel channel, ReportBufferPool pool,
+                              EncodedReporter encodedReporter, boolean groupSpansByTrace) throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            new ReportEncoder(channel, buffer, encodedReporter).writeRequest(request, groupSpansByTrace);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    // Fields are written in field number order, like the generated serialization code.
+    private void writeRequest(ReportRequest request, boolean groupSpansByTrace) throws IOException {
+        if (request.hasReporter()) {
+            if (encodedReporter != null) {
+                writeBytes(ReportRequest.REPORTER_FIELD_NUMBER, encodedReporter.encode(request.getReporter()));
+            } else {
+                writeMessage(ReportRequest.REPORTER_FIELD_NUMBER, request.getReporter());
+            }
+        }
+        if (request.hasAuth()) {
+            writeMessage(ReportRequest.AUTH_FIELD_NUMBER, request.getAuth());
+        }
+        if (groupSpansByTrace && request.getSpansCount() > 1) {
+            for (int i : spansByTrace(request)) {
+                writeMessage(ReportRequest.SPANS_FIELD_NUMBER, request.getSpans(i));
+            }
+        } else {
+            for (int i = 0; i < request.getSpansCount(); i++) {
+                writeMessage(ReportRequest.SPANS_FIELD_NUMBER, request.getSpans(i));
+            }
+        }
+        if (request.getTimestampOffsetMicros() != 0) {
+            long value = request.getTimestampOffsetMicros();
+            reserve(CodedOutputStream.computeInt64Size(ReportRequest.TIMESTAMP_OFFSET_MICROS_FIELD_NUMBER, value));
+            output.writeInt64(ReportRequest.TIMESTAMP_OFFSET_MICROS_FIELD_NUMBER, value);
+        }
+        if (request.hasInternalMetrics()) {
+            writeMessage(ReportRequest.INTERNAL_METRICS_FIELD_NUMBER, request.getInternalMetrics());
+        }
+
+        UnknownFieldSet unknownFields = request.getUnknownFields();
+        if (unknownFields.getSerializedSize() > 0) {
+            if (reserve(unknownFields.getSerializedSize())) {
+                unknownFields.writeTo(output);
+            } else {
+                writeUnbuffered(unknownFields);
+            }
+        }
+        flushBuffer();
+    }
+
+    /**
+     * Returns the indexes of the spans of {@code request} ordered by trace ID, keeping the
+     * order in which the spans of a trace were finished.
+     */
+    private static Integer[] spansByTrace(ReportRequest request) {
+        final long[] traceIds = new long[request.getSpansCount()];
+        Integer[] indexes = new Integer[traceIds.length];
+        for (int i = 0; i < traceIds.length; i++) {
+            traceIds[i] = request.getSpans(i).getSpanContext().getTraceId();
+            indexes[i] = i;
+        }
+
+        // Stable, as it sorts objects.
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(traceIds[a], traceIds[b]);
+            }
+        });
+        return indexes;
+    }
+
+    private void writeMessage(int fieldNumber, MessageLite message) throws IOException {
+        if (reserve(CodedOutputStream.computeMessageSize(fieldNumber, message))) {
+            output.writeMessage(fieldNumber, message);
+            return;
+        }
+
+        // Larger than the buffer: rare enough for a small temporary buffer to be fine.
+        CodedOutputStream stream = CodedOutputStream.newInstance(Channels.newOutputStream(channel));
+        stream.writeMessage(fieldNumber, message);
+        stream.flush();
+    }
+
+    // Same encoding as writeMessage, for a message already serialized.
+    private void writeBytes(int fieldNumber, ByteString bytes) throws IOException {
+        if (reserve(CodedOutputStream.computeBytesSize(fieldNumber, bytes))) {
+            output.writeBytes(fieldNumber, bytes);
+            return;
+        }
+
+        CodedOutputStream stream = CodedOutputStream.newInstance(Channels.newOutputStream(channel));
+        stream.writeBytes(fieldNumber, bytes);
+        stream.flush();
+    }
+
+    private void writeUnbuffered(UnknownFieldSet fields) throws IOException {
+        CodedOutputStream stream = CodedOutputStream.newInstance(Channels.newOutputStream(channel));
+        fields.writeTo(stream);
+        stream.flush();
+    }
+
+    /**
+     * Makes room for {@code size} bytes in the buffer, writing its content to the channel
+     * if needed.
+     *
+     * @return false if the bytes do not fit in the buffer even once it is empty, in which
+     *         case it has been emptied.
+     */
+    private boolean reserve(int size) throws IOException {
+        if (output.spaceLeft() >= size) {
+            return true;
+        }
+        flushBuffer();
+        return size <= buffer.capacity();
+    }
+
+    private void flushBuffer() throws IOException {
+        output.flush();
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        output = CodedOutputStream.newInstance(buffer);
+    }
+}
@@ -0,0 +1,19 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+
+/**
+ * Notified of each report sent to the collector by the tracers registered through
+ * {@link StreamingHttpCollectorClientProvider#withReportListener}. Not meant to be used by
+ * applications.
+ */
+public interface ReportListener {
+    /**
+     * Called on the reporting thread once the collector answered {@code request}.
+     *
+     * @param response the response of the collector, or null if the report failed
+     * @param latencyNanos the time the collector client took to send the report
+     */
+    void reportSent(ReportRequest request, ReportResponse response, long latencyNanos);
+}
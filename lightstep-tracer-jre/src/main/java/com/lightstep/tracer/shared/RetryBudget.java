@@ -0,0 +1,47 @@
+package com.lightstep.tracer.shared;
+
+/**
+ * Bounds the retries of failed reports to a fraction of the reports sent: each report
+ * sent adds {@code ratio} of a retry to the budget, up to {@code maxRetries}, and each
+ * retry takes one. When the collector is down, retries thus stop once the budget is
+ * spent, rather than multiplying the load on the collector when it comes back.
+ *
+ * The budget starts with {@code initialRetries}, so that the first failures are retried
+ * before enough reports were sent to earn a retry.
+ */
+final class RetryBudget {
+    /**
+     * Budget shared by the tracers of the JVM: retries are at most a tenth of the reports,
+     * past a first 10.
+     */
+    static final RetryBudget SHARED = new RetryBudget(0.1, 10, 10);
+
+    private final double ratio;
+    private final double maxRetries;
+    private double retries;
+
+    RetryBudget(double ratio, double maxRetries, double initialRetries) {
+        this.ratio = ratio;
+        this.maxRetries = maxRetries;
+        this.retries = Math.min(maxRetries, initialRetries);
+    }
+
+    /**
+     * Called for each report sent, not counting retries.
+     */
+    synchronized void reportSent() {
+        retries = Math.min(maxRetries, retries + ratio);
+    }
+
+    /**
+     * Returns whether a failed report may be retried, taking the retry from the budget if
+     * it may.
+     */
+    synchronized boolean tryRetry() {
+        if (retries < 1) {
+            return false;
+        }
+        retries -= 1;
+        return true;
+    }
+}
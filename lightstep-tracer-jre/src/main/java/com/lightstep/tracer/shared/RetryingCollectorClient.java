@@ -0,0 +1,88 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collector client retrying the reports that another one failed to send, up to
+ * {@code maxRetries} times, within the {@link RetryBudget#SHARED shared retry budget}.
+ * Before each retry, it waits a random delay up to a bound doubling at each retry, from
+ * {@link #BASE_BACKOFF_MILLIS} up to the deadline of the reports, so that the retries of
+ * many processes do not reach the collector together. Reports the collector answered with
+ * errors are not retried.
+ *
+ * All the attempts at a report carry the same report id, which the streaming HTTP
+ * collector client sends in the {@code Idempotency-Key} header, so that the collector may
+ * drop the reports it already received.
+ */
+class RetryingCollectorClient extends CollectorClient {
+    static final long BASE_BACKOFF_MILLIS = 100;
+
+    private static final ThreadLocal<String> REPORT_ID = new ThreadLocal<>();
+
+    private final AbstractTracer tracer;
+    private final CollectorClient client;
+    private final int maxRetries;
+    private final long maxBackoffMillis;
+    private final RetryBudget budget;
+    private volatile boolean shutdown;
+
+    RetryingCollectorClient(AbstractTracer tracer, CollectorClient client, int maxRetries,
+                            long maxBackoffMillis, RetryBudget budget) {
+        this.tracer = tracer;
+        this.client = client;
+        this.maxRetries = maxRetries;
+        this.maxBackoffMillis = Math.max(BASE_BACKOFF_MILLIS, maxBackoffMillis);
+        this.budget = budget;
+    }
+
+    /**
+     * Returns the id of the report the current thread is sending, or null if it is not
+     * sending one through a retrying client.
+     */
+    static String currentReportId() {
+        return REPORT_ID.get();
+    }
+
+    @Override
+    void reconnect() {
+        client.reconnect();
+    }
+
+    @Override
+    void shutdown() {
+        shutdown = true;
+        client.shutdown();
+    }
+
+    @Override
+    ReportResponse report(ReportRequest request) {
+        budget.reportSent();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        REPORT_ID.set(String.format("%016x%016x", random.nextLong(), random.nextLong()));
+        try {
+            ReportResponse response = client.report(request);
+            for (int retry = 0; response == null && retry < maxRetries; retry++) {
+                if (shutdown || !budget.tryRetry()) {
+                    break;
+                }
+
+                long bound = Math.min(maxBackoffMillis, BASE_BACKOFF_MILLIS << Math.min(retry, 20));
+                try {
+                    TimeUnit.MILLISECONDS.sleep(random.nextLong(bound + 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                tracer.debug("Retrying report, attempt " + (retry + 2));
+                response = client.report(request);
+            }
+            return response;
+        } finally {
+            REPORT_ID.remove();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.lightstep.tracer.shared;
+
+import lightstep.okhttp3.OkHttpClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client whose connection pool and dispatcher are shared by the streaming collector
+ * clients and the client metrics senders of the tracers using the shared scheduler, so
+ * that their reports and metrics go through a single pool of connections per JVM.
+ *
+ * Clients are derived from it with their own timeouts and DNS; none of them may be shut
+ * down. Not meant to be used by applications.
+ */
+public final class SharedHttpClient {
+    private static class Holder {
+        private static final OkHttpClient CLIENT = new OkHttpClient();
+    }
+
+    private SharedHttpClient() {
+    }
+
+    /**
+     * Returns a client sharing the connection pool, connecting within
+     * {@code connectTimeoutMillis}.
+     */
+    public static OkHttpClient newClient(long connectTimeoutMillis) {
+        return builder(connectTimeoutMillis).build();
+    }
+
+    static OkHttpClient.Builder builder(long connectTimeoutMillis) {
+        return Holder.CLIENT.newBuilder()
+                .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Closes the idle connections of the pool, so that the next requests open new ones.
+     */
+    static void evictIdleConnections() {
+        Holder.CLIENT.connectionPool().evictAll();
+    }
+}
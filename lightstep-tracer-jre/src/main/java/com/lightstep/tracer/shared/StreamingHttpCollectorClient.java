@@ -0,0 +1,179 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import lightstep.okhttp3.MediaType;
+import lightstep.okhttp3.OkHttpClient;
+import lightstep.okhttp3.Request;
+import lightstep.okhttp3.RequestBody;
+import lightstep.okhttp3.Response;
+import lightstep.okhttp3.ResponseBody;
+import lightstep.okio.BufferedSink;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HTTP collector client writing reports to the request body with a {@link ReportEncoder},
+ * instead of serializing each report to a byte array first, and optionally compressing
+ * them. The reporter of the reports is serialized once, in an {@link EncodedReporter}.
+ *
+ * With a shared connection pool, the client is derived from {@link SharedHttpClient}, and
+ * reconnecting only closes the idle connections of the pool. Reports sent through a
+ * {@link RetryingCollectorClient} carry their report id in the {@code Idempotency-Key}
+ * header. Reports are spread over the {@link CollectorEndpoints} of the client.
+ */
+class StreamingHttpCollectorClient extends CollectorClient {
+    private static final MediaType PROTO_MEDIA_TYPE = MediaType.parse("application/octet-stream");
+    private static final String ACCESS_TOKEN_HEADER = "Lightstep-Access-Token";
+    private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final AtomicReference<OkHttpClient> client;
+    private final AbstractTracer tracer;
+    private final CollectorEndpoints endpoints;
+    private final long deadlineMillis;
+    private final Options.OkHttpDns dns;
+    private final ReportBufferPool bufferPool;
+    private final ReportCompression compression;
+    private final int compressionLevel;
+    private final boolean sharedConnectionPool;
+    private final EncodedReporter encodedReporter = new EncodedReporter();
+
+    StreamingHttpCollectorClient(AbstractTracer tracer, CollectorEndpoints endpoints, long deadlineMillis,
+                                 Options.OkHttpDns dns, ReportBufferPool bufferPool,
+                                 ReportCompression compression, int compressionLevel,
+                                 boolean sharedConnectionPool) {
+        this.tracer = tracer;
+        this.endpoints = endpoints;
+        this.deadlineMillis = deadlineMillis;
+        this.dns = dns;
+        this.bufferPool = bufferPool;
+        this.compression = compression;
+        this.compressionLevel = compressionLevel;
+        this.sharedConnectionPool = sharedConnectionPool;
+        this.client = new AtomicReference<>(start());
+    }
+
+    static CollectorClient create(AbstractTracer tracer, Options options, ReportBufferPool bufferPool,
+                                  ReportCompression compression, int compressionLevel,
+                                  boolean sharedConnectionPool, List<URL> collectorEndpoints) {
+        CollectorEndpoints endpoints = new CollectorEndpoints(collectorEndpoints == null
+                ? Collections.singletonList(options.collectorUrl) : collectorEndpoints, options.deadlineMillis);
+        return new StreamingHttpCollectorClient(tracer, endpoints, options.deadlineMillis,
+                options.okhttpDns, bufferPool, compression, compressionLevel, sharedConnectionPool);
+    }
+
+    /**
+     * Returns the HTTP collector client of tracer-okhttp, which serializes each report to a
+     * byte array.
+     */
+    static CollectorClient regularClient(AbstractTracer tracer, Options options) {
+        return HttpCollectorClientProvider.provider().forOptions(tracer, options);
+    }
+
+    @Override
+    ReportResponse report(ReportRequest request) {
+        CollectorEndpoints.Endpoint endpoint = endpoints.pick();
+        long startNanos = System.nanoTime();
+        ReportResponse response = null;
+        try {
+            response = fromResponse(client.get().newCall(toRequest(request, endpoint.url)).execute());
+        } catch (Exception e) {
+            tracer.error("Exception sending report to collector " + endpoint + ": ", e);
+        } finally {
+            endpoints.reportEnded(endpoint, System.nanoTime() - startNanos, response != null);
+        }
+        return response;
+    }
+
+    @Override
+    void reconnect() {
+        if (sharedConnectionPool) {
+            SharedHttpClient.evictIdleConnections();
+        } else {
+            shutdown(client.getAndSet(start()));
+        }
+    }
+
+    @Override
+    void shutdown() {
+        if (!sharedConnectionPool) {
+            shutdown(client.get());
+        }
+    }
+
+    private Request toRequest(final ReportRequest request, URL collectorURL) {
+        RequestBody body = new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return PROTO_MEDIA_TYPE;
+            }
+
+            @Override
+            public long contentLength() {
+                if (compression != ReportCompression.NONE) {
+                    // Sent chunked.
+                    return -1;
+                }
+                // Computed once per message, and reused when encoding.
+                return request.getSerializedSize();
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                ReportEncoder.write(request, sink, bufferPool, compression, compressionLevel, encodedReporter);
+            }
+        };
+
+        Request.Builder builder = new Request.Builder()
+                .url(collectorURL)
+                .post(body)
+                .addHeader(ACCESS_TOKEN_HEADER, request.getAuth().getAccessToken());
+        if (compression != ReportCompression.NONE) {
+            builder.addHeader(CONTENT_ENCODING_HEADER, compression.getContentEncoding());
+        }
+        String reportId = RetryingCollectorClient.currentReportId();
+        if (reportId != null) {
+            builder.addHeader(IDEMPOTENCY_KEY_HEADER, reportId);
+        }
+        return builder.build();
+    }
+
+    private ReportResponse fromResponse(Response response) throws IOException {
+        try {
+            if (!response.isSuccessful()) {
+                tracer.error(String.format("Collector returned non-successful http code %d, message: %s",
+                        response.code(), response.message()));
+                return null;
+            }
+
+            ResponseBody body = response.body();
+            if (body == null) {
+                tracer.error("Collector returned an empty body");
+                return null;
+            }
+            return ReportResponse.parseFrom(body.byteStream());
+        } finally {
+            response.close();
+        }
+    }
+
+    private static void shutdown(OkHttpClient client) {
+        client.dispatcher().executorService().shutdown();
+    }
+
+    private OkHttpClient start() {
+        OkHttpClient.Builder builder = sharedConnectionPool
+                ? SharedHttpClient.builder(deadlineMillis)
+                : new OkHttpClient.Builder().connectTimeout(deadlineMillis, TimeUnit.MILLISECONDS);
+        if (dns != null) {
+            builder.dns(new HttpCollectorClient.CustomDns(dns));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,274 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Provides the HTTP collector client of the tracers that asked for streaming report
+ * encoding through {@link #forStreamingReportEncoding}, and the regular HTTP collector
+ * client of the other tracers. The clients of the tracers registered through
+ * {@link #withReportListener} notify their listener of each report. Clients are created
+ * on the first report, off the startup path of the application.
+ *
+ * Its priority is above the one of the HTTP provider of tracer-okhttp, so the shared
+ * library picks it wherever lightstep-tracer-jre is in the class path; the tracers that
+ * did not ask for streaming report encoding get the same client as with tracer-okhttp.
+ * Not meant to be used by applications.
+ */
+public class StreamingHttpCollectorClientProvider extends CollectorClientProvider {
+    // Streaming report encoding settings and report listeners of the tracers, by the
+    // options they are built with.
+    private static final Map<Options, Registration> REGISTRATIONS =
+            Collections.synchronizedMap(new WeakHashMap<Options, Registration>());
+
+    /**
+     * Returns a copy of {@code options} that tracers built with get a streaming HTTP
+     * collector client, encoding reports through buffers of {@code bufferPool} and
+     * compressing them with {@code compression} at {@code compressionLevel}, through the
+     * connection pool of {@link SharedHttpClient} if {@code sharedConnectionPool} is set,
+     * with up to {@code maxInflightReports} reports sent at once, and failed reports
+     * retried up to {@code maxReportRetries} times. The HTTP collector client is selected
+     * if no collector client is.
+     */
+    public static Options forStreamingReportEncoding(Options options, ReportBufferPool bufferPool,
+                                                     ReportCompression compression, int compressionLevel,
+                                                     boolean sharedConnectionPool, int maxInflightReports,
+                                                     int maxReportRetries) {
+        Options.OptionsBuilder builder = new Options.OptionsBuilder(options);
+        if (options.collectorClient == null) {
+            builder.withCollectorClient(Options.CollectorClient.HTTP);
+        }
+
+        Options copy;
+        try {
+            copy = builder.build();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Unexpected error when building a new set of options from a valid set of existing options", e);
+        }
+        REGISTRATIONS.put(copy, new Registration(bufferPool, compression, compressionLevel, sharedConnectionPool,
+                maxInflightReports, maxReportRetries));
+        return copy;
+    }
+
+    /**
+     * Makes the tracers built with {@code options}, returned by
+     * {@link #forStreamingReportEncoding}, spread their reports over the collectors at
+     * {@code endpoints}, given as {@code host} or {@code host:port}, with the protocol and
+     * path of the collector URL of the options, instead of sending them to that URL.
+     *
+     * @throws IllegalArgumentException if an endpoint is malformed
+     */
+    public static Options withCollectorEndpoints(Options options, List<String> endpoints) {
+        Registration registration = REGISTRATIONS.get(options);
+        if (registration == null || registration.bufferPool == null) {
+            throw new IllegalArgumentException("Collector endpoints require streaming report encoding");
+        }
+
+        List<URL> urls = new ArrayList<>(endpoints.size());
+        URL collectorUrl = options.collectorUrl;
+        for (String endpoint : endpoints) {
+            String host = endpoint.trim();
+            int port = -1;
+            int colon = host.lastIndexOf(':');
+            if (colon > host.lastIndexOf(']')) {
+                try {
+                    port = Integer.parseInt(host.substring(colon + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid collector endpoint: " + endpoint);
+                }
+                host = host.substring(0, colon);
+            }
+            if (host.isEmpty()) {
+                throw new IllegalArgumentException("Invalid collector endpoint: " + endpoint);
+            }
+            try {
+                urls.add(new URL(collectorUrl.getProtocol(), host, port, collectorUrl.getFile()));
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid collector endpoint: " + endpoint, e);
+            }
+        }
+        registration.collectorEndpoints = urls;
+        return options;
+    }
+
+    /**
+     * Returns {@code options}, or a copy of them, that tracers built with get a collector
+     * client notifying {@code listener} of each report. Only HTTP collector clients do.
+     */
+    public static Options withReportListener(Options options, ReportListener listener) {
+        Registration registration = REGISTRATIONS.get(options);
+        if (registration != null) {
+            registration.listener = registration.listener == null ? listener : both(registration.listener, listener);
+            return options;
+        }
+
+        Options copy;
+        try {
+            copy = new Options.OptionsBuilder(options).build();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Unexpected error when building a new set of options from a valid set of existing options", e);
+        }
+        registration = new Registration(null, null, 0, false, 1, 0);
+        registration.listener = listener;
+        REGISTRATIONS.put(copy, registration);
+        return copy;
+    }
+
+    private static ReportListener both(final ReportListener first, final ReportListener second) {
+        return new ReportListener() {
+            @Override
+            public void reportSent(ReportRequest request, ReportResponse response, long latencyNanos) {
+                first.reportSent(request, response, latencyNanos);
+                second.reportSent(request, response, latencyNanos);
+            }
+        };
+    }
+
+    /**
+     * Returns whether the collector client of the tracer built with {@code options}
+     * notifies the report listener registered through {@link #withReportListener}.
+     */
+    public static boolean notifiesReportListeners(Options options) {
+        Registration registration = REGISTRATIONS.get(options);
+        return registration != null && registration.listening;
+    }
+
+    /**
+     * Returns whether the tracer built with {@code options} got a streaming HTTP collector
+     * client.
+     */
+    public static boolean hasStreamingClient(Options options) {
+        Registration registration = REGISTRATIONS.get(options);
+        return registration != null && registration.streaming;
+    }
+
+    /**
+     * Waits for the reports in flight of the tracer built with {@code options} to be
+     * answered, at most the deadline of the options, and returns whether they succeeded.
+     * Returns true at once if the tracer does not send several reports at once.
+     */
+    public static boolean awaitInflightReports(Options options) {
+        Registration registration = REGISTRATIONS.get(options);
+        PipelinedCollectorClient pipeline = registration == null ? null : registration.pipeline;
+        return pipeline == null || pipeline.awaitReports(options.deadlineMillis);
+    }
+
+    // Above the priority of HttpCollectorClientProvider, which is 0. Nothing here may refer
+    // to tracer-okhttp classes directly, as this provider is loaded even when tracer-okhttp
+    // is missing.
+    @Override
+    protected int priority() {
+        return 10;
+    }
+
+    @Override
+    protected Options.CollectorClient type() {
+        return Options.CollectorClient.HTTP;
+    }
+
+    @Override
+    CollectorClient forOptions(final AbstractTracer tracer, final Options options) {
+        if (!isHttpClientAvailable()) {
+            return fallbackClient(tracer, options);
+        }
+
+        final Registration registration = REGISTRATIONS.get(options);
+        if (registration != null && registration.bufferPool != null) {
+            registration.streaming = true;
+        }
+        CollectorClient client = new LazyCollectorClient() {
+            @Override
+            CollectorClient create() {
+                if (registration == null || registration.bufferPool == null) {
+                    return StreamingHttpCollectorClient.regularClient(tracer, options);
+                }
+                return StreamingHttpCollectorClient.create(tracer, options, registration.bufferPool,
+                        registration.compression, registration.compressionLevel,
+                        registration.sharedConnectionPool, registration.collectorEndpoints);
+            }
+        };
+        if (registration != null && registration.listener != null) {
+            client = new ListeningCollectorClient(client, registration.listener);
+            registration.listening = true;
+        }
+        if (registration != null && registration.bufferPool != null && registration.maxReportRetries > 0) {
+            client = new RetryingCollectorClient(tracer, client, registration.maxReportRetries,
+                    options.deadlineMillis, RetryBudget.SHARED);
+        }
+        if (registration != null && registration.bufferPool != null && registration.maxInflightReports > 1) {
+            PipelinedCollectorClient pipeline = new PipelinedCollectorClient(tracer, client,
+                    registration.maxInflightReports);
+            registration.pipeline = pipeline;
+            client = pipeline;
+        }
+        return client;
+    }
+
+    private static boolean isHttpClientAvailable() {
+        ClassLoader loader = StreamingHttpCollectorClientProvider.class.getClassLoader();
+        try {
+            Class.forName("com.lightstep.tracer.shared.HttpCollectorClientProvider", false, loader);
+            Class.forName("lightstep.okhttp3.OkHttpClient", false, loader);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    // Falls back to the gRPC client like the shared library does when tracer-okhttp is
+    // missing.
+    private static CollectorClient fallbackClient(final AbstractTracer tracer, Options options) {
+        CollectorClientProvider provider = CollectorClientProvider.provider(Options.CollectorClient.GRPC,
+                new Warner() {
+                    @Override
+                    public void warn(String message) {
+                        tracer.warn(message);
+                    }
+
+                    @Override
+                    public void error(String message) {
+                        tracer.error(message);
+                    }
+                });
+        if (provider instanceof StreamingHttpCollectorClientProvider) {
+            tracer.error("No functional collector client provider found. Try adding a dependency on the tracer-okhttp or tracer-grpc artifact.");
+            return null;
+        }
+        tracer.warn("expected HTTP collector client was not present in classpath. Using " + provider.type() + " instead.");
+        return provider.forOptions(tracer, options);
+    }
+
+    private static class Registration {
+        // Null if reports are not encoded by a streaming client.
+        final ReportBufferPool bufferPool;
+        final ReportCompression compression;
+        final int compressionLevel;
+        final boolean sharedConnectionPool;
+        final int maxInflightReports;
+        final int maxReportRetries;
+        volatile boolean streaming;
+        volatile boolean listening;
+        volatile ReportListener listener;
+        volatile PipelinedCollectorClient pipeline;
+        // Null if reports are sent to the collector URL of the options.
+        volatile List<URL> collectorEndpoints;
+
+        Registration(ReportBufferPool bufferPool, ReportCompression compression, int compressionLevel,
+                     boolean sharedConnectionPool, int maxInflightReports, int maxReportRetries) {
+            this.bufferPool = bufferPool;
+            this.compression = compression;
+            this.compressionLevel = compressionLevel;
+            this.sharedConnectionPool = sharedConnectionPool;
+            this.maxInflightReports = maxInflightReports;
+            this.maxReportRetries = maxReportRetries;
+        }
+    }
+}
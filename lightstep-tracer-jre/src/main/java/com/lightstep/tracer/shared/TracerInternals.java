@@ -0,0 +1,183 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.KeyValue;
+import io.opentracing.propagation.Format;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives {@link com.lightstep.tracer.jre.JRETracer} access to the package-private state it
+ * needs from the shared tracer library. Not meant to be used by applications.
+ *
+ * The classes of this package in lightstep-tracer-jre share the package of java-common,
+ * whose package-private members are not part of its API, which is why the pom requires its
+ * exact version. They only rely on these members, which is what to check when upgrading:
+ * <ul>
+ * <li>the fields of {@link Options} read here and by the collector client provider:
+ * {@code collectorClient}, {@code collectorUrl}, {@code deadlineMillis},
+ * {@code okhttpDns}, {@code maxBufferedSpans}, {@code maxReportingIntervalMillis},
+ * {@code disableReportingLoop}, {@code disableMetricsReporting}, {@code accessToken},
+ * {@code serviceVersion}, {@code metricsUrl}, {@code verbosity}, {@code propagators} and
+ * {@code tags};</li>
+ * <li>{@code CollectorClient}, whose abstract methods the collector clients implement, and
+ * {@code CollectorClientProvider.forOptions};</li>
+ * <li>{@code AbstractTracer.addSpan} and {@code metaEventLoggingEnabled}, the
+ * {@link SpanContext} constructors and baggage accessors, {@code Span.stringToJSONValue}
+ * and the {@link Status} constructor, through this class only;</li>
+ * <li>the private {@code AbstractTracer.spans} field, read through reflection;</li>
+ * <li>from tracer-okhttp, whose version follows java-common,
+ * {@code HttpCollectorClientProvider.forOptions} and {@code HttpCollectorClient.CustomDns}.</li>
+ * </ul>
+ */
+public final class TracerInternals {
+    // The report buffer of AbstractTracer, or null if it could not be found.
+    private static final Field SPANS = spansField();
+
+    private TracerInternals() {}
+
+    public static int getMaxBufferedSpans(Options options) {
+        return options.maxBufferedSpans;
+    }
+
+    public static long getMaxReportingIntervalMillis(Options options) {
+        return options.maxReportingIntervalMillis;
+    }
+
+    public static Options.CollectorClient getCollectorClient(Options options) {
+        return options.collectorClient;
+    }
+
+    public static boolean isReportingLoopDisabled(Options options) {
+        return options.disableReportingLoop;
+    }
+
+    public static long getDeadlineMillis(Options options) {
+        return options.deadlineMillis;
+    }
+
+    public static int getVerbosity(Options options) {
+        return options.verbosity;
+    }
+
+    public static boolean isMetricsReportingDisabled(Options options) {
+        return options.disableMetricsReporting;
+    }
+
+    public static String getAccessToken(Options options) {
+        return options.accessToken;
+    }
+
+    public static String getServiceVersion(Options options) {
+        return options.serviceVersion;
+    }
+
+    public static String getMetricsUrl(Options options) {
+        return options.metricsUrl;
+    }
+
+    /**
+     * Returns the propagator of {@code format}, or null if the format is not supported.
+     */
+    public static Propagator getPropagator(Options options, Format<?> format) {
+        return options.propagators.get(format);
+    }
+
+    public static String getComponentName(Options options) {
+        Object componentName = options.tags.get(LightStepConstants.Tags.COMPONENT_NAME_KEY);
+        return componentName == null ? null : componentName.toString();
+    }
+
+    /**
+     * Returns whether the spans of {@code tracer} log start and finish meta events, which
+     * only spans of the shared library do.
+     */
+    public static boolean isMetaEventLoggingEnabled(AbstractTracer tracer) {
+        return tracer.metaEventLoggingEnabled;
+    }
+
+    /**
+     * Adds a finished span to the report buffer of {@code tracer}.
+     */
+    public static void addSpan(AbstractTracer tracer, com.lightstep.tracer.grpc.Span span) {
+        tracer.addSpan(span);
+    }
+
+    /**
+     * Returns the number of spans in the report buffer of {@code tracer}, or 0 if it cannot
+     * be read.
+     */
+    public static int getBufferedSpans(AbstractTracer tracer) {
+        if (SPANS == null) {
+            return 0;
+        }
+        synchronized (tracer.mutex) {
+            try {
+                return ((List<?>) SPANS.get(tracer)).size();
+            } catch (IllegalAccessException e) {
+                return 0;
+            }
+        }
+    }
+
+    private static Field spansField() {
+        try {
+            Field field = AbstractTracer.class.getDeclaredField("spans");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the context of a new span of the trace {@code traceId}, with the baggage of
+     * {@code parent}, if any.
+     */
+    public static SpanContext newSpanContext(long traceId, long spanId, SpanContext parent) {
+        Map<String, String> baggage = parent == null ? null : new HashMap<>(parent.getBaggage());
+        return new SpanContext(traceId, spanId, baggage);
+    }
+
+    public static String getBaggageItem(SpanContext context, String key) {
+        return context.getBaggageItem(key);
+    }
+
+    /**
+     * Returns {@code value} as a JSON string, like the values of the log fields that are not
+     * strings, numbers or booleans.
+     */
+    public static String toJsonValue(String value) {
+        return Span.stringToJSONValue(value);
+    }
+
+    /**
+     * Returns a status made of {@code status} and additional tags, which take precedence
+     * over the tags of {@code status}.
+     */
+    public static Status withTags(Status status, Map<String, String> tags) {
+        return withTags(status, tags, 0);
+    }
+
+    /**
+     * Returns a status made of {@code status} and additional tags, counting
+     * {@code spansDropped} more dropped spans.
+     */
+    public static Status withTags(final Status status, final Map<String, String> tags, long spansDropped) {
+        return new Status(Collections.<KeyValue>emptyList(), status.getSpansDropped() + spansDropped) {
+            @Override
+            public boolean hasTag(String key) {
+                return tags.containsKey(key) || status.hasTag(key);
+            }
+
+            @Override
+            public String getTag(String key) {
+                String value = tags.get(key);
+                return value != null ? value : status.getTag(key);
+            }
+        };
+    }
+}
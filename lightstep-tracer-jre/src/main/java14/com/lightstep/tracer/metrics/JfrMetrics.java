@@ -0,0 +1,145 @@
+package com.lightstep.tracer.metrics;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runtime metrics consumed from JFR event streaming as the events happen, instead of
+ * polled once per sample: GC pauses, allocation, safepoints and the CPU load of the JVM.
+ * They are added to the client metrics of the tracers created with
+ * {@code JREOptions.OptionsBuilder.withJfrMetrics(true)}.
+ *
+ * This is the Java 14 version of the class. Each pause is counted as it ends, so the
+ * longest pause of each sample period is reported along with the total, and the events
+ * are consumed by the JFR streaming thread rather than by the metrics thread.
+ */
+public final class JfrMetrics extends MetricGroup implements Closeable {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long CPU_LOAD_SCALE = 10_000L;
+    private static final Duration CPU_LOAD_PERIOD = Duration.ofSeconds(1);
+
+    // Allocation samples are throttled by JFR, each weighing the bytes it stands for.
+    private static final String ALLOCATION_THROTTLE = "150/s";
+
+    private final RecordingStream stream;
+
+    // Totals since the stream started, but for the longest pause, reset by each sample.
+    private final AtomicLong gcPauses = new AtomicLong();
+    private final AtomicLong gcPauseNanos = new AtomicLong();
+    private final AtomicLong longestGcPauseNanos = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong safepoints = new AtomicLong();
+    private final AtomicLong safepointNanos = new AtomicLong();
+    private volatile long cpuLoad;
+
+    private JfrMetrics(RecordingStream stream) {
+        super(null,
+                new CounterMetric<>("runtime.java.gc.pause.count", Long.class, 1),
+                new CounterMetric<>("runtime.java.gc.pause.time", Long.class, NANOS_PER_SECOND),
+                new GaugeMetric<>("runtime.java.gc.pause.max", Long.class, NANOS_PER_SECOND),
+                new CounterMetric<>("runtime.java.allocation", Long.class, 1),
+                new CounterMetric<>("runtime.java.safepoint.count", Long.class, 1),
+                new CounterMetric<>("runtime.java.safepoint.time", Long.class, NANOS_PER_SECOND),
+                new GaugeMetric<>("runtime.java.cpu.load", Long.class, CPU_LOAD_SCALE));
+        this.stream = stream;
+    }
+
+    /**
+     * Returns whether JFR event streaming is available in this JVM.
+     */
+    public static boolean isAvailable() {
+        try {
+            return FlightRecorder.isAvailable();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts consuming the events, and returns the metrics, or null if JFR event streaming
+     * is not available.
+     */
+    static JfrMetrics start() {
+        if (!isAvailable()) {
+            return null;
+        }
+
+        RecordingStream stream;
+        try {
+            stream = new RecordingStream();
+        } catch (IllegalStateException | SecurityException e) {
+            logger.warn("JFR metrics are not collected: " + e);
+            return null;
+        }
+        final JfrMetrics metrics = new JfrMetrics(stream);
+
+        stream.enable("jdk.GCPhasePause");
+        stream.onEvent("jdk.GCPhasePause", new Consumer<RecordedEvent>() {
+            @Override
+            public void accept(RecordedEvent event) {
+                long nanos = event.getDuration().toNanos();
+                metrics.gcPauses.incrementAndGet();
+                metrics.gcPauseNanos.addAndGet(nanos);
+                long longest = metrics.longestGcPauseNanos.get();
+                while (nanos > longest && !metrics.longestGcPauseNanos.compareAndSet(longest, nanos)) {
+                    longest = metrics.longestGcPauseNanos.get();
+                }
+            }
+        });
+
+        // Not defined before Java 16, in which case the allocation is not reported.
+        stream.enable("jdk.ObjectAllocationSample").with("throttle", ALLOCATION_THROTTLE);
+        stream.onEvent("jdk.ObjectAllocationSample", new Consumer<RecordedEvent>() {
+            @Override
+            public void accept(RecordedEvent event) {
+                metrics.allocatedBytes.addAndGet(event.getLong("weight"));
+            }
+        });
+
+        stream.enable("jdk.SafepointBegin");
+        stream.onEvent("jdk.SafepointBegin", new Consumer<RecordedEvent>() {
+            @Override
+            public void accept(RecordedEvent event) {
+                metrics.safepoints.incrementAndGet();
+                metrics.safepointNanos.addAndGet(event.getDuration().toNanos());
+            }
+        });
+
+        stream.enable("jdk.CPULoad").withPeriod(CPU_LOAD_PERIOD);
+        stream.onEvent("jdk.CPULoad", new Consumer<RecordedEvent>() {
+            @Override
+            public void accept(RecordedEvent event) {
+                double load = event.getDouble("jvmUser") + event.getDouble("jvmSystem");
+                metrics.cpuLoad = Math.round(load * CPU_LOAD_SCALE);
+            }
+        });
+
+        stream.setReuse(true);
+        stream.startAsync();
+        return metrics;
+    }
+
+    @Override
+    <I, O> long[] newSample() {
+        return new long[] {
+                gcPauses.get(),
+                gcPauseNanos.get(),
+                longestGcPauseNanos.getAndSet(0),
+                allocatedBytes.get(),
+                safepoints.get(),
+                safepointNanos.get(),
+                cpuLoad
+        };
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
@@ -0,0 +1,28 @@
+package com.lightstep.tracer.jre;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads running the background loops of the tracer: reporting, metrics and
+ * the span buffer.
+ *
+ * This is the Java 21 version of the class, creating virtual threads, which are always
+ * daemon threads.
+ */
+public final class ReporterThreads {
+    private ReporterThreads() {}
+
+    /**
+     * Returns an unstarted virtual thread running {@code runnable}.
+     */
+    public static Thread newThread(String name, Runnable runnable) {
+        return Thread.ofVirtual().name(name).unstarted(runnable);
+    }
+
+    /**
+     * Returns a factory of virtual threads named {@code name}.
+     */
+    public static ThreadFactory newThreadFactory(String name) {
+        return Thread.ofVirtual().name(name).factory();
+    }
+}
@@ -0,0 +1,61 @@
+package com.lightstep.tracer.jre;
+
+import org.junit.Test;
+
+import static com.lightstep.tracer.jre.AdaptiveReportingInterval.Decision;
+import static com.lightstep.tracer.jre.AdaptiveReportingInterval.MIN_INTERVAL_MILLIS;
+import static org.junit.Assert.*;
+
+public class AdaptiveReportingIntervalTest {
+
+    @Test
+    public void highWaterMarkRequestsReport() {
+        AdaptiveReportingInterval interval = new AdaptiveReportingInterval(8000, 100);
+        for (int i = 1; i < 50; i++) {
+            assertFalse(interval.spanBuffered());
+        }
+        assertTrue(interval.spanBuffered());
+        // Only crossing the mark requests a report.
+        assertFalse(interval.spanBuffered());
+
+        assertEquals(51, interval.reportStarted());
+        assertEquals(0, interval.reportStarted());
+    }
+
+    @Test
+    public void intervalBacksOffWhileIdle() {
+        AdaptiveReportingInterval interval = new AdaptiveReportingInterval(8000, 100);
+        assertEquals(Decision.INITIAL, interval.getDecision());
+        assertEquals(MIN_INTERVAL_MILLIS, interval.getIntervalMillis());
+
+        long expected = MIN_INTERVAL_MILLIS;
+        for (int i = 0; i < 10; i++) {
+            interval.reportCompleted(true, 0);
+            expected = Math.min(8000, expected * 2);
+            assertEquals(expected, interval.getIntervalMillis());
+            assertEquals(Decision.IDLE_BACKOFF, interval.getDecision());
+        }
+
+        interval.reportCompleted(true, 30);
+        assertEquals(8000, interval.getIntervalMillis());
+        assertEquals(Decision.STEADY, interval.getDecision());
+
+        interval.reportCompleted(true, 60);
+        assertEquals(4000, interval.getIntervalMillis());
+        assertEquals(Decision.HIGH_WATER, interval.getDecision());
+    }
+
+    @Test
+    public void intervalBacksOffOnFailure() {
+        AdaptiveReportingInterval interval = new AdaptiveReportingInterval(8000, 100);
+        interval.reportCompleted(false, 100);
+        assertEquals(2 * MIN_INTERVAL_MILLIS, interval.getIntervalMillis());
+        assertEquals(Decision.FAILURE_BACKOFF, interval.getDecision());
+
+        // Full jitter, so that reports failing together are not retried together.
+        for (int i = 0; i < 100; i++) {
+            long delay = interval.nextDelayMillis();
+            assertTrue(delay >= MIN_INTERVAL_MILLIS && delay <= 2 * MIN_INTERVAL_MILLIS);
+        }
+    }
+}
@@ -1,19 +1,49 @@
 package com.lightstep.tracer.jre;
 
+import com.google.protobuf.Timestamp;
 import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
 import com.lightstep.tracer.grpc.Span.Builder;
+import com.lightstep.tracer.metrics.SpanMetrics;
+import com.lightstep.tracer.shared.B3Propagator;
 import com.lightstep.tracer.shared.Options;
+import com.lightstep.tracer.shared.ReportCompression;
 import com.lightstep.tracer.shared.Status;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import io.opentracing.Scope;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.propagation.TextMapAdapter;
+import io.opentracing.tag.Tags;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import static io.opentracing.propagation.Format.Builtin.HTTP_HEADERS;
 import static org.junit.Assert.*;
@@ -24,6 +54,9 @@ public class JRETracerTest {
     static final String FIELD_NAME_TRACE_ID = PREFIX_TRACER_STATE + "traceid";
     static final String FIELD_NAME_SPAN_ID = PREFIX_TRACER_STATE + "spanid";
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void tracerHasStandardTags() throws Exception {
         JRETracer tracer = new JRETracer(
@@ -52,6 +85,15 @@ public class JRETracerTest {
         assertEquals("my_component", status.getTag("lightstep.component_name"));
     }
 
+    @Test
+    public void tracerWithoutOptionsUsesDefaultOptions() throws Exception {
+        JRETracer tracer = new JRETracer(null);
+
+        Status status = tracer.status();
+        assertTrue(status.hasTag("lightstep.component_name"));
+        assertEquals("jre", status.getTag("lightstep.tracer_platform"));
+    }
+
     @Test
     public void tracerOptionsAreSupported() throws Exception {
         // Ensure all the expected option methods are there and support
@@ -212,7 +254,1006 @@ public class JRETracerTest {
         assertTrue(tracer.isDisabled());
     }
 
+    @Test
+    public void flushDoesNotBlockCaller() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .build()) {
+            @Override
+            protected boolean sendReport(boolean explicitRequest) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+
+        CompletableFuture<Boolean> flush = tracer.flushAsync();
+        assertFalse(flush.isDone());
+
+        release.countDown();
+        assertTrue(flush.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void concurrentFlushesAreCoalesced() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger reports = new AtomicInteger();
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .build()) {
+            @Override
+            protected boolean sendReport(boolean explicitRequest) {
+                reports.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            }
+        };
+
+        CompletableFuture<Boolean> inFlight = tracer.flushAsync();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // Requests made while a report is in flight share the next one.
+        CompletableFuture<Boolean> queued = tracer.flushAsync();
+        for (int i = 0; i < 10; i++) {
+            assertSame(queued, tracer.flushAsync());
+        }
+        assertNotSame(inFlight, queued);
+
+        release.countDown();
+        assertTrue(inFlight.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, reports.get());
+    }
+
+    @Test
+    public void flushAfterCloseFails() throws Exception {
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .build());
+
+        tracer.close();
+        assertFalse(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void spanBufferHandsSpansToTracer() throws Exception {
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .withMaxBufferedSpans(5)
+                        .build(),
+                new JREOptions.OptionsBuilder()
+                        .withSpanBufferOverflowPolicy(OverflowPolicy.DROP_NEWEST)
+                        .build()) {
+            @Override
+            protected boolean sendReport(boolean explicitRequest) {
+                return true;
+            }
+        };
+
+        for (int i = 0; i < 10; i++) {
+            Span span = tracer.buildSpan("test_span").withTag("my_key", "my_value").start();
+            assertTrue(span instanceof JRESpan);
+            assertSpanHasTag(span, "my_key", "my_value");
+            span.finish();
+        }
+
+        // Flushing drains the span buffer into the report buffer, which only has room for 5.
+        assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+        assertEquals(5, tracer.status().getSpansDropped());
+        assertEquals(0, tracer.getSpanBufferDroppedCount());
+    }
+
+    @Test
+    public void spansAreSpilledWhileCollectorIsUnavailable() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        final AtomicBoolean collectorAvailable = new AtomicBoolean();
+        try {
+            Options options = new Options.OptionsBuilder(collectorOptions(server))
+                    .withMaxBufferedSpans(3)
+                    .build();
+            JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                    .withSpillDirectory(folder.getRoot().getPath())
+                    .build()) {
+                @Override
+                protected boolean sendReport(boolean explicitRequest) {
+                    return collectorAvailable.get() && super.sendReport(explicitRequest);
+                }
+            };
+
+            // Only the spans overflowing the report buffer are spilled, by the report
+            // executor.
+            assertFalse(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                tracer.buildSpan("test_span").start().finish();
+            }
+            assertFalse(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+            assertEquals(0, folder.getRoot().listFiles().length);
+            for (int i = 0; i < 2; i++) {
+                tracer.buildSpan("test_span").start().finish();
+            }
+            awaitSegmentFiles(1);
+
+            // The first successful report adds the spilled spans to the report buffer,
+            // and they are acknowledged once the collector answered the next one.
+            collectorAvailable.set(true);
+            assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+            assertEquals(3, spanCount(reports));
+            assertEquals(1, folder.getRoot().listFiles().length);
+            assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+            assertEquals(0, folder.getRoot().listFiles().length);
+            assertEquals(5, spanCount(reports));
+            assertEquals(0, tracer.getSpillDroppedCount());
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void spilledSpansDroppedByTheReportBufferAreReplayedAgain() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        final AtomicBoolean collectorAvailable = new AtomicBoolean();
+        try {
+            Options options = new Options.OptionsBuilder(collectorOptions(server))
+                    .withMaxBufferedSpans(2)
+                    .build();
+            JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                    .withSpillDirectory(folder.getRoot().getPath())
+                    .withMaxInflightReports(2)
+                    .build()) {
+                @Override
+                protected boolean sendReport(boolean explicitRequest) {
+                    return collectorAvailable.get() && super.sendReport(explicitRequest);
+                }
+            };
+
+            assertFalse(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 5; i++) {
+                tracer.buildSpan("test_span").start().finish();
+            }
+            awaitSegmentFiles(1);
+
+            // Two spans fit in the report buffer at a time.
+            collectorAvailable.set(true);
+            for (int i = 0; i < 10 && folder.getRoot().listFiles().length > 0; i++) {
+                assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(0, folder.getRoot().listFiles().length);
+            assertEquals(5, spanCount(reports));
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void unsampledSpansArePropagated() throws Exception {
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .build(),
+                new JREOptions.OptionsBuilder()
+                        .withSampler(new ProbabilisticSampler(0))
+                        .build());
+
+        Span parent = tracer.buildSpan("parent").withTag("my_key", "my_value").start();
+        assertFalse(parent instanceof com.lightstep.tracer.shared.Span);
+        parent.setBaggageItem("my_item", "my_value");
+
+        Span child;
+        try (Scope scope = tracer.activateSpan(parent)) {
+            child = tracer.buildSpan("child").start();
+        }
+        com.lightstep.tracer.shared.SpanContext parentContext =
+                (com.lightstep.tracer.shared.SpanContext) parent.context();
+        com.lightstep.tracer.shared.SpanContext childContext =
+                (com.lightstep.tracer.shared.SpanContext) child.context();
+        assertEquals(parentContext.getTraceId(), childContext.getTraceId());
+        assertNotEquals(parentContext.getSpanId(), childContext.getSpanId());
+        assertEquals("my_value", child.getBaggageItem("my_item"));
+
+        Map<String, String> headers = new HashMap<>();
+        tracer.inject(child.context(), HTTP_HEADERS, new TextMapAdapter(headers));
+        assertEquals(childContext.toTraceId(), headers.get(FIELD_NAME_TRACE_ID));
+        assertEquals("my_value", headers.get("ot-baggage-my_item"));
+        assertEquals("false", headers.get("ot-tracer-sampled"));
+
+        child.finish();
+        parent.finish();
+    }
+
+    @Test
+    public void remoteParentsThatAreNotSampledAreHonoured() throws Exception {
+        JRETracer client = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .build(),
+                new JREOptions.OptionsBuilder()
+                        .withSampler(new ProbabilisticSampler(0))
+                        .build());
+        // Samples every span with a parent.
+        JRETracer server = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .build(),
+                new JREOptions.OptionsBuilder()
+                        .withSampler(new RateLimitingSampler(1000))
+                        .build());
+
+        Span request = client.buildSpan("request").start();
+        Map<String, String> headers = new HashMap<>();
+        client.inject(request.context(), HTTP_HEADERS, new TextMapAdapter(headers));
+
+        SpanContext remoteParent = server.extract(HTTP_HEADERS, new TextMapAdapter(headers));
+        Span handler = server.buildSpan("handler").asChildOf(remoteParent).start();
+        assertTrue(handler instanceof UnsampledSpan);
+        assertEquals(((com.lightstep.tracer.shared.SpanContext) request.context()).getTraceId(),
+                ((com.lightstep.tracer.shared.SpanContext) handler.context()).getTraceId());
+        handler.finish();
+        request.finish();
+
+        // Sampled parents are still sampled.
+        headers.put("ot-tracer-sampled", "true");
+        handler = server.buildSpan("handler")
+                .asChildOf(server.extract(HTTP_HEADERS, new TextMapAdapter(headers)))
+                .start();
+        assertTrue(handler instanceof JRESpan);
+        handler.finish();
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void headerCodecPropagatesB3Headers() throws Exception {
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .withPropagator(HTTP_HEADERS, new B3Propagator())
+                        .build(),
+                new JREOptions.OptionsBuilder()
+                        .withHeaderCodec(true)
+                        .build());
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-B3-TraceId", "463ac35c9f6413ad48485a3953bb6124");
+        headers.put("X-B3-SpanId", "a2fb4a1d1a96d312");
+        SpanContext context = tracer.extract(HTTP_HEADERS, new TextMapAdapter(headers));
+
+        Map<String, String> injected = new HashMap<>();
+        tracer.inject(context, HTTP_HEADERS, new TextMapAdapter(injected));
+        assertEquals("463ac35c9f6413ad48485a3953bb6124", injected.get("X-B3-TraceId"));
+        assertEquals("a2fb4a1d1a96d312", injected.get("X-B3-SpanId"));
+        tracer.close();
+    }
+
+    @Test
+    public void sampledSpansKeepTheirTraceId() throws Exception {
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withDisableReportingLoop(true)
+                        .build(),
+                new JREOptions.OptionsBuilder()
+                        .withSampler(new ProbabilisticSampler(1))
+                        .build());
+
+        Span parent = tracer.buildSpan("parent").withTag("my_key", "my_value").start();
+        assertTrue(parent instanceof JRESpan);
+        assertSpanHasTag(parent, "my_key", "my_value");
+
+        Span child = tracer.buildSpan("child").asChildOf(parent).start();
+        assertEquals(((com.lightstep.tracer.shared.SpanContext) parent.context()).getTraceId(),
+                ((com.lightstep.tracer.shared.SpanContext) child.context()).getTraceId());
+
+        child.finish();
+        parent.finish();
+    }
+
+    @Test
+    public void adaptiveReportingReportsAtHighWaterMark() throws Exception {
+        final AtomicInteger reports = new AtomicInteger();
+        JRETracer tracer = new JRETracer(
+                new Options.OptionsBuilder()
+                        .withAccessToken("{your_access_token}")
+                        .withMaxBufferedSpans(10)
+                        .build(),
+                new JREOptions.OptionsBuilder()
+                        .withAdaptiveReporting(true)
+                        .build()) {
+            @Override
+            protected boolean sendReport(boolean explicitRequest) {
+                reports.incrementAndGet();
+                return true;
+            }
+        };
+        assertEquals("initial", tracer.status().getTag(JRETracer.REPORTING_DECISION_STATUS_KEY));
+
+        for (int i = 0; i < 5; i++) {
+            tracer.buildSpan("test_span").start().finish();
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        Status status = tracer.status();
+        while ("initial".equals(status.getTag(JRETracer.REPORTING_DECISION_STATUS_KEY))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            status = tracer.status();
+        }
+        assertEquals(1, reports.get());
+        assertEquals("high_water", status.getTag(JRETracer.REPORTING_DECISION_STATUS_KEY));
+        assertEquals(Long.toString(AdaptiveReportingInterval.MIN_INTERVAL_MILLIS),
+                status.getTag(JRETracer.REPORTING_INTERVAL_STATUS_KEY));
+        assertEquals("jre", status.getTag("lightstep.tracer_platform"));
+        tracer.close();
+    }
+
+    @Test
+    public void adaptiveReportsStopOnceNothingIsBuffered() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            Options options = new Options.OptionsBuilder(collectorOptions(server))
+                    .withDisableReportingLoop(false)
+                    .withMaxReportingIntervalMillis(100)
+                    .build();
+            final AtomicInteger reportsSent = new AtomicInteger();
+            JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                    .withAdaptiveReporting(true)
+                    .build()) {
+                @Override
+                protected boolean sendReport(boolean explicitRequest) {
+                    reportsSent.incrementAndGet();
+                    return super.sendReport(explicitRequest);
+                }
+            };
+
+            tracer.buildSpan("first_span").start().finish();
+            for (int i = 0; i < 100 && reports.isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            Thread.sleep(200);
+            int sent = reportsSent.get();
+            Thread.sleep(500);
+            assertEquals(sent, reportsSent.get());
+            assertEquals(1, reports.size());
+
+            // Started again by the next span.
+            tracer.buildSpan("second_span").start().finish();
+            for (int i = 0; i < 100 && reports.size() < 2; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, spanCount(reports));
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void scheduledReportsStopOnceNothingIsBuffered() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            Options options = new Options.OptionsBuilder(collectorOptions(server))
+                    .withDisableReportingLoop(false)
+                    .withMaxReportingIntervalMillis(100)
+                    .build();
+            final AtomicInteger reportsSent = new AtomicInteger();
+            JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                    .withLiveReconfiguration(true)
+                    .build()) {
+                @Override
+                protected boolean sendReport(boolean explicitRequest) {
+                    reportsSent.incrementAndGet();
+                    return super.sendReport(explicitRequest);
+                }
+            };
+
+            tracer.buildSpan("first_span").start().finish();
+            for (int i = 0; i < 100 && reports.isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            Thread.sleep(200);
+            int sent = reportsSent.get();
+            Thread.sleep(500);
+            assertEquals(sent, reportsSent.get());
+            assertEquals(1, reports.size());
+
+            // Started again by the next span.
+            tracer.buildSpan("second_span").start().finish();
+            for (int i = 0; i < 100 && reports.size() < 2; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(2, spanCount(reports));
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void fixedReportScheduleDoesNotWrapSpans() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            Options options = new Options.OptionsBuilder(collectorOptions(server))
+                    .withDisableReportingLoop(false)
+                    .withMaxReportingIntervalMillis(60000)
+                    .withMaxBufferedSpans(4)
+                    .build();
+            JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                    .withSharedScheduler(true)
+                    .build());
+
+            Tracer.SpanBuilder builder = tracer.buildSpan("first_span");
+            assertFalse(builder instanceof JRESpanBuilder);
+            builder.start().finish();
+            assertTrue(reports.isEmpty());
+
+            // Reported as soon as half the report buffer is filled.
+            tracer.buildSpan("second_span").start().finish();
+            for (int i = 0; i < 100 && reports.isEmpty(); i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(1, reports.size());
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void streamingReportEncodingReportsOverHttp() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            JRETracer tracer = new JRETracer(collectorOptions(server), new JREOptions.OptionsBuilder()
+                    .withStreamingReportEncoding(true)
+                    .build());
+            assertTrue(tracer.isStreamingReportEncoding());
+
+            for (int i = 0; i < 3; i++) {
+                tracer.buildSpan("test_span").withTag("my_key", "my_value").start().finish();
+            }
+            assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+
+            assertEquals(1, reports.size());
+            assertEquals("{your_access_token}", reports.get(0).getAuth().getAccessToken());
+            assertEquals(3, reports.get(0).getSpansCount());
+            assertEquals("test_span", reports.get(0).getSpans(0).getOperationName());
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void sharedSchedulerReportsForEachTracer() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            JREOptions jreOptions = new JREOptions.OptionsBuilder()
+                    .withSharedScheduler(true)
+                    .build();
+            JRETracer first = new JRETracer(collectorOptions(server), jreOptions);
+            JRETracer second = new JRETracer(collectorOptions(server), jreOptions);
+            assertTrue(first.isStreamingReportEncoding());
+
+            first.buildSpan("first_span").start().finish();
+            assertTrue(first.flushAsync().get(5, TimeUnit.SECONDS));
+            first.close();
+
+            // Closing a tracer leaves the shared scheduler running for the others.
+            second.buildSpan("second_span").start().finish();
+            assertTrue(second.flushAsync().get(5, TimeUnit.SECONDS));
+            second.close();
+
+            assertEquals(2, reports.size());
+            assertEquals("first_span", reports.get(0).getSpans(0).getOperationName());
+            assertEquals("second_span", reports.get(1).getSpans(0).getOperationName());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void pipelinedReportsAreFlushedOnceAnswered() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            JRETracer tracer = new JRETracer(collectorOptions(server), new JREOptions.OptionsBuilder()
+                    .withMaxInflightReports(3)
+                    .build());
+            assertTrue(tracer.isStreamingReportEncoding());
+
+            for (int i = 0; i < 3; i++) {
+                tracer.buildSpan("span_" + i).start().finish();
+                assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+                // Explicit flushes return once the collector answered.
+                assertEquals(i + 1, reports.size());
+                assertEquals("span_" + i, reports.get(i).getSpans(0).getOperationName());
+            }
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void failedPipelinedReportsMakeTheCollectorUnavailable() throws Exception {
+        HttpServer server = startFailingCollector();
+        try {
+            // Scheduled reports, which are answered before the collector did.
+            Options options = new Options.OptionsBuilder(collectorOptions(server))
+                    .withDisableReportingLoop(false)
+                    .withMaxReportingIntervalMillis(100)
+                    .withMaxBufferedSpans(2)
+                    .build();
+            JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                    .withSpillDirectory(folder.getRoot().getPath())
+                    .withMaxInflightReports(2)
+                    .build());
+
+            // Spans overflowing the report buffer are spilled once a report failed.
+            for (int i = 0; i < 200 && folder.getRoot().listFiles().length == 0; i++) {
+                tracer.buildSpan("test_span").start().finish();
+                Thread.sleep(50);
+            }
+            assertEquals(1, folder.getRoot().listFiles().length);
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void compressedReportsGroupSpansByTrace() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            JRETracer tracer = new JRETracer(collectorOptions(server), new JREOptions.OptionsBuilder()
+                    .withReportCompression(ReportCompression.GZIP)
+                    .build());
+            assertTrue(tracer.isStreamingReportEncoding());
+
+            Span first = tracer.buildSpan("first").start();
+            Span second = tracer.buildSpan("second").start();
+            for (int i = 0; i < 3; i++) {
+                tracer.buildSpan("child").asChildOf(first).start().finish();
+                tracer.buildSpan("child").asChildOf(second).start().finish();
+            }
+            assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+
+            assertEquals(1, reports.size());
+            List<com.lightstep.tracer.grpc.Span> spans = reports.get(0).getSpansList();
+            assertEquals(6, spans.size());
+            for (int i = 0; i < spans.size(); i++) {
+                long traceId = spans.get(i).getSpanContext().getTraceId();
+                assertEquals(i < 3 ? spans.get(0).getSpanContext().getTraceId() : spans.get(3).getSpanContext().getTraceId(),
+                        traceId);
+            }
+            assertNotEquals(spans.get(0).getSpanContext().getTraceId(), spans.get(3).getSpanContext().getTraceId());
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void spanRecyclingReusesRecordsAndIgnoresUseAfterFinish() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            JRETracer tracer = new JRETracer(collectorOptions(server), new JREOptions.OptionsBuilder()
+                    .withSpanRecycling(true)
+                    .build());
+
+            Span parent = tracer.buildSpan("parent").start();
+            Span child = tracer.buildSpan("child").asChildOf(parent).withTag("my_key", "my_value").start();
+            child.log("my_event");
+            child.finish();
+            // The record of the child is reused by the next span.
+            child.setTag("late_key", "late_value");
+            Span next = tracer.buildSpan("next").start();
+            child.log("late_event");
+            next.finish();
+            parent.finish();
+            assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+
+            assertEquals(1, tracer.spanRecords().reusedCount());
+            assertEquals("2", tracer.status().getTag(JRETracer.SPANS_USED_AFTER_FINISH_STATUS_KEY));
+
+            List<com.lightstep.tracer.grpc.Span> spans = reports.get(0).getSpansList();
+            assertEquals(3, spans.size());
+            com.lightstep.tracer.grpc.Span childRecord = spans.get(0);
+            assertEquals("child", childRecord.getOperationName());
+            assertEquals(1, childRecord.getTagsCount());
+            assertEquals("my_value", childRecord.getTags(0).getStringValue());
+            assertEquals(1, childRecord.getLogsCount());
+            assertEquals("my_event", childRecord.getLogs(0).getFields(0).getStringValue());
+            assertEquals(parent.context().toSpanId(),
+                    Long.toHexString(childRecord.getReferences(0).getSpanContext().getSpanId()));
+            assertEquals(spans.get(2).getSpanContext().getTraceId(), childRecord.getSpanContext().getTraceId());
+
+            com.lightstep.tracer.grpc.Span nextRecord = spans.get(1);
+            assertEquals("next", nextRecord.getOperationName());
+            assertEquals(0, nextRecord.getTagsCount());
+            assertEquals(0, nextRecord.getLogsCount());
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void recycledSpansEncodeTagsLikeLightStepSpans() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            JRETracer tracer = new JRETracer(collectorOptions(server), new JREOptions.OptionsBuilder()
+                    .withSpanRecycling(true)
+                    .build());
+
+            Span span = tracer.buildSpan("tags")
+                    .withTag("builder_long", 1L)
+                    .withTag(Tags.ERROR, true)
+                    .start();
+            span.setTag("int", 2);
+            span.setTag("double", 0.5);
+            span.setTag("boolean", false);
+            span.setTag("short", (short) 3);
+            span.setTag("string", "value");
+            span.finish();
+            assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+
+            List<KeyValue> tags = reports.get(0).getSpans(0).getTagsList();
+            assertEquals(7, tags.size());
+            assertEquals(KeyValue.newBuilder().setKey("builder_long").setIntValue(1).build(), tags.get(0));
+            assertEquals(KeyValue.newBuilder().setKey("error").setBoolValue(true).build(), tags.get(1));
+            assertEquals(KeyValue.newBuilder().setKey("int").setIntValue(2).build(), tags.get(2));
+            assertEquals(KeyValue.newBuilder().setKey("double").setDoubleValue(0.5).build(), tags.get(3));
+            assertEquals(KeyValue.newBuilder().setKey("boolean").setBoolValue(false).build(), tags.get(4));
+            assertEquals(KeyValue.newBuilder().setKey("short").setStringValue("3").build(), tags.get(5));
+            assertEquals(KeyValue.newBuilder().setKey("string").setStringValue("value").build(), tags.get(6));
+            tracer.close();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void spanLimitsDropAndTruncateTagsAndLogs() throws Exception {
+        for (boolean spanRecycling : new boolean[]{false, true}) {
+            List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+            HttpServer server = startCollector(reports);
+            try {
+                JRETracer tracer = new JRETracer(collectorOptions(server), new JREOptions.OptionsBuilder()
+                        .withSpanRecycling(spanRecycling)
+                        .withMaxTagsPerSpan(2)
+                        .withMaxLogsPerSpan(1)
+                        .withMaxTagValueBytes(4 + SpanLimits.TRUNCATION_MARKER.length())
+                        .withMaxLogPayloadBytes(6 + SpanLimits.TRUNCATION_MARKER.length())
+                        .build());
+
+                Map<String, Object> fields = new LinkedHashMap<>();
+                fields.put("event", "abcd");
+                fields.put("size", 12345);
+                fields.put("payload", "efghijklmnopqrstuvwxyz");
+                Span span = tracer.buildSpan("limited").withTag("builder", "value past the limit").start();
+                span.setTag("long", "\u00e9t\u00e9 value past the limit");
+                span.setTag("dropped", true);
+                span.log(fields);
+                span.log("dropped");
+                span.finish();
+                assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+
+                com.lightstep.tracer.grpc.Span record = reports.get(0).getSpans(0);
+                Map<String, KeyValue> tags = new HashMap<>();
+                for (KeyValue tag : record.getTagsList()) {
+                    tags.put(tag.getKey(), tag);
+                }
+                assertEquals(4, tags.size());
+                assertEquals("valu" + SpanLimits.TRUNCATION_MARKER, tags.get("builder").getStringValue());
+                // Truncated without splitting the two bytes of the last character.
+                assertEquals("\u00e9t" + SpanLimits.TRUNCATION_MARKER, tags.get("long").getStringValue());
+                assertEquals(1, tags.get(SpanLimits.DROPPED_TAGS_KEY).getIntValue());
+                assertEquals(1, tags.get(SpanLimits.DROPPED_LOGS_KEY).getIntValue());
+
+                assertEquals(1, record.getLogsCount());
+                Map<String, KeyValue> logFields = new HashMap<>();
+                for (KeyValue field : record.getLogs(0).getFieldsList()) {
+                    logFields.put(field.getKey(), field);
+                }
+                assertEquals("abcd", logFields.get("event").getStringValue());
+                assertEquals(12345, logFields.get("size").getIntValue());
+                assertEquals("ef" + SpanLimits.TRUNCATION_MARKER, logFields.get("payload").getStringValue());
+
+                Status status = tracer.status();
+                assertEquals("1", status.getTag(JRETracer.DROPPED_SPAN_TAGS_STATUS_KEY));
+                assertEquals("1", status.getTag(JRETracer.DROPPED_SPAN_LOGS_STATUS_KEY));
+                assertEquals("2", status.getTag(JRETracer.TRUNCATED_TAG_VALUES_STATUS_KEY));
+                assertEquals("1", status.getTag(JRETracer.TRUNCATED_LOG_PAYLOADS_STATUS_KEY));
+                tracer.close();
+            } finally {
+                server.stop(0);
+            }
+        }
+    }
+
+    @Test
+    public void spanMetricsCountSampledAndUnsampledSpans() throws Exception {
+        Options options = new Options.OptionsBuilder()
+                .withAccessToken("{your_access_token}")
+                .withDisableReportingLoop(true)
+                .build();
+        for (double probability : new double[]{0, 1}) {
+            JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                    .withSampler(new ProbabilisticSampler(probability))
+                    .withSpanMetrics(true)
+                    .withSpanMetricsMaxOperations(2)
+                    .build());
+
+            tracer.buildSpan("first").start().finish();
+            tracer.buildSpan("first").withTag(Tags.ERROR, true).start().finish();
+            Span span = tracer.buildSpan("second").start();
+            Tags.ERROR.set(span, true);
+            span.finish();
+            span.finish();
+            tracer.buildSpan("third").start().finish();
+
+            SpanMetrics spanMetrics = tracer.spanMetrics();
+            assertEquals(2, spanMetrics.getRequestCount("first"));
+            assertEquals(1, spanMetrics.getErrorCount("first"));
+            assertEquals(1, spanMetrics.getRequestCount("second"));
+            assertEquals(1, spanMetrics.getErrorCount("second"));
+            assertEquals(0, spanMetrics.getRequestCount("third"));
+            assertEquals(1, spanMetrics.getRequestCount(SpanMetrics.OTHER_OPERATION));
+            tracer.close();
+        }
+
+        JRETracer tracer = new JRETracer(new Options.OptionsBuilder(options).withDisableMetricsReporting(true).build(),
+                new JREOptions.OptionsBuilder().withSpanMetrics(true).build());
+        assertNull(tracer.spanMetrics());
+        tracer.close();
+    }
+
+    @Test
+    public void spanMetricsAreSentByTheMetricsThreadOfTheTracer() throws Exception {
+        JRETracer tracer = new JRETracer(new Options.OptionsBuilder()
+                .withAccessToken("{your_access_token}")
+                .withDisableReportingLoop(true)
+                .build(), new JREOptions.OptionsBuilder()
+                .withSpanMetrics(true)
+                .build());
+        int metricsThreads = metricsThreadCount();
+
+        // Started with the first span, like the metrics thread of the shared tracer.
+        tracer.buildSpan("first").start().finish();
+        tracer.buildSpan("second").start().finish();
+        assertEquals(metricsThreads + 1, metricsThreadCount());
+
+        tracer.close();
+        for (int i = 0; i < 100 && metricsThreadCount() > metricsThreads; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(metricsThreads, metricsThreadCount());
+    }
+
+    private static int metricsThreadCount() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("lightstep-metrics".equals(thread.getName()) && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void mxBeanExposesReportStatistics() throws Exception {
+        List<ReportRequest> reports = new CopyOnWriteArrayList<>();
+        HttpServer server = startCollector(reports);
+        try {
+            JRETracer tracer = new JRETracer(collectorOptions(server), new JREOptions.OptionsBuilder()
+                    .withJmx(true)
+                    .build());
+            ObjectName name = tracer.mxBeanName();
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            assertTrue(mBeanServer.isRegistered(name));
+
+            long nowMicros = System.currentTimeMillis() * 1000;
+            for (int i = 0; i < 3; i++) {
+                tracer.buildSpan("test_span")
+                        .withStartTimestamp(nowMicros - 2000000)
+                        .start()
+                        .finish(nowMicros - 1000000);
+            }
+            assertTrue(tracer.flushAsync().get(5, TimeUnit.SECONDS));
+
+            assertEquals(1, reports.size());
+            assertEquals(3L, mBeanServer.getAttribute(name, "SpansReported"));
+            assertEquals(1L, mBeanServer.getAttribute(name, "ReportsSent"));
+            assertEquals(0L, mBeanServer.getAttribute(name, "ReportsFailed"));
+            assertEquals((long) reports.get(0).getSerializedSize(), mBeanServer.getAttribute(name, "ReportBytes"));
+            assertTrue((Long) mBeanServer.getAttribute(name, "ReportLatencyMicrosMax") > 0);
+            assertTrue((Long) mBeanServer.getAttribute(name, "FlushTimeMicrosMax") > 0);
+            assertTrue((Long) mBeanServer.getAttribute(name, "LastReportAgeMillis") >= 1000);
+            assertTrue((Long) mBeanServer.getAttribute(name, "ReportAgeMillisP50") >= 1000);
+
+            mBeanServer.invoke(name, "resetHistograms", null, null);
+            assertEquals(0L, mBeanServer.getAttribute(name, "ReportAgeMillisMax"));
+            assertEquals(3L, mBeanServer.getAttribute(name, "SpansReported"));
+
+            tracer.close();
+            assertFalse(mBeanServer.isRegistered(name));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void reconfigureAppliesDynamicOptions() throws Exception {
+        Options options = new Options.OptionsBuilder()
+                .withAccessToken("{your_access_token}")
+                .withMaxBufferedSpans(10)
+                .withMaxReportingIntervalMillis(60000)
+                .build();
+        // Reports wait for the spans to be counted, which they would count again from 0.
+        final CountDownLatch reporting = new CountDownLatch(1);
+        final CountDownLatch counted = new CountDownLatch(1);
+        JRETracer tracer = new JRETracer(options, new JREOptions.OptionsBuilder()
+                .withLiveReconfiguration(true)
+                .build()) {
+            @Override
+            protected boolean sendReport(boolean explicitRequest) {
+                reporting.countDown();
+                try {
+                    counted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+        };
+        assertEquals(10, (int) tracer.getDynamicOptions().getMaxBufferedSpans());
+        assertNull(tracer.getDynamicOptions().getSampler());
+
+        tracer.reconfigure(new DynamicOptions.OptionsBuilder()
+                .withMaxBufferedSpans(3)
+                .withSampler(new ProbabilisticSampler(0))
+                .build());
+        assertEquals(3, (int) tracer.getDynamicOptions().getMaxBufferedSpans());
+        assertEquals(60000, (long) tracer.getDynamicOptions().getMaxReportingIntervalMillis());
+        assertTrue(tracer.buildSpan("unsampled").start().context() instanceof UnsampledSpanContext);
+
+        tracer.reconfigure(new DynamicOptions.OptionsBuilder().withSampler(null).build());
+        assertEquals(3, (int) tracer.getDynamicOptions().getMaxBufferedSpans());
+        tracer.flushAsync();
+        assertTrue(reporting.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            tracer.buildSpan("test_span").start().finish();
+        }
+        assertEquals(2, tracer.status().getSpansDropped());
+        counted.countDown();
+
+        // The report buffer cannot grow.
+        tracer.reconfigure(new DynamicOptions.OptionsBuilder().withMaxBufferedSpans(100).build());
+        assertEquals(10, (int) tracer.getDynamicOptions().getMaxBufferedSpans());
+        tracer.close();
+
+        tracer = new JRETracer(options);
+        try {
+            tracer.reconfigure(new DynamicOptions.OptionsBuilder().withVerbosity(4).build());
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+        tracer.close();
+    }
+
+    /**
+     * Starts a collector on the loopback interface adding the reports it receives to
+     * {@code reports}.
+     */
+    private static HttpServer startCollector(final List<ReportRequest> reports) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream body = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    body = new GZIPInputStream(body);
+                }
+                reports.add(ReportRequest.parseFrom(body));
+
+                long millis = System.currentTimeMillis();
+                Timestamp now = Timestamp.newBuilder().setSeconds(millis / 1000).build();
+                byte[] response = ReportResponse.newBuilder()
+                        .setReceiveTimestamp(now)
+                        .setTransmitTimestamp(now)
+                        .build()
+                        .toByteArray();
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Starts a collector on the loopback interface failing every report.
+     */
+    private static HttpServer startFailingCollector() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private void awaitSegmentFiles(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && folder.getRoot().listFiles().length != count; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(count, folder.getRoot().listFiles().length);
+    }
+
+    private static int spanCount(List<ReportRequest> reports) {
+        int spans = 0;
+        for (ReportRequest report : reports) {
+            spans += report.getSpansCount();
+        }
+        return spans;
+    }
+
+    private static Options collectorOptions(HttpServer server) throws Exception {
+        return new Options.OptionsBuilder()
+                .withAccessToken("{your_access_token}")
+                .withCollectorClient(Options.CollectorClient.HTTP)
+                .withCollectorProtocol("http")
+                .withCollectorHost(server.getAddress().getHostString())
+                .withCollectorPort(server.getAddress().getPort())
+                .withClockSkewCorrection(false)
+                .withDisableReportingLoop(true)
+                .withDisableMetricsReporting(true)
+                .build();
+    }
+
     private void assertSpanHasTag(Span span, String key, String value) {
+        if (span instanceof DelegatingSpan) {
+            span = ((DelegatingSpan) span).getDelegate();
+        }
         com.lightstep.tracer.shared.Span lsSpan = (com.lightstep.tracer.shared.Span) span;
         Builder record = lsSpan.getGrpcSpan();
 
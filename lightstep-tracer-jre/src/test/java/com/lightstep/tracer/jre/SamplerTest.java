@@ -0,0 +1,63 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.shared.SpanContext;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SamplerTest {
+
+    @Test
+    public void probabilisticSamplerIsDeterministic() {
+        Sampler first = new ProbabilisticSampler(0.5);
+        Sampler second = new ProbabilisticSampler(0.5);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long traceId = random.nextLong();
+            assertEquals(first.isSampled(traceId, "root", null),
+                    second.isSampled(traceId, "child", new SpanContext(traceId, 1)));
+        }
+    }
+
+    @Test
+    public void probabilisticSamplerSamplesFraction() {
+        Sampler sampler = new ProbabilisticSampler(0.25);
+
+        int sampled = 0;
+        // Sequential IDs, to check that they are spread by the hash.
+        for (long traceId = 0; traceId < 100000; traceId++) {
+            if (sampler.isSampled(traceId, "root", null)) {
+                sampled++;
+            }
+        }
+        assertEquals(25000, sampled, 1000);
+
+        assertFalse(new ProbabilisticSampler(0).isSampled(1, "root", null));
+        assertTrue(new ProbabilisticSampler(1).isSampled(1, "root", null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void probabilisticSamplerRejectsInvalidProbability() {
+        new ProbabilisticSampler(1.5);
+    }
+
+    @Test
+    public void rateLimitingSamplerLimitsRoots() {
+        Sampler sampler = new RateLimitingSampler(10);
+
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (sampler.isSampled(i, "root", null)) {
+                sampled++;
+            }
+        }
+        // Allows a burst of one second's worth of traces.
+        assertEquals(10, sampled);
+
+        // Spans with a sampled parent are not limited.
+        assertTrue(sampler.isSampled(1, "child", new SpanContext(1, 1)));
+    }
+}
@@ -0,0 +1,27 @@
+package com.lightstep.tracer.jre;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpanLimitsTest {
+    private static final int MARKER_BYTES = SpanLimits.TRUNCATION_MARKER.length();
+
+    @Test
+    public void truncatedValuesKeepTheMarkerWithinTheLimit() {
+        String truncated = SpanLimits.truncate("abcdefgh", MARKER_BYTES + 3);
+        assertEquals("abc" + SpanLimits.TRUNCATION_MARKER, truncated);
+        assertEquals(MARKER_BYTES + 3, SpanLimits.utf8Length(truncated, Long.MAX_VALUE));
+
+        // Without splitting the two bytes of the second character.
+        assertEquals("a" + SpanLimits.TRUNCATION_MARKER, SpanLimits.truncate("aéb", MARKER_BYTES + 2));
+        assertEquals(SpanLimits.TRUNCATION_MARKER, SpanLimits.truncate("abcdefgh", MARKER_BYTES));
+    }
+
+    @Test
+    public void valuesAreCutWithoutTheMarkerUnderItsSize() {
+        assertEquals("abc", SpanLimits.truncate("abcdefgh", 3));
+        assertEquals("", SpanLimits.truncate("abcdefgh", 0));
+        assertEquals("a", SpanLimits.truncate("aéb", 2));
+    }
+}
@@ -0,0 +1,145 @@
+package com.lightstep.tracer.jre;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SpanRingBufferTest {
+
+    @Test
+    public void pollReturnsElementsInOrder() {
+        SpanRingBuffer<Integer> ring = new SpanRingBuffer<>(3, OverflowPolicy.DROP_NEWEST, 0, null);
+        for (int lap = 0; lap < 3; lap++) {
+            assertTrue(ring.add(1));
+            assertTrue(ring.add(2));
+            assertTrue(ring.add(3));
+            assertEquals(3, ring.size());
+
+            assertEquals(Integer.valueOf(1), ring.poll());
+            assertEquals(Integer.valueOf(2), ring.poll());
+            assertEquals(Integer.valueOf(3), ring.poll());
+            assertNull(ring.poll());
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    public void capacityIsAtLeastTwo() {
+        SpanRingBuffer<Integer> ring = new SpanRingBuffer<>(1, OverflowPolicy.DROP_NEWEST, 0, null);
+        assertEquals(2, ring.capacity());
+        assertTrue(ring.add(1));
+        assertTrue(ring.add(2));
+        assertFalse(ring.add(3));
+    }
+
+    @Test
+    public void dropNewest() {
+        SpanRingBuffer<Integer> ring = new SpanRingBuffer<>(2, OverflowPolicy.DROP_NEWEST, 0, null);
+        assertTrue(ring.add(1));
+        assertTrue(ring.add(2));
+        assertFalse(ring.add(3));
+
+        assertEquals(1, ring.droppedCount());
+        assertEquals(Integer.valueOf(1), ring.poll());
+        assertEquals(Integer.valueOf(2), ring.poll());
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void dropOldest() {
+        SpanRingBuffer<Integer> ring = new SpanRingBuffer<>(2, OverflowPolicy.DROP_OLDEST, 0, null);
+        assertTrue(ring.add(1));
+        assertTrue(ring.add(2));
+        assertTrue(ring.add(3));
+
+        assertEquals(1, ring.droppedCount());
+        assertEquals(Integer.valueOf(2), ring.poll());
+        assertEquals(Integer.valueOf(3), ring.poll());
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void blockDropsAfterTimeout() {
+        final int[] notified = new int[1];
+        SpanRingBuffer<Integer> ring = new SpanRingBuffer<>(2, OverflowPolicy.BLOCK,
+                TimeUnit.MILLISECONDS.toNanos(20), new Runnable() {
+                    @Override
+                    public void run() {
+                        notified[0]++;
+                    }
+                });
+        assertTrue(ring.add(1));
+        assertTrue(ring.add(2));
+
+        long start = System.nanoTime();
+        assertFalse(ring.add(3));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(1, ring.droppedCount());
+        assertTrue(notified[0] > 0);
+    }
+
+    @Test
+    public void blockWaitsForConsumer() throws Exception {
+        final SpanRingBuffer<Integer> ring = new SpanRingBuffer<>(2, OverflowPolicy.BLOCK,
+                TimeUnit.SECONDS.toNanos(5), null);
+        assertTrue(ring.add(1));
+        assertTrue(ring.add(2));
+
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ring.poll();
+            }
+        };
+        consumer.start();
+
+        assertTrue(ring.add(3));
+        consumer.join();
+        assertEquals(0, ring.droppedCount());
+        assertEquals(Integer.valueOf(2), ring.poll());
+        assertEquals(Integer.valueOf(3), ring.poll());
+    }
+
+    @Test
+    public void concurrentProducers() throws Exception {
+        final int producers = 8;
+        final int perProducer = 10000;
+        final SpanRingBuffer<Integer> ring = new SpanRingBuffer<>(64, OverflowPolicy.BLOCK,
+                TimeUnit.SECONDS.toNanos(10), null);
+
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            threads[p] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        ring.add(base + i);
+                    }
+                }
+            };
+            threads[p].start();
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        while (seen.size() < producers * perProducer) {
+            Integer value = ring.poll();
+            if (value != null) {
+                assertTrue("Duplicate element " + value, seen.add(value));
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNull(ring.poll());
+        assertEquals(0, ring.droppedCount());
+    }
+}
@@ -0,0 +1,124 @@
+package com.lightstep.tracer.jre;
+
+import com.lightstep.tracer.grpc.Span;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpillQueueTest {
+    private static final int SEGMENT_BYTES = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readReturnsSpansInOrder() throws Exception {
+        SpillQueue queue = new SpillQueue(folder.getRoot(), 64 * SEGMENT_BYTES, SEGMENT_BYTES);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.append(span(i)));
+        }
+        assertTrue(segmentFiles().length > 1);
+
+        List<Span> first = queue.read(60);
+        List<Span> second = queue.read(60);
+        assertEquals(60, first.size());
+        assertEquals(40, second.size());
+        for (int i = 0; i < 100; i++) {
+            Span span = i < 60 ? first.get(i) : second.get(i - 60);
+            assertEquals("span-" + i, span.getOperationName());
+            assertEquals(i, span.getDurationMicros());
+        }
+        assertTrue(queue.read(60).isEmpty());
+    }
+
+    @Test
+    public void acknowledgeDeletesReadSegments() throws Exception {
+        SpillQueue queue = new SpillQueue(folder.getRoot(), 64 * SEGMENT_BYTES, SEGMENT_BYTES);
+        for (int i = 0; i < 100; i++) {
+            queue.append(span(i));
+        }
+        int segments = segmentFiles().length;
+
+        // Fully reads the first segment, which holds about 70 spans.
+        queue.read(80);
+        queue.acknowledge(80);
+        assertEquals(segments - 1, segmentFiles().length);
+        assertFalse(queue.isEmpty());
+
+        queue.read(20);
+        queue.acknowledge(20);
+        assertEquals(0, segmentFiles().length);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void unacknowledgedSpansAreReadAfterReopening() throws Exception {
+        SpillQueue queue = new SpillQueue(folder.getRoot(), 64 * SEGMENT_BYTES, SEGMENT_BYTES);
+        for (int i = 0; i < 10; i++) {
+            queue.append(span(i));
+        }
+        queue.read(4);
+        queue.acknowledge(4);
+        // Read but not acknowledged.
+        queue.read(2);
+        queue.close();
+
+        SpillQueue reopened = new SpillQueue(folder.getRoot(), 64 * SEGMENT_BYTES, SEGMENT_BYTES);
+        List<Span> spans = reopened.read(100);
+        assertEquals(6, spans.size());
+        assertEquals("span-4", spans.get(0).getOperationName());
+
+        // New spans go to a new segment, after the existing ones.
+        reopened.append(span(10));
+        assertEquals("span-10", reopened.read(100).get(0).getOperationName());
+    }
+
+    @Test
+    public void rewindRereadsUnacknowledgedSpans() throws Exception {
+        SpillQueue queue = new SpillQueue(folder.getRoot(), 64 * SEGMENT_BYTES, SEGMENT_BYTES);
+        for (int i = 0; i < 100; i++) {
+            queue.append(span(i));
+        }
+        queue.read(90);
+        queue.acknowledge(30);
+
+        // The spans read after the first 20 not acknowledged are read again.
+        queue.rewind(20);
+        List<Span> spans = queue.read(100);
+        assertEquals(50, spans.size());
+        assertEquals("span-50", spans.get(0).getOperationName());
+
+        queue.acknowledge(70);
+        assertTrue(queue.isEmpty());
+        assertEquals(0, segmentFiles().length);
+    }
+
+    @Test
+    public void appendDropsWhenFull() throws Exception {
+        SpillQueue queue = new SpillQueue(folder.getRoot(), 2 * SEGMENT_BYTES, SEGMENT_BYTES);
+        int appended = 0;
+        while (queue.append(span(appended))) {
+            appended++;
+        }
+
+        assertEquals(1, queue.droppedCount());
+        assertEquals(2, segmentFiles().length);
+        assertEquals(appended, queue.read(Integer.MAX_VALUE).size());
+    }
+
+    private File[] segmentFiles() {
+        return folder.getRoot().listFiles();
+    }
+
+    private static Span span(int i) {
+        return Span.newBuilder()
+                .setOperationName("span-" + i)
+                .setDurationMicros(i)
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.lightstep.tracer.metrics;
+
+import com.lightstep.tracer.grpc.IngestRequest;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.MetricKind;
+import com.lightstep.tracer.grpc.MetricPoint;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SpanMetricsTest {
+
+    @Test
+    public void bucketsCoverDurationsWithinOneEighth() {
+        for (long micros = 0; micros < 1 << 20; micros += 1 + micros / 64) {
+            int bucket = LogLinearHistogram.bucket(micros);
+            assertTrue(LogLinearHistogram.lowerBound(bucket) <= micros);
+            assertTrue(micros < LogLinearHistogram.lowerBound(bucket + 1));
+            assertTrue(LogLinearHistogram.lowerBound(bucket + 1) - LogLinearHistogram.lowerBound(bucket)
+                    <= Math.max(1, micros / 8));
+        }
+        assertEquals(LogLinearHistogram.bucket(Long.MAX_VALUE), LogLinearHistogram.bucket(1L << 40));
+    }
+
+    @Test
+    public void addPointsSendsRequestsErrorsAndPercentilesPerOperation() {
+        SpanMetrics spanMetrics = new SpanMetrics(10);
+        for (int i = 1; i <= 100; i++) {
+            spanMetrics.record("op", i * 1000, i % 10 == 0);
+        }
+        spanMetrics.record("other", 5, false);
+
+        List<KeyValue> labels = Collections.singletonList(
+                KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("test").build());
+        IngestRequest.Builder request = IngestRequest.newBuilder();
+        spanMetrics.addPoints(request, 1000, 30, labels);
+
+        Map<String, MetricPoint> points = new HashMap<>();
+        for (MetricPoint point : request.getPointsList()) {
+            assertEquals(1000, point.getStart().getSeconds());
+            assertEquals(30, point.getDuration().getSeconds());
+            assertEquals(labels.get(0), point.getLabels(0));
+            String key = point.getMetricName() + "/" + point.getLabels(1).getStringValue();
+            if (point.getLabelsCount() > 2) {
+                key += "/" + point.getLabels(2).getStringValue();
+            }
+            points.put(key, point);
+        }
+        assertEquals(10, points.size());
+        assertEquals(MetricKind.COUNTER, points.get("span.requests/op").getKind());
+        assertEquals(100, points.get("span.requests/op").getDoubleValue(), 0);
+        assertEquals(10, points.get("span.errors/op").getDoubleValue(), 0);
+        assertEquals(1, points.get("span.requests/other").getDoubleValue(), 0);
+        assertEquals(5, points.get("span.duration_micros/other/0.5").getDoubleValue(), 0);
+
+        MetricPoint median = points.get("span.duration_micros/op/0.5");
+        assertEquals(MetricKind.GAUGE, median.getKind());
+        assertEquals(50000, median.getDoubleValue(), 50000 / 8.0);
+        assertEquals(99000, points.get("span.duration_micros/op/0.99").getDoubleValue(), 99000 / 8.0);
+
+        // Reset once sent.
+        assertEquals(0, spanMetrics.getRequestCount("op"));
+        request = IngestRequest.newBuilder();
+        spanMetrics.addPoints(request, 1030, 30, labels);
+        assertEquals(0, request.getPointsCount());
+    }
+
+    @Test
+    public void spansWithoutOperationNameAreCountedUnderTheEmptyName() {
+        SpanMetrics spanMetrics = new SpanMetrics(10);
+        spanMetrics.record(null, 1, false);
+        spanMetrics.record(null, 1, true);
+
+        assertEquals(2, spanMetrics.getRequestCount(""));
+        assertEquals(1, spanMetrics.getErrorCount(""));
+    }
+
+    @Test
+    public void operationsPastTheLimitAreCountedTogether() {
+        SpanMetrics spanMetrics = new SpanMetrics(2);
+        spanMetrics.record("first", 1, false);
+        spanMetrics.record("second", 1, false);
+        spanMetrics.record("third", 1, true);
+        spanMetrics.record("fourth", 1, false);
+        spanMetrics.record("first", 1, false);
+
+        assertEquals(2, spanMetrics.getRequestCount("first"));
+        assertEquals(0, spanMetrics.getRequestCount("third"));
+        assertEquals(2, spanMetrics.getRequestCount(SpanMetrics.OTHER_OPERATION));
+        assertEquals(1, spanMetrics.getErrorCount(SpanMetrics.OTHER_OPERATION));
+    }
+}
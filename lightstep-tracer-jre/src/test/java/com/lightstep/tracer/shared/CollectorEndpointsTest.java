@@ -0,0 +1,69 @@
+package com.lightstep.tracer.shared;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CollectorEndpointsTest {
+
+    @Test
+    public void reportsGoToTheFasterEndpoint() throws Exception {
+        CollectorEndpoints endpoints = endpoints(2);
+        CollectorEndpoints.Endpoint fast = endpoints.endpoints().get(0);
+        CollectorEndpoints.Endpoint slow = endpoints.endpoints().get(1);
+        fast.reportStarted();
+        endpoints.reportEnded(fast, TimeUnit.MILLISECONDS.toNanos(10), true);
+        slow.reportStarted();
+        endpoints.reportEnded(slow, TimeUnit.MILLISECONDS.toNanos(500), true);
+
+        for (int i = 0; i < 10; i++) {
+            CollectorEndpoints.Endpoint endpoint = endpoints.pick();
+            assertSame(fast, endpoint);
+            endpoints.reportEnded(endpoint, TimeUnit.MILLISECONDS.toNanos(10), true);
+        }
+    }
+
+    @Test
+    public void failingEndpointsAreEjected() throws Exception {
+        CollectorEndpoints endpoints = endpoints(3);
+        CollectorEndpoints.Endpoint failing = endpoints.endpoints().get(0);
+        for (int i = 0; i < CollectorEndpoints.EJECTION_FAILURES; i++) {
+            assertTrue(failing.isAvailable(System.nanoTime()));
+            failing.reportStarted();
+            endpoints.reportEnded(failing, 0, false);
+        }
+        assertFalse(failing.isAvailable(System.nanoTime()));
+
+        for (int i = 0; i < 100; i++) {
+            CollectorEndpoints.Endpoint endpoint = endpoints.pick();
+            assertNotSame(failing, endpoint);
+            endpoints.reportEnded(endpoint, 0, true);
+        }
+    }
+
+    @Test
+    public void reportsFailOverWhenAllEndpointsAreEjected() throws Exception {
+        CollectorEndpoints endpoints = endpoints(2);
+        for (CollectorEndpoints.Endpoint endpoint : endpoints.endpoints()) {
+            for (int i = 0; i < CollectorEndpoints.EJECTION_FAILURES; i++) {
+                endpoint.reportStarted();
+                endpoints.reportEnded(endpoint, 0, false);
+            }
+        }
+
+        // The first one ejected is the first one back.
+        assertSame(endpoints.endpoints().get(0), endpoints.pick());
+    }
+
+    private static CollectorEndpoints endpoints(int count) throws Exception {
+        URL[] urls = new URL[count];
+        for (int i = 0; i < count; i++) {
+            urls[i] = new URL("http", "collector-" + i, 8181, "/api/v2/reports");
+        }
+        return new CollectorEndpoints(Arrays.asList(urls), 30000);
+    }
+}
@@ -0,0 +1,106 @@
+package com.lightstep.tracer.shared;
+
+import io.opentracing.propagation.TextMapAdapter;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HeaderCodecTest {
+
+    @Test
+    public void injectsTheHeadersOfTheSharedPropagators() {
+        SpanContext context = new SpanContext(0x1234abcdL, -2L).withBaggageItem("user", "alice");
+        assertEquals(inject(Propagator.HTTP_HEADERS, context), inject(HeaderCodec.LIGHTSTEP, context));
+        assertEquals(inject(new B3Propagator(), context), inject(HeaderCodec.B3, context));
+    }
+
+    @Test
+    public void extractsTheContextsOfTheSharedPropagators() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("OT-Tracer-TraceId", "00000000000000000000001234ABCDEF");
+        headers.put("ot-tracer-spanid", "fffffffffffffffe");
+        headers.put("Ot-Baggage-User", "alice");
+        headers.put("Accept", "*/*");
+        assertSameContext(Propagator.HTTP_HEADERS.extract(new TextMapAdapter(headers)),
+                HeaderCodec.LIGHTSTEP.extract(new TextMapAdapter(headers)));
+
+        headers.clear();
+        headers.put("x-b3-traceid", "463ac35c9f6413ad48485a3953bb6124");
+        headers.put("X-B3-SpanId", "a2fb4a1d1a96d312");
+        headers.put("X-B3-Sampled", "1");
+        assertSameContext(new B3Propagator().extract(new TextMapAdapter(headers)),
+                HeaderCodec.B3.extract(new TextMapAdapter(headers)));
+    }
+
+    @Test
+    public void invalidOrMissingIdsAreNotExtracted() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("ot-tracer-traceid", "abc");
+        assertNull(HeaderCodec.LIGHTSTEP.extract(new TextMapAdapter(headers)));
+
+        headers.put("ot-tracer-spanid", "xyz");
+        assertNull(HeaderCodec.LIGHTSTEP.extract(new TextMapAdapter(headers)));
+
+        headers.put("ot-tracer-spanid", "");
+        assertNull(HeaderCodec.LIGHTSTEP.extract(new TextMapAdapter(headers)));
+
+        headers.put("ot-tracer-spanid", "-1");
+        assertNull(HeaderCodec.LIGHTSTEP.extract(new TextMapAdapter(headers)));
+    }
+
+    @Test
+    public void unsampledContextsArePropagated() {
+        SpanContext context = new SpanContext(0x1234abcdL, 42L);
+        Map<String, String> headers = new HashMap<>();
+        HeaderCodec.B3.inject(context, new TextMapAdapter(headers), false);
+        assertEquals("0", headers.get("X-B3-Sampled"));
+
+        final SpanContext unsampledContext = new SpanContext(1L, 2L);
+        HeaderCodec.UnsampledContexts unsampled = new HeaderCodec.UnsampledContexts() {
+            @Override
+            public SpanContext newContext(long traceId, long spanId, Map<String, String> baggage) {
+                assertEquals(0x1234abcdL, traceId);
+                assertEquals(42L, spanId);
+                return unsampledContext;
+            }
+        };
+        assertSame(unsampledContext, HeaderCodec.B3.extract(new TextMapAdapter(headers), unsampled));
+        assertNotSame(unsampledContext, HeaderCodec.B3.extract(new TextMapAdapter(headers)));
+
+        headers.clear();
+        HeaderCodec.LIGHTSTEP.inject(context, new TextMapAdapter(headers), false);
+        assertEquals("false", headers.get("ot-tracer-sampled"));
+        assertSame(unsampledContext, HeaderCodec.LIGHTSTEP.extract(new TextMapAdapter(headers), unsampled));
+
+        headers.put("ot-tracer-sampled", "true");
+        assertNotSame(unsampledContext, HeaderCodec.LIGHTSTEP.extract(new TextMapAdapter(headers), unsampled));
+    }
+
+    @Test
+    public void codecsReplaceOnlyTheSharedPropagators() {
+        assertSame(HeaderCodec.LIGHTSTEP, HeaderCodec.forPropagator(Propagator.HTTP_HEADERS));
+        assertSame(HeaderCodec.LIGHTSTEP, HeaderCodec.forPropagator(Propagator.TEXT_MAP));
+        assertSame(HeaderCodec.B3, HeaderCodec.forPropagator(new B3Propagator()));
+        assertNull(HeaderCodec.forPropagator(Propagator.BINARY));
+        assertNull(HeaderCodec.forPropagator(new B3Propagator() {
+        }));
+    }
+
+    private static Map<String, String> inject(Propagator propagator, SpanContext context) {
+        Map<String, String> headers = new HashMap<>();
+        propagator.inject(context, new TextMapAdapter(headers));
+        return headers;
+    }
+
+    private static void assertSameContext(SpanContext expected, SpanContext actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getTraceId(), actual.getTraceId());
+        assertEquals(expected.getSpanId(), actual.getSpanId());
+        assertEquals(expected.getForeignTraceId(), actual.getForeignTraceId());
+        assertEquals(expected.getBaggage(), actual.getBaggage());
+        assertEquals(expected.toTraceId(), actual.toTraceId());
+    }
+}
@@ -0,0 +1,71 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.lightstep.tracer.grpc.Span;
+import com.lightstep.tracer.jre.JRETracer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PipelinedCollectorClientTest {
+    private JRETracer tracer;
+
+    @Before
+    public void before() throws Exception {
+        tracer = new JRETracer(new Options.OptionsBuilder()
+                .withAccessToken("{your_access_token}")
+                .withDisableReportingLoop(true)
+                .withDisableMetricsReporting(true)
+                .build());
+    }
+
+    @After
+    public void after() {
+        tracer.close();
+    }
+
+    @Test
+    public void failedReportsAreReturnedToTheTracer() {
+        FailingClient failing = new FailingClient();
+        PipelinedCollectorClient client = new PipelinedCollectorClient(tracer, failing, 2);
+        ReportRequest request = ReportRequest.newBuilder()
+                .addSpans(Span.newBuilder().setOperationName("test_span"))
+                .build();
+
+        // Answered before the collector did.
+        assertNotNull(client.report(request));
+        client.awaitReports(5000);
+        assertEquals(1, failing.reports.get());
+
+        // The next report fails in its place, without being sent, and only once.
+        assertNull(client.report(request));
+        assertEquals(1, failing.reports.get());
+        assertNotNull(client.report(request));
+        client.awaitReports(5000);
+        assertEquals(2, failing.reports.get());
+        client.shutdown();
+    }
+
+    private static final class FailingClient extends CollectorClient {
+        final AtomicInteger reports = new AtomicInteger();
+
+        @Override
+        void reconnect() {
+        }
+
+        @Override
+        void shutdown() {
+        }
+
+        @Override
+        ReportResponse report(ReportRequest request) {
+            reports.incrementAndGet();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.lightstep.tracer.shared;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+import com.lightstep.tracer.grpc.Auth;
+import com.lightstep.tracer.grpc.InternalMetrics;
+import com.lightstep.tracer.grpc.KeyValue;
+import com.lightstep.tracer.grpc.MetricsSample;
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.Reporter;
+import com.lightstep.tracer.grpc.Span;
+import com.lightstep.tracer.grpc.SpanContext;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+public class ReportEncoderTest {
+
+    @Test
+    public void writesSameBytesAsToByteArray() throws Exception {
+        ReportRequest request = request(100, 16);
+        assertArrayEquals(request.toByteArray(), encode(request, new ReportBufferPool(1024, false)));
+        assertArrayEquals(request.toByteArray(), encode(request, new ReportBufferPool(1024, true)));
+    }
+
+    @Test
+    public void writesFieldsLargerThanBuffer() throws Exception {
+        ReportRequest request = request(3, 4096).toBuilder()
+                .setUnknownFields(UnknownFieldSet.newBuilder()
+                        .addField(100, UnknownFieldSet.Field.newBuilder()
+                                .addLengthDelimited(ByteString.copyFrom(new byte[2048]))
+                                .build())
+                        .build())
+                .build();
+        assertArrayEquals(request.toByteArray(), encode(request, new ReportBufferPool(1024, false)));
+    }
+
+    @Test
+    public void buffersAreReused() throws Exception {
+        ReportBufferPool pool = new ReportBufferPool(1024, false);
+        ByteBuffer buffer = pool.acquire();
+        pool.release(buffer);
+
+        encode(request(10, 16), pool);
+        assertSame(buffer, pool.acquire());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void gzipCompressesSpansGroupedByTrace() throws Exception {
+        ReportRequest request = request(30, 16);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportEncoder.write(request, Channels.newChannel(out), new ReportBufferPool(1024, false),
+                ReportCompression.GZIP, 9);
+        assertTrue(out.size() < request.getSerializedSize());
+
+        ReportRequest decoded = ReportRequest.parseFrom(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals(request.toBuilder().clearSpans().build(), decoded.toBuilder().clearSpans().build());
+        assertEquals(request.getSpansCount(), decoded.getSpansCount());
+        for (int i = 0; i < decoded.getSpansCount(); i++) {
+            // Traces 1, 2 and 3, each keeping the order of its spans.
+            Span span = decoded.getSpans(i);
+            assertEquals(i / 10 + 1, span.getSpanContext().getTraceId());
+            assertEquals(request.getSpans((i % 10) * 3 + i / 10), span);
+        }
+    }
+
+    @Test
+    public void reporterIsEncodedOnce() throws Exception {
+        Reporter.Builder reporter = Reporter.newBuilder().setReporterId(42)
+                .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("test"));
+        ReportRequest first = request(10, 16).toBuilder().setReporter(reporter).build();
+        ReportRequest second = request(20, 16).toBuilder().setReporter(reporter).build();
+
+        EncodedReporter encodedReporter = new EncodedReporter();
+        assertArrayEquals(first.toByteArray(), encode(first, encodedReporter));
+        ByteString encoded = encodedReporter.encode(first.getReporter());
+        assertArrayEquals(second.toByteArray(), encode(second, encodedReporter));
+        assertSame(encoded, encodedReporter.encode(second.getReporter()));
+
+        // Encoded again once the tags change.
+        reporter.addTags(KeyValue.newBuilder().setKey("lightstep.hostname").setStringValue("host"));
+        ReportRequest third = request(5, 16).toBuilder().setReporter(reporter).build();
+        assertArrayEquals(third.toByteArray(), encode(third, encodedReporter));
+    }
+
+    private static byte[] encode(ReportRequest request, EncodedReporter encodedReporter) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportEncoder.write(request, Channels.newChannel(out), new ReportBufferPool(1024, false),
+                ReportCompression.NONE, ReportCompression.DEFAULT_LEVEL, encodedReporter);
+        return out.toByteArray();
+    }
+
+    private static byte[] encode(ReportRequest request, ReportBufferPool pool) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ReportEncoder.write(request, Channels.newChannel(out), pool);
+        return out.toByteArray();
+    }
+
+    private static ReportRequest request(int spans, int tagBytes) {
+        ReportRequest.Builder builder = ReportRequest.newBuilder()
+                .setReporter(Reporter.newBuilder().setReporterId(42)
+                        .addTags(KeyValue.newBuilder().setKey("lightstep.component_name").setStringValue("test")))
+                .setAuth(Auth.newBuilder().setAccessToken("token"))
+                .setTimestampOffsetMicros(-1234)
+                .setInternalMetrics(InternalMetrics.newBuilder().addCounts(
+                        MetricsSample.newBuilder().setName("spans.dropped").setIntValue(3)));
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < tagBytes; i++) {
+            value.append('v');
+        }
+        for (int i = 0; i < spans; i++) {
+            builder.addSpans(Span.newBuilder()
+                    .setOperationName("span-" + i)
+                    .setSpanContext(SpanContext.newBuilder().setTraceId(i % 3 + 1).setSpanId(i + 1))
+                    .setDurationMicros(i)
+                    .addTags(KeyValue.newBuilder().setKey("key").setStringValue(value.toString())));
+        }
+        return builder.build();
+    }
+}
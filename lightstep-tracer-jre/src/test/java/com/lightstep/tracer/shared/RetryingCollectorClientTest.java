@@ -0,0 +1,99 @@
+package com.lightstep.tracer.shared;
+
+import com.lightstep.tracer.grpc.ReportRequest;
+import com.lightstep.tracer.grpc.ReportResponse;
+import com.lightstep.tracer.jre.JRETracer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RetryingCollectorClientTest {
+    private JRETracer tracer;
+
+    @Before
+    public void before() throws Exception {
+        tracer = new JRETracer(new Options.OptionsBuilder()
+                .withAccessToken("{your_access_token}")
+                .withDisableReportingLoop(true)
+                .withDisableMetricsReporting(true)
+                .build());
+    }
+
+    @After
+    public void after() {
+        tracer.close();
+    }
+
+    @Test
+    public void failedReportsAreRetriedWithTheSameReportId() {
+        FailingClient failing = new FailingClient(2);
+        CollectorClient client = new RetryingCollectorClient(tracer, failing, 3, 10, new RetryBudget(2, 10, 0));
+
+        assertNotNull(client.report(ReportRequest.getDefaultInstance()));
+        assertEquals(3, failing.reportIds.size());
+        assertEquals(32, failing.reportIds.get(0).length());
+        assertEquals(failing.reportIds.get(0), failing.reportIds.get(2));
+        assertNull(RetryingCollectorClient.currentReportId());
+
+        // Each report gets its own id.
+        assertNotNull(client.report(ReportRequest.getDefaultInstance()));
+        assertNotEquals(failing.reportIds.get(0), failing.reportIds.get(3));
+    }
+
+    @Test
+    public void retriesStayWithinTheBudget() {
+        FailingClient failing = new FailingClient(Integer.MAX_VALUE);
+        RetryBudget budget = new RetryBudget(0.5, 10, 0);
+        CollectorClient client = new RetryingCollectorClient(tracer, failing, 5, 10, budget);
+
+        // Half a retry per report: the second report gets one retry, the fourth another.
+        for (int i = 0; i < 4; i++) {
+            assertNull(client.report(ReportRequest.getDefaultInstance()));
+        }
+        assertEquals(6, failing.reportIds.size());
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void firstFailuresAreRetriedFromTheInitialBudget() {
+        FailingClient failing = new FailingClient(Integer.MAX_VALUE);
+        RetryBudget budget = new RetryBudget(0, 10, 2);
+        CollectorClient client = new RetryingCollectorClient(tracer, failing, 5, 10, budget);
+
+        assertNull(client.report(ReportRequest.getDefaultInstance()));
+        assertEquals(3, failing.reportIds.size());
+        assertFalse(budget.tryRetry());
+    }
+
+    private static final class FailingClient extends CollectorClient {
+        final List<String> reportIds = new ArrayList<>();
+        private int failures;
+
+        FailingClient(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        void reconnect() {
+        }
+
+        @Override
+        void shutdown() {
+        }
+
+        @Override
+        ReportResponse report(ReportRequest request) {
+            reportIds.add(RetryingCollectorClient.currentReportId());
+            if (failures > 0) {
+                failures--;
+                return null;
+            }
+            return ReportResponse.getDefaultInstance();
+        }
+    }
+}
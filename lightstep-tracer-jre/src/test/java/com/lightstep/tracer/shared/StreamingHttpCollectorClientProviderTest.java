@@ -0,0 +1,30 @@
+package com.lightstep.tracer.shared;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamingHttpCollectorClientProviderTest {
+
+    @Test
+    public void providerIsPickedOverTheOneOfTracerOkhttp() {
+        final List<String> messages = new ArrayList<>();
+        CollectorClientProvider provider = CollectorClientProvider.provider(Options.CollectorClient.HTTP,
+                new Warner() {
+                    @Override
+                    public void warn(String message) {
+                        messages.add(message);
+                    }
+
+                    @Override
+                    public void error(String message) {
+                        messages.add(message);
+                    }
+                });
+        assertTrue(provider instanceof StreamingHttpCollectorClientProvider);
+        assertTrue(messages.isEmpty());
+    }
+}